@@ -0,0 +1,209 @@
+package fr.efrei.benchmarks;
+
+import fr.efrei.domain.*;
+import fr.efrei.factory.CustomerFactory;
+import fr.efrei.factory.GameFactory;
+import fr.efrei.repository.*;
+import fr.efrei.util.DatabaseConnection;
+import fr.efrei.util.SchemaMigrations;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Embedded H2 database (MySQL mode) created from database_setup.sql and seeded at a given scale, or the same
+ * rows in the in-memory repositories as a baseline. Rows are generated deterministically, so benchmarks can pick random customers and games by id
+ * without loading them first.
+ */
+final class BenchmarkDatabase {
+    /** PC_ANY only matches other platforms and is not a column value. **/
+    static final GamePlatform[] PLATFORMS = Arrays.stream(GamePlatform.values())
+            .filter(platform -> platform != GamePlatform.PC_ANY)
+            .toArray(GamePlatform[]::new);
+    private static final String[] GENRES = {"Action", "Adventure", "RPG", "Sports", "Racing", "Strategy", "Shooter", "Puzzle"};
+    private static final int CHUNK_SIZE = 10_000;
+    private static final LocalDate FIRST_DAY = LocalDate.of(2023, 1, 1);
+    private static final int DAYS = 730;
+
+    private final int rows;
+    private final int customerCount;
+    private final int gameCount;
+
+    private BenchmarkDatabase(int rows) {
+        this.rows = rows;
+        this.customerCount = Math.max(10, rows / 10);
+        this.gameCount = Math.max(100, rows / 100);
+    }
+
+    /**
+     * Points DatabaseConnection at the embedded database, loading and seeding it if it is empty, then applies
+     * the pending schema migrations. Rentals and sales are seeded with {@code rows} rows each. Pass -DDB_URL=...
+     * to use another database (for example a file-backed H2 for the 1M scale); it is reused as-is when already seeded.
+     */
+    static BenchmarkDatabase open(int rows) throws SQLException, IOException {
+        if (System.getProperty("DB_URL") == null) {
+            System.setProperty("DB_URL", "jdbc:h2:mem:bench_" + rows + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+            System.setProperty("DB_USERNAME", "sa");
+            System.setProperty("DB_PASSWORD", "");
+        }
+
+        BenchmarkDatabase database = new BenchmarkDatabase(rows);
+        if (!database.isSeeded()) {
+            database.loadSchema();
+            database.seed(CustomerRepository.getInstance(), GameRepository.getInstance(),
+                    RentalRepository.getInstance(), SaleRepository.getInstance());
+        }
+        if (SchemaMigrations.migrate() < 0) {
+            throw new IllegalStateException("Schema migrations failed");
+        }
+        database.analyze();
+        return database;
+    }
+
+    /** Seeds the given in-memory repositories with the rows the embedded database would hold. **/
+    static BenchmarkDatabase inMemory(int rows, ICustomerRepository customerRepository, IGameRepository gameRepository,
+                                      IRentalRepository rentalRepository, ISaleRepository saleRepository) {
+        BenchmarkDatabase database = new BenchmarkDatabase(rows);
+        database.seed(customerRepository, gameRepository, rentalRepository, saleRepository);
+        return database;
+    }
+
+    String customerId(int index) {
+        return "bench-customer-" + index;
+    }
+
+    String contactNumber(int index) {
+        return String.format("07%08d", index);
+    }
+
+    String gameId(int index) {
+        return "bench-game-" + index;
+    }
+
+    /** Even game indexes are rental games, odd ones are for sale. **/
+    GameType gameType(int index) {
+        return index % 2 == 0 ? GameType.RENTAL : GameType.SALE;
+    }
+
+    int getRows() { return rows; }
+    int getCustomerCount() { return customerCount; }
+    int getGameCount() { return gameCount; }
+
+    private boolean isSeeded() throws SQLException {
+        try (Connection conn = DatabaseConnection.getInstance().getConnection();
+             ResultSet tables = conn.getMetaData().getTables(null, null, "customers", null)) {
+            if (!tables.next()) {
+                return false;
+            }
+        }
+        try (Connection conn = DatabaseConnection.getInstance().getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM customers")) {
+            return rs.next() && rs.getLong(1) > 0;
+        }
+    }
+
+    private void loadSchema() throws SQLException, IOException {
+        String script;
+        try (InputStream in = BenchmarkDatabase.class.getResourceAsStream("/database_setup.sql")) {
+            if (in == null) {
+                throw new IOException("database_setup.sql not found on the classpath");
+            }
+            script = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+
+        try (Connection conn = DatabaseConnection.getInstance().getConnection();
+             Statement stmt = conn.createStatement()) {
+            for (String statement : script.replaceAll("(?m)^--.*$", "").split(";")) {
+                String sql = statement.trim();
+                String upper = sql.toUpperCase();
+                // The database itself is the H2 URL, and DESCRIBE/SHOW only print the result
+                if (sql.isEmpty() || upper.startsWith("CREATE DATABASE") || upper.startsWith("USE ")
+                        || upper.startsWith("DESCRIBE") || upper.startsWith("SHOW")) {
+                    continue;
+                }
+                stmt.execute(sql);
+            }
+        }
+    }
+
+    /**
+     * H2 only gathers index statistics when asked, from a 10000-row sample by default; without full statistics it
+     * prefers its foreign key indexes over the composite ones. MySQL keeps its statistics up to date by itself.
+     */
+    private void analyze() throws SQLException {
+        try (Connection conn = DatabaseConnection.getInstance().getConnection();
+             Statement stmt = conn.createStatement()) {
+            if ("H2".equals(conn.getMetaData().getDatabaseProductName())) {
+                stmt.execute("ANALYZE SAMPLE_SIZE 0");
+            }
+        }
+    }
+
+    private void seed(ICustomerRepository customerRepository, IGameRepository gameRepository,
+                      IRentalRepository rentalRepository, ISaleRepository saleRepository) {
+        Random random = new Random(42);
+
+        List<Customer> customers = new ArrayList<>(Math.min(customerCount, CHUNK_SIZE));
+        for (int i = 0; i < customerCount; i++) {
+            customers.add(CustomerFactory.create(customerId(i), "Customer " + i, contactNumber(i), "password"));
+            if (customers.size() == CHUNK_SIZE || i == customerCount - 1) {
+                check(customerRepository.saveAll(customers));
+                customers.clear();
+            }
+        }
+
+        List<Game> games = new ArrayList<>(gameCount);
+        for (int i = 0; i < gameCount; i++) {
+            double price = gameType(i) == GameType.RENTAL ? 2.99 + random.nextInt(5) : 19.99 + 10 * random.nextInt(5);
+            games.add(GameFactory.create(gameId(i), "Game " + i, GENRES[random.nextInt(GENRES.length)],
+                    PLATFORMS[(i / 2) % PLATFORMS.length], true, gameType(i), price));
+        }
+        check(gameRepository.saveAll(games));
+
+        List<Rental> rentals = new ArrayList<>(Math.min(rows, CHUNK_SIZE));
+        List<Sale> sales = new ArrayList<>(Math.min(rows, CHUNK_SIZE));
+        for (int i = 0; i < rows; i++) {
+            Customer customer = new Customer.Builder().setId(customerId(random.nextInt(customerCount))).build();
+            LocalDate date = FIRST_DAY.plusDays(random.nextInt(DAYS));
+
+            // Rental games sit on even indexes and sale games on odd ones
+            Game rentalGame = games.get(2 * random.nextInt(gameCount / 2));
+            rentals.add(new Rental.Builder()
+                    .setRentalId("bench-rental-" + i)
+                    .setCustomer(customer)
+                    .setGame(rentalGame)
+                    .setPlatform(rentalGame.getPlatform())
+                    .setRentalDate(date)
+                    .setReturnDate(date.plusDays(1 + random.nextInt(14)))
+                    .setReturned(true)
+                    .build());
+
+            Game saleGame = games.get(2 * random.nextInt(gameCount / 2) + 1);
+            sales.add(new Sale("bench-sale-" + i, customer, saleGame, date, saleGame.getPrice()));
+
+            if (rentals.size() == CHUNK_SIZE || i == rows - 1) {
+                check(rentalRepository.saveAll(rentals));
+                check(saleRepository.saveAll(sales));
+                rentals.clear();
+                sales.clear();
+            }
+        }
+    }
+
+    private static void check(BatchResult<?> result) {
+        if (!result.isSuccessful()) {
+            throw new IllegalStateException("Seeding failed: " + result.getFailures().get(0).getReason());
+        }
+    }
+}
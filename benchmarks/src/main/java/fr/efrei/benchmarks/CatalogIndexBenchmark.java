@@ -0,0 +1,73 @@
+package fr.efrei.benchmarks;
+
+import fr.efrei.domain.Game;
+import fr.efrei.domain.GamePlatform;
+import fr.efrei.domain.GameType;
+import fr.efrei.repository.CatalogIndex;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * "Available rentals on PS5 under $5" over a whole catalog: the bitmap CatalogIndex against filtering
+ * a list of Game objects, which is what findByPlatformAndType followed by a stream filter amounts to.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--enable-preview", "-Xmx4g"})
+public class CatalogIndexBenchmark {
+    private static final double MAX_PRICE = 4.99;
+
+    @Param({"10000", "500000"})
+    public int games;
+
+    private CatalogIndex index;
+    private List<Game> catalog;
+    private String[] ids;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        index = new CatalogIndex(games);
+        catalog = new ArrayList<>(games);
+        for (int i = 0; i < games; i++) {
+            Game game = new Game.Builder()
+                    .setId("bench-game-" + i)
+                    .setTitle("Game " + i)
+                    .setGenre("Action")
+                    .setPlatform(BenchmarkDatabase.PLATFORMS[random.nextInt(BenchmarkDatabase.PLATFORMS.length)])
+                    .setType(random.nextBoolean() ? GameType.RENTAL : GameType.SALE)
+                    .setAvailable(random.nextInt(4) != 0)
+                    .setPrice(1 + random.nextInt(900) / 100.0)
+                    .build();
+            catalog.add(game);
+            index.put(game);
+        }
+        ids = new String[100];
+    }
+
+    @Benchmark
+    public int indexCount() {
+        return index.countAvailable(GamePlatform.PS5, GameType.RENTAL, MAX_PRICE);
+    }
+
+    @Benchmark
+    public int indexFirstHundred() {
+        return index.findAvailable(GamePlatform.PS5, GameType.RENTAL, MAX_PRICE, ids);
+    }
+
+    @Benchmark
+    public List<Game> listFilter() {
+        return catalog.stream()
+                .filter(game -> game.getPlatform() == GamePlatform.PS5 && game.getType() == GameType.RENTAL)
+                .filter(Game::isAvailable)
+                .filter(game -> game.getPrice() <= MAX_PRICE)
+                .toList();
+    }
+}
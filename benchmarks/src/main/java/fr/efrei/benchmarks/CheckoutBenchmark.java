@@ -0,0 +1,56 @@
+package fr.efrei.benchmarks;
+
+import fr.efrei.domain.Customer;
+import fr.efrei.domain.Game;
+import fr.efrei.domain.Rental;
+import fr.efrei.repository.CustomerRepository;
+import fr.efrei.repository.GameRepository;
+import fr.efrei.service.CheckoutService;
+import fr.efrei.util.DatabaseConnection;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checkout flow as the console app runs it: load the customer and the game, rent it, then return it
+ * so the game is available again for the next invocation. Run with -t to add contention on the games.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--enable-preview", "-Xmx4g"})
+public class CheckoutBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    public int rows;
+
+    private BenchmarkDatabase database;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        database = BenchmarkDatabase.open(rows);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.out.println();
+        System.out.println(DatabaseConnection.getInstance().getPoolStats());
+    }
+
+    @Benchmark
+    public boolean rentAndReturn() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Customer customer = CustomerRepository.getInstance()
+                .findById(database.customerId(random.nextInt(database.getCustomerCount())));
+        // Rental games sit on even indexes
+        Game game = GameRepository.getInstance()
+                .findById(database.gameId(2 * random.nextInt(database.getGameCount() / 2)));
+
+        Rental rental = CheckoutService.getInstance()
+                .rent(customer, game, game.getPlatform(), 7, game.getPrice(), 0);
+        // Another thread may hold the same game, which the service reports as null
+        return rental != null && CheckoutService.getInstance().returnRental(customer, rental);
+    }
+}
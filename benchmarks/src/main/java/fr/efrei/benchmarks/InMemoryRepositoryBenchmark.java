@@ -0,0 +1,73 @@
+package fr.efrei.benchmarks;
+
+import fr.efrei.domain.*;
+import fr.efrei.repository.InMemoryCustomerRepository;
+import fr.efrei.repository.InMemoryGameRepository;
+import fr.efrei.repository.InMemoryRentalRepository;
+import fr.efrei.repository.InMemorySaleRepository;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The read paths of RepositoryBenchmark against the in-memory repositories, seeded with the same rows:
+ * a lower bound for what the SQL repositories and their caches can achieve.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--enable-preview", "-Xmx4g"})
+public class InMemoryRepositoryBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    public int rows;
+
+    private BenchmarkDatabase database;
+    private InMemoryGameRepository gameRepository;
+    private InMemoryCustomerRepository customerRepository;
+    private InMemoryRentalRepository rentalRepository;
+    private InMemorySaleRepository saleRepository;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        customerRepository = new InMemoryCustomerRepository();
+        gameRepository = new InMemoryGameRepository();
+        rentalRepository = new InMemoryRentalRepository(customerRepository, gameRepository);
+        saleRepository = new InMemorySaleRepository(customerRepository, gameRepository);
+        database = BenchmarkDatabase.inMemory(rows, customerRepository, gameRepository, rentalRepository, saleRepository);
+    }
+
+    @Benchmark
+    public List<Game> findByPlatformAndType() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        GameType type = random.nextBoolean() ? GameType.RENTAL : GameType.SALE;
+        GamePlatform platform = BenchmarkDatabase.PLATFORMS[random.nextInt(BenchmarkDatabase.PLATFORMS.length)];
+        return gameRepository.findByPlatformAndType(platform, type);
+    }
+
+    @Benchmark
+    public List<Game> findAvailableUnderPrice() {
+        GamePlatform platform = BenchmarkDatabase.PLATFORMS[ThreadLocalRandom.current().nextInt(BenchmarkDatabase.PLATFORMS.length)];
+        return gameRepository.findAvailable(platform, GameType.RENTAL, 4.99, 100);
+    }
+
+    @Benchmark
+    public List<Rental> findRentalsByCustomer() {
+        int customer = ThreadLocalRandom.current().nextInt(database.getCustomerCount());
+        return rentalRepository.findByCustomer(database.customerId(customer));
+    }
+
+    @Benchmark
+    public List<Sale> findAllSales() {
+        return saleRepository.findAll();
+    }
+
+    @Benchmark
+    public Customer findCustomerByContact() {
+        int customer = ThreadLocalRandom.current().nextInt(database.getCustomerCount());
+        return customerRepository.findByContact(database.contactNumber(customer));
+    }
+}
@@ -0,0 +1,69 @@
+package fr.efrei.benchmarks;
+
+import fr.efrei.repository.CustomerRepository;
+import fr.efrei.service.LoyaltyAccrualBuffer;
+import fr.efrei.util.DatabaseConnection;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost for a till of crediting earned points: addPoints writes them in its own transaction, accrue journals them
+ * and leaves the database writes to the LoyaltyAccrualBuffer flush. The teardown prints how many ledger rows
+ * were written and in how many batches. Run with -t to add tills; -jvmArgsAppend -DLOYALTY_JOURNAL_SYNC=false
+ * shows the cost of the journal fsync.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--enable-preview", "-Xmx4g"})
+public class LoyaltyAccrualBenchmark {
+    @Param({"1000", "100000"})
+    public int rows;
+
+    private BenchmarkDatabase database;
+    private LoyaltyAccrualBuffer buffer;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        if (System.getProperty("LOYALTY_JOURNAL_DIR") == null) {
+            System.setProperty("LOYALTY_JOURNAL_DIR", Files.createTempDirectory("loyalty-journal").toString());
+        }
+        database = BenchmarkDatabase.open(rows);
+        buffer = LoyaltyAccrualBuffer.getInstance();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        buffer.flush();
+        try (Connection conn = DatabaseConnection.getInstance().getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT (SELECT COUNT(*) FROM loyalty_ledger), (SELECT COUNT(*) FROM loyalty_batches)")) {
+            rs.next();
+            System.out.println();
+            System.out.println("Ledger rows: " + rs.getLong(1) + ", buffered batches: " + rs.getLong(2));
+        }
+    }
+
+    @Benchmark
+    public boolean addPoints() {
+        return CustomerRepository.getInstance().addPoints(randomCustomerId(), 10, "Benchmark");
+    }
+
+    @Benchmark
+    public boolean accrue() {
+        return buffer.accrue(randomCustomerId(), 10, "Benchmark");
+    }
+
+    private String randomCustomerId() {
+        return database.customerId(ThreadLocalRandom.current().nextInt(database.getCustomerCount()));
+    }
+}
@@ -0,0 +1,44 @@
+package fr.efrei.benchmarks;
+
+import fr.efrei.util.PasswordHasher;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Login cost for each PBKDF2 iteration count, to pick PASSWORD_HASH_ITERATIONS: the highest setting whose
+ * verify time stays within the login latency budget on the tills' hardware. verify checks a wrong password,
+ * which is never cached, so it always pays the full derivation; cachedVerify is a repeated successful login
+ * answered from the verification cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--enable-preview"})
+public class PasswordHashBenchmark {
+    private static final String PASSWORD = "correct horse battery staple";
+
+    @Param({"10000", "100000", "210000", "600000"})
+    public int iterations;
+
+    private String stored;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        stored = PasswordHasher.hash(PASSWORD, iterations);
+        PasswordHasher.verify(PASSWORD, stored);
+    }
+
+    @Benchmark
+    public boolean verify() {
+        return PasswordHasher.verify("wrong " + PASSWORD, stored);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public boolean cachedVerify() {
+        return PasswordHasher.verify(PASSWORD, stored);
+    }
+}
@@ -0,0 +1,99 @@
+package fr.efrei.benchmarks;
+
+import fr.efrei.domain.GamePlatform;
+import fr.efrei.domain.GameType;
+import fr.efrei.util.DatabaseConnection;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Runs EXPLAIN on the repositories' main queries and checks that each one uses the index meant for it, so a
+ * schema change or a rewritten query cannot silently fall back to a table scan. Works on the embedded H2
+ * database (index named in the plan text) and on MySQL with -DDB_URL=... (the "key" column of EXPLAIN).
+ * RepositoryBenchmark prints the result before measuring; on its own it exits with status 1 on a mismatch:
+ * `java --enable-preview -cp target/benchmarks.jar fr.efrei.benchmarks.QueryPlanCheck [rows]`
+ */
+public final class QueryPlanCheck {
+    private record Expectation(String name, String index, String sql, Object... parameters) {}
+
+    private QueryPlanCheck() {}
+
+    public static void main(String[] args) throws Exception {
+        BenchmarkDatabase database = BenchmarkDatabase.open(args.length > 0 ? Integer.parseInt(args[0]) : 1000);
+        List<String> failures = check(database);
+        DatabaseConnection.getInstance().closeConnection();
+        System.exit(failures.isEmpty() ? 0 : 1);
+    }
+
+    /** Prints one line per query and returns the queries whose plan does not use the expected index. **/
+    static List<String> check(BenchmarkDatabase database) throws SQLException {
+        String customerId = database.customerId(0);
+        Date day = Date.valueOf("2024-06-01");
+        List<Expectation> expectations = List.of(
+            new Expectation("findActiveByCustomer", "idx_rental_customer_active",
+                    "SELECT r.id FROM rentals r WHERE r.customer_id = ? AND r.is_returned = false", customerId),
+            new Expectation("rentals findPage", "idx_rental_date",
+                    "SELECT r.id FROM rentals r WHERE r.rental_date <= ? AND (r.rental_date < ? OR r.id < ?)" +
+                    " ORDER BY r.rental_date DESC, r.id DESC LIMIT 21", day, day, "~"),
+            new Expectation("findPageByCustomer", "idx_rental_customer_date",
+                    "SELECT r.id FROM rentals r WHERE r.customer_id = ? AND r.rental_date <= ?" +
+                    " AND (r.rental_date < ? OR r.id < ?) ORDER BY r.rental_date DESC, r.id DESC LIMIT 21", customerId, day, day, "~"),
+            new Expectation("findByPlatformAndType", "idx_game_platform_type",
+                    "SELECT * FROM games WHERE platform = ? AND type = ?", GamePlatform.PS5.name(), GameType.RENTAL.name()),
+            new Expectation("sales findPage", "idx_sale_date",
+                    "SELECT s.id FROM sales s WHERE s.sale_date <= ? AND (s.sale_date < ? OR s.id < ?)" +
+                    " ORDER BY s.sale_date DESC, s.id DESC LIMIT 21", day, day, "~"),
+            new Expectation("sales getSummary", "idx_sale_date_price",
+                    "SELECT COUNT(*) AS total_sales, COALESCE(SUM(price), 0) AS total, COALESCE(AVG(price), 0) AS average " +
+                    "FROM sales"),
+            new Expectation("customers findPage", "idx_customer_name",
+                    "SELECT * FROM customers WHERE name >= ? AND (name > ? OR id > ?) ORDER BY name, id LIMIT 21",
+                    "Customer 5", "Customer 5", "~")
+        );
+
+        List<String> failures = new ArrayList<>();
+        try (Connection conn = DatabaseConnection.getInstance().getConnection()) {
+            for (Expectation expectation : expectations) {
+                String plan = explain(conn, expectation);
+                boolean used = Pattern.compile("(?i)\\b" + expectation.index() + "\\b").matcher(plan).find();
+                System.out.println((used ? "OK      " : "MISSING ") + expectation.name() + " -> " + expectation.index()
+                        + (used ? "" : "\n        plan: " + plan.replaceAll("\\s+", " ")));
+                if (!used) {
+                    failures.add(expectation.name());
+                }
+            }
+        }
+        return failures;
+    }
+
+    /** MySQL returns one row per table with the chosen index in "key"; H2 returns the plan as text. **/
+    private static String explain(Connection conn, Expectation expectation) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("EXPLAIN " + expectation.sql())) {
+            for (int i = 0; i < expectation.parameters().length; i++) {
+                stmt.setObject(i + 1, expectation.parameters()[i]);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                ResultSetMetaData metaData = rs.getMetaData();
+                int keyColumn = 1;
+                for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                    if ("key".equalsIgnoreCase(metaData.getColumnLabel(i))) {
+                        keyColumn = i;
+                    }
+                }
+                StringBuilder plan = new StringBuilder();
+                while (rs.next()) {
+                    plan.append(rs.getString(keyColumn)).append('\n');
+                }
+                return plan.toString();
+            }
+        }
+    }
+}
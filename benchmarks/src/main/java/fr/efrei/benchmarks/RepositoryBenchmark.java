@@ -0,0 +1,95 @@
+package fr.efrei.benchmarks;
+
+import fr.efrei.domain.*;
+import fr.efrei.repository.CustomerRepository;
+import fr.efrei.repository.GameRepository;
+import fr.efrei.repository.RentalRepository;
+import fr.efrei.repository.SaleRepository;
+import fr.efrei.util.DatabaseConnection;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read paths of the repositories. The "cold" variants clear the repository cache first,
+ * so they measure the SQL query and mapping rather than a cache hit.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--enable-preview", "-Xmx4g"})
+public class RepositoryBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    public int rows;
+
+    private BenchmarkDatabase database;
+    private GameRepository gameRepository;
+    private CustomerRepository customerRepository;
+    private RentalRepository rentalRepository;
+    private SaleRepository saleRepository;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        database = BenchmarkDatabase.open(rows);
+        QueryPlanCheck.check(database);
+        gameRepository = GameRepository.getInstance();
+        customerRepository = CustomerRepository.getInstance();
+        rentalRepository = RentalRepository.getInstance();
+        saleRepository = SaleRepository.getInstance();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.out.println();
+        System.out.println(DatabaseConnection.getInstance().getPoolStats());
+        System.out.println("games " + gameRepository.getCacheStats());
+        System.out.println("customers " + customerRepository.getCacheStats());
+    }
+
+    @Benchmark
+    public List<Game> findByPlatformAndType() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        GameType type = random.nextBoolean() ? GameType.RENTAL : GameType.SALE;
+        GamePlatform platform = BenchmarkDatabase.PLATFORMS[random.nextInt(BenchmarkDatabase.PLATFORMS.length)];
+        return gameRepository.findByPlatformAndType(platform, type);
+    }
+
+    @Benchmark
+    public List<Game> findByPlatformAndTypeCold() {
+        gameRepository.clearCache();
+        return findByPlatformAndType();
+    }
+
+    @Benchmark
+    public List<Game> findAvailableUnderPrice() {
+        GamePlatform platform = BenchmarkDatabase.PLATFORMS[ThreadLocalRandom.current().nextInt(BenchmarkDatabase.PLATFORMS.length)];
+        return gameRepository.findAvailable(platform, GameType.RENTAL, 4.99, 100);
+    }
+
+    @Benchmark
+    public List<Rental> findRentalsByCustomer() {
+        int customer = ThreadLocalRandom.current().nextInt(database.getCustomerCount());
+        return rentalRepository.findByCustomer(database.customerId(customer));
+    }
+
+    @Benchmark
+    public List<Sale> findAllSales() {
+        return saleRepository.findAll();
+    }
+
+    @Benchmark
+    public Customer findCustomerByContact() {
+        int customer = ThreadLocalRandom.current().nextInt(database.getCustomerCount());
+        return customerRepository.findByContact(database.contactNumber(customer));
+    }
+
+    @Benchmark
+    public Customer findCustomerByContactCold() {
+        customerRepository.clearCache();
+        return findCustomerByContact();
+    }
+}
@@ -0,0 +1,86 @@
+-- Migration des identifiants VARCHAR(36) vers BINARY(16) pour la base CapeTownGaming
+-- À exécuter une seule fois dans MySQL (client mysql ou MySQL Workbench), après une sauvegarde :
+-- les ALTER TABLE valident chacun leur propre transaction, le script ne peut donc pas être annulé.
+-- La base doit être à jour (table loyalty_ledger comprise) : démarrer l'application une fois avant si besoin.
+-- Démarrer ensuite l'application avec ID_STORAGE=binary.
+--
+-- Les identifiants au format UUID gardent leurs 16 octets. Les autres (par exemple 'game-1' des données
+-- de démonstration) deviennent l'UUID basé sur leur nom (version 3, MD5), la même valeur que celle calculée
+-- par l'application : ils restent accessibles par leur ancien identifiant.
+
+USE CapeTownGaming;
+
+-- Les clés étrangères empêchent de modifier le type des colonnes référencées
+ALTER TABLE rentals DROP FOREIGN KEY rentals_ibfk_1, DROP FOREIGN KEY rentals_ibfk_2;
+ALTER TABLE sales DROP FOREIGN KEY sales_ibfk_1, DROP FOREIGN KEY sales_ibfk_2;
+ALTER TABLE loyalty_ledger DROP FOREIGN KEY fk_ledger_customer;
+
+-- Représentation hexadécimale (32 caractères) de l'identifiant
+DROP FUNCTION IF EXISTS id_to_hex;
+DELIMITER //
+CREATE FUNCTION id_to_hex(id VARBINARY(255)) RETURNS CHAR(32)
+    DETERMINISTIC NO SQL
+BEGIN
+    DECLARE h CHAR(32);
+    IF CONVERT(id USING utf8mb4) REGEXP '^[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}$' THEN
+        RETURN LOWER(REPLACE(CONVERT(id USING utf8mb4), '-', ''));
+    END IF;
+    -- Comme UUID.nameUUIDFromBytes : version 3 et variante RFC 4122 appliquées au MD5
+    SET h = MD5(id);
+    RETURN CONCAT(SUBSTR(h, 1, 12), '3', SUBSTR(h, 14, 3),
+                  LOWER(HEX((CONV(SUBSTR(h, 17, 1), 16, 10) & 3) | 8)), SUBSTR(h, 18, 15));
+END //
+DELIMITER ;
+
+-- Chaque colonne passe par VARBINARY pour être convertie en place ; les index existants sont conservés
+ALTER TABLE employees MODIFY id VARBINARY(36) NOT NULL;
+UPDATE employees SET id = UNHEX(id_to_hex(id));
+ALTER TABLE employees MODIFY id BINARY(16) NOT NULL;
+
+ALTER TABLE customers MODIFY id VARBINARY(36) NOT NULL;
+UPDATE customers SET id = UNHEX(id_to_hex(id));
+ALTER TABLE customers MODIFY id BINARY(16) NOT NULL;
+
+ALTER TABLE games MODIFY id VARBINARY(36) NOT NULL;
+UPDATE games SET id = UNHEX(id_to_hex(id));
+ALTER TABLE games MODIFY id BINARY(16) NOT NULL;
+
+ALTER TABLE rentals
+    MODIFY id VARBINARY(36) NOT NULL,
+    MODIFY customer_id VARBINARY(36) NOT NULL,
+    MODIFY game_id VARBINARY(36) NOT NULL;
+UPDATE rentals SET id = UNHEX(id_to_hex(id)),
+                   customer_id = UNHEX(id_to_hex(customer_id)),
+                   game_id = UNHEX(id_to_hex(game_id));
+ALTER TABLE rentals
+    MODIFY id BINARY(16) NOT NULL,
+    MODIFY customer_id BINARY(16) NOT NULL,
+    MODIFY game_id BINARY(16) NOT NULL;
+
+ALTER TABLE sales
+    MODIFY id VARBINARY(36) NOT NULL,
+    MODIFY customer_id VARBINARY(36) NOT NULL,
+    MODIFY game_id VARBINARY(36) NOT NULL;
+UPDATE sales SET id = UNHEX(id_to_hex(id)),
+                 customer_id = UNHEX(id_to_hex(customer_id)),
+                 game_id = UNHEX(id_to_hex(game_id));
+ALTER TABLE sales
+    MODIFY id BINARY(16) NOT NULL,
+    MODIFY customer_id BINARY(16) NOT NULL,
+    MODIFY game_id BINARY(16) NOT NULL;
+
+ALTER TABLE loyalty_ledger MODIFY customer_id VARBINARY(36) NOT NULL;
+UPDATE loyalty_ledger SET customer_id = UNHEX(id_to_hex(customer_id));
+ALTER TABLE loyalty_ledger MODIFY customer_id BINARY(16) NOT NULL;
+
+DROP FUNCTION id_to_hex;
+
+-- Rétablissement des clés étrangères
+ALTER TABLE rentals
+    ADD CONSTRAINT rentals_ibfk_1 FOREIGN KEY (customer_id) REFERENCES customers(id) ON DELETE CASCADE,
+    ADD CONSTRAINT rentals_ibfk_2 FOREIGN KEY (game_id) REFERENCES games(id) ON DELETE CASCADE;
+ALTER TABLE sales
+    ADD CONSTRAINT sales_ibfk_1 FOREIGN KEY (customer_id) REFERENCES customers(id) ON DELETE CASCADE,
+    ADD CONSTRAINT sales_ibfk_2 FOREIGN KEY (game_id) REFERENCES games(id) ON DELETE CASCADE;
+ALTER TABLE loyalty_ledger
+    ADD CONSTRAINT fk_ledger_customer FOREIGN KEY (customer_id) REFERENCES customers(id) ON DELETE CASCADE;
@@ -39,6 +39,7 @@ CREATE TABLE IF NOT EXISTS games (
     is_available BOOLEAN DEFAULT TRUE,
     type ENUM('RENTAL', 'SALE') NOT NULL DEFAULT 'RENTAL',
     price DECIMAL(8,2) NOT NULL DEFAULT 0.00,
+    version INT NOT NULL DEFAULT 0,
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
@@ -70,7 +71,25 @@ CREATE TABLE IF NOT EXISTS sales (
     FOREIGN KEY (game_id) REFERENCES games(id) ON DELETE CASCADE
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
 
+-- Journal des points de fidélité : une ligne par variation du solde, jamais modifiée
+CREATE TABLE IF NOT EXISTS loyalty_ledger (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    customer_id VARCHAR(36) NOT NULL,
+    delta INT NOT NULL,
+    reason VARCHAR(100) NOT NULL,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    INDEX idx_ledger_customer (customer_id, created_at),
+    CONSTRAINT fk_ledger_customer FOREIGN KEY (customer_id) REFERENCES customers(id) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+-- Lots de points de fidélité déjà appliqués (fr.efrei.service.LoyaltyAccrualBuffer) : rejouer un lot ne change rien
+CREATE TABLE IF NOT EXISTS loyalty_batches (
+    id VARCHAR(36) PRIMARY KEY,
+    applied_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
 -- Index pour améliorer les performances
+-- (complétés au démarrage de l'application par les migrations de fr.efrei.util.SchemaMigrations)
 CREATE INDEX idx_employee_email ON employees(email);
 CREATE INDEX idx_customer_contact ON customers(contact_number);
 CREATE INDEX idx_game_platform ON games(platform, is_available);
@@ -79,10 +98,16 @@ CREATE INDEX idx_rental_game ON rentals(game_id);
 CREATE INDEX idx_rental_active ON rentals(is_returned);
 CREATE INDEX idx_sale_customer ON sales(customer_id);
 CREATE INDEX idx_sale_game ON sales(game_id);
+-- Index pour la pagination par clé (keyset)
+CREATE INDEX idx_customer_name ON customers(name, id);
+CREATE INDEX idx_rental_date ON rentals(rental_date, id);
+CREATE INDEX idx_rental_customer_date ON rentals(customer_id, rental_date, id);
+CREATE INDEX idx_sale_date ON sales(sale_date, id);
 
 -- Insertion d'un employé par défaut
+-- Mot de passe : admin123, haché par fr.efrei.util.PasswordHasher (PBKDF2, sel propre à chaque utilisateur)
 INSERT INTO employees (id, name, email, password) VALUES
-('emp-1', 'Admin User', 'admin@capetown.com', 'admin123');
+('emp-1', 'Admin User', 'admin@capetown.com', 'pbkdf2-sha512$210000$C5CUUgLO8AKdCoz8JM8DCQ$RjrOcUbAWKaImP6kAox3VHwmhQF0RmJ6tEun/xj02WA');
 
 -- Insertion de quelques jeux de démonstration
 INSERT INTO games (id, title, genre, platform, is_available, type, price) VALUES
@@ -12,6 +12,7 @@ public class Game implements Serializable {
     private final GameType type;
     private final double price;
     private boolean available;
+    private final int version;
 
     private Game(Builder builder) {
         this.id = builder.id;
@@ -21,6 +22,7 @@ public class Game implements Serializable {
         this.available = builder.available;
         this.type = builder.type;
         this.price = builder.price;
+        this.version = builder.version;
     }
 
     public String getId() { return id; }
@@ -30,6 +32,7 @@ public class Game implements Serializable {
     public boolean isAvailable() { return available; }
     public GameType getType() { return type; }
     public double getPrice() { return price; }
+    public int getVersion() { return version; }
 
     public void setAvailable(boolean available) { this.available = available; }
 
@@ -41,6 +44,7 @@ public class Game implements Serializable {
         private boolean available = true;
         private GameType type = GameType.RENTAL;
         private double price = 0.0;
+        private int version = 0;
 
         public Builder setId(String id) { this.id = id; return this; }
         public Builder setTitle(String title) { this.title = title; return this; }
@@ -49,6 +53,7 @@ public class Game implements Serializable {
         public Builder setAvailable(boolean available) { this.available = available; return this; }
         public Builder setType(GameType type) { this.type = type; return this; }
         public Builder setPrice(double price) { this.price = price; return this; }
+        public Builder setVersion(int version) { this.version = version; return this; }
 
         public Game build() {
             return new Game(this);
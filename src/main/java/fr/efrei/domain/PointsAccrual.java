@@ -0,0 +1,27 @@
+package fr.efrei.domain;
+
+/** Loyalty points earned by a customer, waiting to be added to the stored balance. **/
+public class PointsAccrual {
+    private final String customerId;
+    private final int points;
+    private final String reason;
+
+    public PointsAccrual(String customerId, int points, String reason) {
+        this.customerId = customerId;
+        this.points = points;
+        this.reason = reason;
+    }
+
+    public String getCustomerId() { return customerId; }
+    public int getPoints() { return points; }
+    public String getReason() { return reason; }
+
+    @Override
+    public String toString() {
+        return "PointsAccrual{" +
+                "customerId='" + customerId + '\'' +
+                ", points=" + points +
+                ", reason='" + reason + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,26 @@
+package fr.efrei.domain;
+
+public class RentalSummary {
+    private final long totalRentals;
+    private final long activeRentals;
+    private final long overdueRentals;
+
+    public RentalSummary(long totalRentals, long activeRentals, long overdueRentals) {
+        this.totalRentals = totalRentals;
+        this.activeRentals = activeRentals;
+        this.overdueRentals = overdueRentals;
+    }
+
+    public long getTotalRentals() { return totalRentals; }
+    public long getActiveRentals() { return activeRentals; }
+    public long getOverdueRentals() { return overdueRentals; }
+
+    @Override
+    public String toString() {
+        return "RentalSummary{" +
+                "totalRentals=" + totalRentals +
+                ", activeRentals=" + activeRentals +
+                ", overdueRentals=" + overdueRentals +
+                '}';
+    }
+}
@@ -0,0 +1,26 @@
+package fr.efrei.domain;
+
+public class SalesSummary {
+    private final long totalSales;
+    private final double totalRevenue;
+    private final double averagePrice;
+
+    public SalesSummary(long totalSales, double totalRevenue, double averagePrice) {
+        this.totalSales = totalSales;
+        this.totalRevenue = totalRevenue;
+        this.averagePrice = averagePrice;
+    }
+
+    public long getTotalSales() { return totalSales; }
+    public double getTotalRevenue() { return totalRevenue; }
+    public double getAveragePrice() { return averagePrice; }
+
+    @Override
+    public String toString() {
+        return "SalesSummary{" +
+                "totalSales=" + totalSales +
+                ", totalRevenue=" + totalRevenue +
+                ", averagePrice=" + averagePrice +
+                '}';
+    }
+}
@@ -0,0 +1,56 @@
+package fr.efrei.repository;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of a saveAll call: the entities that were written and, for every rejected row, the reason.
+ */
+public class BatchResult<T> {
+    private final List<T> saved = new ArrayList<>();
+    private final List<Failure<T>> failures = new ArrayList<>();
+
+    void addSaved(T entity) {
+        saved.add(entity);
+    }
+
+    void addFailure(T entity, String reason) {
+        failures.add(new Failure<>(entity, reason));
+    }
+
+    public List<T> getSaved() { return Collections.unmodifiableList(saved); }
+    public List<Failure<T>> getFailures() { return Collections.unmodifiableList(failures); }
+    public int getSavedCount() { return saved.size(); }
+    public int getFailedCount() { return failures.size(); }
+    public boolean isSuccessful() { return failures.isEmpty(); }
+
+    @Override
+    public String toString() {
+        return "BatchResult{" +
+                "saved=" + saved.size() +
+                ", failed=" + failures.size() +
+                '}';
+    }
+
+    public static class Failure<T> {
+        private final T entity;
+        private final String reason;
+
+        Failure(T entity, String reason) {
+            this.entity = entity;
+            this.reason = reason;
+        }
+
+        public T getEntity() { return entity; }
+        public String getReason() { return reason; }
+
+        @Override
+        public String toString() {
+            return "Failure{" +
+                    "entity=" + entity +
+                    ", reason='" + reason + '\'' +
+                    '}';
+        }
+    }
+}
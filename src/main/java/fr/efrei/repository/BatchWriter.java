@@ -0,0 +1,139 @@
+package fr.efrei.repository;
+
+import fr.efrei.util.Config;
+import fr.efrei.util.DatabaseConnection;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Writes entities with JDBC batches, one transaction per chunk.
+ * When a chunk fails it is rolled back and replayed row by row so that only the faulty rows are reported.
+ * Called inside DatabaseConnection.inTransaction(), the rows are written in the caller's transaction instead:
+ * nothing is committed here, and a failed chunk or row is only rolled back to a savepoint.
+ */
+final class BatchWriter {
+    static final int DEFAULT_BATCH_SIZE = Config.getInt("DB_BATCH_SIZE", 500);
+
+    @FunctionalInterface
+    interface Binder<T> {
+        void bind(PreparedStatement stmt, T entity) throws SQLException;
+    }
+
+    private BatchWriter() {}
+
+    static <T> BatchResult<T> write(String sql, Collection<T> entities, Binder<T> binder) {
+        return write(sql, entities, binder, DEFAULT_BATCH_SIZE);
+    }
+
+    static <T> BatchResult<T> write(String sql, Collection<T> entities, Binder<T> binder, int batchSize) {
+        BatchResult<T> result = new BatchResult<>();
+        if (entities == null || entities.isEmpty()) {
+            return result;
+        }
+        int chunkSize = Math.max(1, batchSize);
+        DatabaseConnection db = DatabaseConnection.getInstance();
+        boolean joined = db.isInTransaction();
+
+        try (Connection conn = db.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            boolean autoCommit = conn.getAutoCommit();
+            try {
+                if (!joined) {
+                    conn.setAutoCommit(false);
+                }
+                List<T> chunk = new ArrayList<>(Math.min(chunkSize, entities.size()));
+                for (T entity : entities) {
+                    chunk.add(entity);
+                    if (chunk.size() == chunkSize) {
+                        flush(conn, joined, stmt, chunk, binder, result);
+                        chunk.clear();
+                    }
+                }
+                if (!chunk.isEmpty()) {
+                    flush(conn, joined, stmt, chunk, binder, result);
+                }
+            } finally {
+                if (!joined) {
+                    conn.setAutoCommit(autoCommit);
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Error during batch insert: " + e.getMessage());
+            int done = result.getSavedCount() + result.getFailedCount();
+            int index = 0;
+            for (T entity : entities) {
+                if (index++ >= done) {
+                    result.addFailure(entity, e.getMessage());
+                }
+            }
+        }
+
+        return result;
+    }
+
+    private static <T> void flush(Connection conn, boolean joined, PreparedStatement stmt, List<T> chunk,
+                                  Binder<T> binder, BatchResult<T> result) throws SQLException {
+        Savepoint savepoint = joined ? conn.setSavepoint() : null;
+        try {
+            for (T entity : chunk) {
+                binder.bind(stmt, entity);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+            end(conn, savepoint);
+            chunk.forEach(result::addSaved);
+        } catch (SQLException | RuntimeException e) {
+            stmt.clearBatch();
+            undo(conn, savepoint);
+            replayRowByRow(conn, joined, stmt, chunk, binder, result);
+        }
+    }
+
+    private static <T> void replayRowByRow(Connection conn, boolean joined, PreparedStatement stmt, List<T> chunk,
+                                           Binder<T> binder, BatchResult<T> result) throws SQLException {
+        List<T> accepted = new ArrayList<>(chunk.size());
+        for (T entity : chunk) {
+            Savepoint savepoint = joined ? conn.setSavepoint() : null;
+            try {
+                binder.bind(stmt, entity);
+                stmt.executeUpdate();
+                if (savepoint != null) {
+                    conn.releaseSavepoint(savepoint);
+                }
+                accepted.add(entity);
+            } catch (SQLException | RuntimeException rowError) {
+                if (savepoint != null) {
+                    conn.rollback(savepoint);
+                }
+                result.addFailure(entity, rowError.getMessage());
+            }
+        }
+        if (!joined) {
+            conn.commit();
+        }
+        accepted.forEach(result::addSaved);
+    }
+
+    /** Commits the chunk on our own connection; inside the caller's transaction, only drops its savepoint. **/
+    private static void end(Connection conn, Savepoint savepoint) throws SQLException {
+        if (savepoint != null) {
+            conn.releaseSavepoint(savepoint);
+        } else {
+            conn.commit();
+        }
+    }
+
+    private static void undo(Connection conn, Savepoint savepoint) throws SQLException {
+        if (savepoint != null) {
+            conn.rollback(savepoint);
+        } else {
+            conn.rollback();
+        }
+    }
+}
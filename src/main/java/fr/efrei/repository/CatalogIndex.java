@@ -0,0 +1,209 @@
+package fr.efrei.repository;
+
+import fr.efrei.domain.Game;
+import fr.efrei.domain.GamePlatform;
+import fr.efrei.domain.GameType;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Column-oriented index of the game catalog for "available games of this type on this platform under this price"
+ * queries. Each game occupies a slot; platform and type are kept as one bitmap per value, availability as a
+ * bitmap and the price in cents in an int array. A query ANDs three bitmaps a word (64 games) at a time and
+ * checks the price of the remaining bits, so scanning a 500k catalog touches a few hundred KB and allocates
+ * nothing. Only the game ids are objects, and they are read for matching slots only.
+ */
+public final class CatalogIndex {
+    private final StampedLock lock = new StampedLock();
+    private final Map<String, Integer> slotOf = new HashMap<>();
+
+    private long[][] platformBits = new long[GamePlatform.values().length][];
+    private long[][] typeBits = new long[GameType.values().length][];
+    private long[] availableBits;
+    private byte[] platforms;
+    private byte[] types;
+    private int[] priceCents;
+    private String[] ids;
+
+    // Slots of removed games are reused before the slot range grows
+    private int[] freeSlots = new int[16];
+    private int freeCount;
+    private int slotCount;
+
+    public CatalogIndex(int initialCapacity) {
+        int capacity = Math.max(64, initialCapacity);
+        for (int i = 0; i < platformBits.length; i++) {
+            platformBits[i] = new long[words(capacity)];
+        }
+        for (int i = 0; i < typeBits.length; i++) {
+            typeBits[i] = new long[words(capacity)];
+        }
+        availableBits = new long[words(capacity)];
+        platforms = new byte[capacity];
+        types = new byte[capacity];
+        priceCents = new int[capacity];
+        ids = new String[capacity];
+    }
+
+    private static int words(int slots) {
+        return (slots + 63) >>> 6;
+    }
+
+    /** Prices are compared in whole cents, so 4.99 never fails a "at most 4.99" check through rounding. **/
+    static int toCents(double price) {
+        if (price >= Integer.MAX_VALUE / 100.0) {
+            return Integer.MAX_VALUE;
+        }
+        return (int) Math.round(price * 100);
+    }
+
+    /** Adds the game or replaces what the index holds for it. **/
+    public void put(Game game) {
+        long stamp = lock.writeLock();
+        try {
+            Integer existing = slotOf.get(game.getId());
+            int slot;
+            if (existing != null) {
+                slot = existing;
+                clear(platformBits[platforms[slot]], slot);
+                clear(typeBits[types[slot]], slot);
+            } else {
+                slot = allocateSlot();
+                slotOf.put(game.getId(), slot);
+                ids[slot] = game.getId();
+            }
+            platforms[slot] = (byte) game.getPlatform().ordinal();
+            types[slot] = (byte) game.getType().ordinal();
+            priceCents[slot] = toCents(game.getPrice());
+            set(platformBits[platforms[slot]], slot);
+            set(typeBits[types[slot]], slot);
+            if (game.isAvailable()) {
+                set(availableBits, slot);
+            } else {
+                clear(availableBits, slot);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /** Flips the availability bit of an indexed game; returns false if the game is not in the index. **/
+    public boolean setAvailable(String gameId, boolean available) {
+        long stamp = lock.writeLock();
+        try {
+            Integer slot = slotOf.get(gameId);
+            if (slot == null) {
+                return false;
+            }
+            if (available) {
+                set(availableBits, slot);
+            } else {
+                clear(availableBits, slot);
+            }
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public void remove(String gameId) {
+        long stamp = lock.writeLock();
+        try {
+            Integer slot = slotOf.remove(gameId);
+            if (slot == null) {
+                return;
+            }
+            clear(platformBits[platforms[slot]], slot);
+            clear(typeBits[types[slot]], slot);
+            clear(availableBits, slot);
+            ids[slot] = null;
+            if (freeCount == freeSlots.length) {
+                freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+            }
+            freeSlots[freeCount++] = slot;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return slotOf.size();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /** Number of available games of the given platform and type priced at most maxPrice. **/
+    public int countAvailable(GamePlatform platform, GameType type, double maxPrice) {
+        return findAvailable(platform, type, maxPrice, null);
+    }
+
+    /**
+     * Writes into out the ids of available games of the given platform and type priced at most maxPrice,
+     * in slot order, stopping when the array is full. Returns the number of ids written.
+     */
+    public int findAvailable(GamePlatform platform, GameType type, double maxPrice, String[] out) {
+        int maxCents = toCents(maxPrice);
+        int limit = out == null ? Integer.MAX_VALUE : out.length;
+        long stamp = lock.readLock();
+        try {
+            long[] byPlatform = platformBits[platform.ordinal()];
+            long[] byType = typeBits[type.ordinal()];
+            int words = words(slotCount);
+            int found = 0;
+            for (int word = 0; word < words && found < limit; word++) {
+                long candidates = byPlatform[word] & byType[word] & availableBits[word];
+                while (candidates != 0 && found < limit) {
+                    int slot = (word << 6) + Long.numberOfTrailingZeros(candidates);
+                    candidates &= candidates - 1;
+                    if (priceCents[slot] <= maxCents) {
+                        if (out != null) {
+                            out[found] = ids[slot];
+                        }
+                        found++;
+                    }
+                }
+            }
+            return found;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private int allocateSlot() {
+        if (freeCount > 0) {
+            return freeSlots[--freeCount];
+        }
+        if (slotCount == ids.length) {
+            grow(ids.length * 2);
+        }
+        return slotCount++;
+    }
+
+    private void grow(int capacity) {
+        for (int i = 0; i < platformBits.length; i++) {
+            platformBits[i] = Arrays.copyOf(platformBits[i], words(capacity));
+        }
+        for (int i = 0; i < typeBits.length; i++) {
+            typeBits[i] = Arrays.copyOf(typeBits[i], words(capacity));
+        }
+        availableBits = Arrays.copyOf(availableBits, words(capacity));
+        platforms = Arrays.copyOf(platforms, capacity);
+        types = Arrays.copyOf(types, capacity);
+        priceCents = Arrays.copyOf(priceCents, capacity);
+        ids = Arrays.copyOf(ids, capacity);
+    }
+
+    private static void set(long[] bits, int slot) {
+        bits[slot >>> 6] |= 1L << slot;
+    }
+
+    private static void clear(long[] bits, int slot) {
+        bits[slot >>> 6] &= ~(1L << slot);
+    }
+}
@@ -1,151 +1,410 @@
 package fr.efrei.repository;
 
 import fr.efrei.domain.Customer;
+import fr.efrei.domain.PointsAccrual;
+import fr.efrei.util.Config;
 import fr.efrei.util.DatabaseConnection;
+import fr.efrei.util.LruCache;
+import fr.efrei.util.PasswordHasher;
+import fr.efrei.util.QueryMetrics;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
 
 public class CustomerRepository implements ICustomerRepository {
+    private static final String INSERT_SQL = "INSERT INTO customers (id, name, contact_number, password, loyalty_points) VALUES (?, ?, ?, ?, ?)";
+    private static final String ADD_POINTS_SQL = "UPDATE customers SET loyalty_points = loyalty_points + ? WHERE id = ?";
+    private static final String REDEEM_POINTS_SQL =
+            "UPDATE customers SET loyalty_points = loyalty_points + ? WHERE id = ? AND loyalty_points >= ?";
+    private static final String LEDGER_INSERT_SQL = "INSERT INTO loyalty_ledger (customer_id, delta, reason) VALUES (?, ?, ?)";
+    // Copies the id from the customer row, so accruals of a customer deleted since the batch was built are skipped
+    private static final String LEDGER_INSERT_EXISTING_SQL =
+            "INSERT INTO loyalty_ledger (customer_id, delta, reason) SELECT id, ?, ? FROM customers WHERE id = ?";
+    private static final String BATCH_INSERT_SQL = "INSERT INTO loyalty_batches (id) VALUES (?)";
+    // Only replaces the password that was verified, in case it changed in the meantime
+    private static final String REHASH_SQL = "UPDATE customers SET password = ? WHERE id = ? AND password = ?";
+
     private static CustomerRepository instance;
 
-    private CustomerRepository() {}
+    // Customers are cached by id, with a secondary contact number -> id index. Callers always get copies.
+    private final LruCache<String, Customer> cache;
+    private final LruCache<String, String> contactIndex;
+
+    private CustomerRepository() {
+        int maxSize = Config.getInt("CUSTOMER_CACHE_MAX_SIZE", 5_000);
+        long ttlMillis = Config.getLong("CUSTOMER_CACHE_TTL_MS", 600_000);
+        this.cache = new LruCache<>(maxSize, ttlMillis);
+        this.contactIndex = new LruCache<>(maxSize, ttlMillis);
+    }
 
-    public static CustomerRepository getInstance() {
+    public static synchronized CustomerRepository getInstance() {
         if (instance == null) {
             instance = new CustomerRepository();
         }
         return instance;
     }
 
-    private Connection getConnection() {
+    private Connection getConnection() throws SQLException {
         return DatabaseConnection.getInstance().getConnection();
     }
 
-    public Customer save(Customer customer) {
-        String sql = "INSERT INTO customers (id, name, contact_number, password, loyalty_points) VALUES (?, ?, ?, ?, ?)";
+    /** Builds a customer from the current row; prefix selects aliased columns in joined queries. **/
+    static Customer mapCustomer(ResultSet rs, String prefix) throws SQLException {
+        return new Customer.Builder()
+                .setId(IdColumns.read(rs, prefix + "id"))
+                .setName(rs.getString(prefix + "name"))
+                .setContactNumber(rs.getString(prefix + "contact_number"))
+                .setPassword(rs.getString(prefix + "password"))
+                .setLoyaltyPoints(rs.getInt(prefix + "loyalty_points"))
+                .build();
+    }
+
+    static Customer copy(Customer customer) {
+        return withPassword(customer, customer.getPassword());
+    }
+
+    static Customer withPassword(Customer customer, String password) {
+        return new Customer.Builder()
+                .setId(customer.getId())
+                .setName(customer.getName())
+                .setContactNumber(customer.getContactNumber())
+                .setPassword(password)
+                .setLoyaltyPoints(customer.getLoyaltyPoints())
+                .build();
+    }
 
-        try (PreparedStatement stmt = getConnection().prepareStatement(sql)) {
-            stmt.setString(1, customer.getId());
-            stmt.setString(2, customer.getName());
-            stmt.setString(3, customer.getContactNumber());
-            stmt.setString(4, customer.getPassword());
-            stmt.setInt(5, customer.getLoyaltyPoints());
+    /** The customer as stored: with its password hashed if it was given in plain text. **/
+    static Customer withHashedPassword(Customer customer) {
+        String password = PasswordHasher.hashIfPlain(customer.getPassword());
+        return password.equals(customer.getPassword()) ? customer : withPassword(customer, password);
+    }
+
+    private void cache(Customer customer) {
+        cache.put(customer.getId(), copy(customer));
+        contactIndex.put(customer.getContactNumber(), customer.getId());
+    }
+
+    /** Caches a customer read from the database, unless an eviction since the stamp may have made it stale. **/
+    private void cacheLoaded(Customer customer, long stamp) {
+        if (cache.putIfNotRemovedSince(customer.getId(), copy(customer), stamp)) {
+            contactIndex.put(customer.getContactNumber(), customer.getId());
+        }
+    }
+
+    private void evict(String customerId) {
+        cache.remove(customerId);
+        contactIndex.removeIf(customerId::equals);
+    }
+
+    public LruCache.CacheStats getCacheStats() {
+        return cache.getStats();
+    }
+
+    /** Drops a customer from the cache, e.g. after a transaction that updated it was rolled back. **/
+    public void invalidate(String id) {
+        evict(id);
+    }
+
+    public void clearCache() {
+        cache.clear();
+        contactIndex.clear();
+    }
+
+    public Customer save(Customer customer) {
+        Customer stored = withHashedPassword(customer);
+        try (Connection conn = getConnection();
+             PreparedStatement stmt = conn.prepareStatement(INSERT_SQL)) {
+            bindInsert(stmt, stored);
 
             int rowsAffected = stmt.executeUpdate();
             if (rowsAffected > 0) {
-                return customer;
+                cache(stored);
+                return stored;
             }
         } catch (SQLException e) {
             System.err.println("Error saving customer: " + e.getMessage());
+            QueryMetrics.recordError();
         }
 
         return null;
     }
 
+    public BatchResult<Customer> saveAll(Collection<Customer> customers, int batchSize) {
+        List<Customer> stored = customers == null ? null
+                : customers.stream().map(CustomerRepository::withHashedPassword).toList();
+        return BatchWriter.write(INSERT_SQL, stored, CustomerRepository::bindInsert, batchSize);
+    }
+
+    private static void bindInsert(PreparedStatement stmt, Customer customer) throws SQLException {
+        stmt.setObject(1, IdColumns.toColumn(customer.getId()));
+        stmt.setString(2, customer.getName());
+        stmt.setString(3, customer.getContactNumber());
+        stmt.setString(4, customer.getPassword());
+        stmt.setInt(5, customer.getLoyaltyPoints());
+    }
+
     public Customer findById(String id) {
+        Customer cached = cache.get(id);
+        if (cached != null) {
+            return copy(cached);
+        }
+
+        long stamp = cache.removalStamp();
         String sql = "SELECT * FROM customers WHERE id = ?";
 
-        try (PreparedStatement stmt = getConnection().prepareStatement(sql)) {
-            stmt.setString(1, id);
+        try (Connection conn = getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setObject(1, IdColumns.toColumn(id));
 
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
-                    return new Customer.Builder()
-                            .setId(rs.getString("id"))
-                            .setName(rs.getString("name"))
-                            .setContactNumber(rs.getString("contact_number"))
-                            .setPassword(rs.getString("password"))
-                            .setLoyaltyPoints(rs.getInt("loyalty_points"))
-                            .build();
+                    Customer customer = mapCustomer(rs, "");
+                    cacheLoaded(customer, stamp);
+                    return customer;
                 }
             }
         } catch (SQLException e) {
             System.err.println("Error finding customer by ID: " + e.getMessage());
+            QueryMetrics.recordError();
         }
 
         return null;
     }
 
     public Customer findByContact(String contactNumber) {
+        String cachedId = contactIndex.get(contactNumber);
+        if (cachedId != null) {
+            Customer cached = cache.get(cachedId);
+            if (cached != null && contactNumber.equals(cached.getContactNumber())) {
+                return copy(cached);
+            }
+        }
+
+        long stamp = cache.removalStamp();
         String sql = "SELECT * FROM customers WHERE contact_number = ?";
 
-        try (PreparedStatement stmt = getConnection().prepareStatement(sql)) {
+        try (Connection conn = getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setString(1, contactNumber);
 
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
-                    return new Customer.Builder()
-                            .setId(rs.getString("id"))
-                            .setName(rs.getString("name"))
-                            .setContactNumber(rs.getString("contact_number"))
-                            .setPassword(rs.getString("password"))
-                            .setLoyaltyPoints(rs.getInt("loyalty_points"))
-                            .build();
+                    Customer customer = mapCustomer(rs, "");
+                    cacheLoaded(customer, stamp);
+                    return customer;
                 }
             }
         } catch (SQLException e) {
             System.err.println("Error finding customer by contact: " + e.getMessage());
+            QueryMetrics.recordError();
         }
 
         return null;
     }
 
+    public Customer authenticate(String contactNumber, String password) {
+        Customer customer = findByContact(contactNumber);
+        if (!PasswordHasher.verify(password, customer == null ? null : customer.getPassword())) {
+            return null;
+        }
+        if (PasswordHasher.needsRehash(customer.getPassword())) {
+            String hash = PasswordHasher.hash(password);
+            try (Connection conn = getConnection();
+                 PreparedStatement stmt = conn.prepareStatement(REHASH_SQL)) {
+                stmt.setString(1, hash);
+                stmt.setObject(2, IdColumns.toColumn(customer.getId()));
+                stmt.setString(3, customer.getPassword());
+                if (stmt.executeUpdate() > 0) {
+                    customer = withPassword(customer, hash);
+                }
+            } catch (SQLException e) {
+                // The login still succeeds; the password is rehashed at the next one
+                System.err.println("Error rehashing customer password: " + e.getMessage());
+                QueryMetrics.recordError();
+            }
+            evict(customer.getId());
+        }
+        return customer;
+    }
+
     public List<Customer> findAll() {
         List<Customer> customers = new ArrayList<>();
         String sql = "SELECT * FROM customers ORDER BY name";
 
-        try (Statement stmt = getConnection().createStatement();
+        try (Connection conn = getConnection();
+             Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
 
             while (rs.next()) {
-                Customer customer = new Customer.Builder()
-                        .setId(rs.getString("id"))
-                        .setName(rs.getString("name"))
-                        .setContactNumber(rs.getString("contact_number"))
-                        .setPassword(rs.getString("password"))
-                        .setLoyaltyPoints(rs.getInt("loyalty_points"))
-                        .build();
-                customers.add(customer);
+                customers.add(mapCustomer(rs, ""));
             }
         } catch (SQLException e) {
             System.err.println("Error finding all customers: " + e.getMessage());
+            QueryMetrics.recordError();
         }
 
         return customers;
     }
 
-    public boolean updateLoyaltyPoints(String customerId, int loyaltyPoints) {
-        String sql = "UPDATE customers SET loyalty_points = ? WHERE id = ?";
+    public Stream<Customer> streamAll() {
+        return ResultSetStream.of("SELECT * FROM customers", rs -> mapCustomer(rs, ""));
+    }
 
-        try (PreparedStatement stmt = getConnection().prepareStatement(sql)) {
-            stmt.setInt(1, loyaltyPoints);
-            stmt.setString(2, customerId);
+    public Page<Customer> findPage(String cursor, int limit) {
+        Page.checkLimit(limit);
+        String[] keys = Page.decodeCursor(cursor, 2);
+        List<Customer> customers = new ArrayList<>();
+        String sql = keys == null
+                ? "SELECT * FROM customers ORDER BY name, id LIMIT ?"
+                : "SELECT * FROM customers WHERE name >= ? AND (name > ? OR id > ?) ORDER BY name, id LIMIT ?";
+
+        try (Connection conn = getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            int index = 1;
+            if (keys != null) {
+                stmt.setString(index++, keys[0]);
+                stmt.setString(index++, keys[0]);
+                stmt.setObject(index++, IdColumns.toColumn(keys[1]));
+            }
+            stmt.setInt(index, limit + 1);
 
-            int rowsAffected = stmt.executeUpdate();
-            return rowsAffected > 0;
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    customers.add(mapCustomer(rs, ""));
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Error finding customer page: " + e.getMessage());
+            QueryMetrics.recordError();
+        }
+
+        return Page.fromRows(customers, limit, customer -> Page.encodeCursor(customer.getName(), customer.getId()));
+    }
+
+    public boolean addPoints(String customerId, int points, String reason) {
+        return changePoints(customerId, points, reason, false);
+    }
+
+    public boolean redeemPoints(String customerId, int points, String reason) {
+        if (points < 0) {
+            throw new IllegalArgumentException("Redeemed points must not be negative");
+        }
+        return changePoints(customerId, -points, reason, true);
+    }
+
+    /**
+     * Applies the delta in a single update, guarded for redemptions by the balance required, then appends it
+     * to the ledger in the same transaction. The cached copy is evicted rather than updated.
+     */
+    private boolean changePoints(String customerId, int delta, String reason, boolean redemption) {
+        boolean changed = false;
+        try {
+            changed = DatabaseConnection.getInstance().inTransaction(() -> {
+                try (Connection conn = getConnection();
+                     PreparedStatement stmt = conn.prepareStatement(redemption ? REDEEM_POINTS_SQL : ADD_POINTS_SQL)) {
+                    stmt.setInt(1, delta);
+                    stmt.setObject(2, IdColumns.toColumn(customerId));
+                    if (redemption) {
+                        stmt.setInt(3, -delta);
+                    }
+                    if (stmt.executeUpdate() == 0) {
+                        return false;
+                    }
+                }
+                try (Connection conn = getConnection();
+                     PreparedStatement stmt = conn.prepareStatement(LEDGER_INSERT_SQL)) {
+                    stmt.setObject(1, IdColumns.toColumn(customerId));
+                    stmt.setInt(2, delta);
+                    stmt.setString(3, reason);
+                    stmt.executeUpdate();
+                }
+                return true;
+            });
         } catch (SQLException e) {
             System.err.println("Error updating loyalty points: " + e.getMessage());
+            QueryMetrics.recordError();
         }
 
-        return false;
+        // Patching the cached balance would race with other tills changing it; the next read loads the stored one
+        cache.remove(customerId);
+        return changed;
+    }
+
+    public boolean addPointsBatch(String batchId, List<PointsAccrual> accruals) {
+        // Sorted, so tills flushing at the same time lock the customer rows in the same order
+        Map<String, Integer> totals = new TreeMap<>();
+        for (PointsAccrual accrual : accruals) {
+            totals.merge(accrual.getCustomerId(), accrual.getPoints(), Integer::sum);
+        }
+
+        boolean applied = false;
+        try {
+            applied = DatabaseConnection.getInstance().inTransaction(() -> {
+                try (Connection conn = getConnection()) {
+                    try (PreparedStatement stmt = conn.prepareStatement(BATCH_INSERT_SQL)) {
+                        stmt.setString(1, batchId);
+                        stmt.executeUpdate();
+                    } catch (SQLIntegrityConstraintViolationException e) {
+                        return false;
+                    }
+                    try (PreparedStatement stmt = conn.prepareStatement(ADD_POINTS_SQL)) {
+                        for (Map.Entry<String, Integer> total : totals.entrySet()) {
+                            stmt.setInt(1, total.getValue());
+                            stmt.setObject(2, IdColumns.toColumn(total.getKey()));
+                            stmt.addBatch();
+                        }
+                        stmt.executeBatch();
+                    }
+                    try (PreparedStatement stmt = conn.prepareStatement(LEDGER_INSERT_EXISTING_SQL)) {
+                        for (PointsAccrual accrual : accruals) {
+                            stmt.setInt(1, accrual.getPoints());
+                            stmt.setString(2, accrual.getReason());
+                            stmt.setObject(3, IdColumns.toColumn(accrual.getCustomerId()));
+                            stmt.addBatch();
+                        }
+                        stmt.executeBatch();
+                    }
+                }
+                return true;
+            });
+        } catch (SQLException e) {
+            System.err.println("Error applying loyalty points batch " + batchId + ": " + e.getMessage());
+            QueryMetrics.recordError();
+            totals.keySet().forEach(cache::remove);
+            return false;
+        }
+
+        if (applied) {
+            totals.keySet().forEach(cache::remove);
+        }
+        return true;
     }
 
+    /** Updates the profile; the loyalty balance is left as stored, it only changes through addPoints/redeemPoints. **/
     public boolean update(Customer customer) {
-        String sql = "UPDATE customers SET name = ?, contact_number = ?, password = ?, loyalty_points = ? WHERE id = ?";
+        Customer stored = withHashedPassword(customer);
+        String sql = "UPDATE customers SET name = ?, contact_number = ?, password = ? WHERE id = ?";
 
-        try (PreparedStatement stmt = getConnection().prepareStatement(sql)) {
-            stmt.setString(1, customer.getName());
-            stmt.setString(2, customer.getContactNumber());
-            stmt.setString(3, customer.getPassword());
-            stmt.setInt(4, customer.getLoyaltyPoints());
-            stmt.setString(5, customer.getId());
+        try (Connection conn = getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, stored.getName());
+            stmt.setString(2, stored.getContactNumber());
+            stmt.setString(3, stored.getPassword());
+            stmt.setObject(4, IdColumns.toColumn(stored.getId()));
 
             int rowsAffected = stmt.executeUpdate();
+            // the copy passed in may hold a stale balance, so the next read loads the stored one
+            evict(stored.getId());
             return rowsAffected > 0;
         } catch (SQLException e) {
             System.err.println("Error updating customer: " + e.getMessage());
+            QueryMetrics.recordError();
+            evict(customer.getId());
         }
 
         return false;
@@ -154,13 +413,16 @@ public class CustomerRepository implements ICustomerRepository {
     public boolean delete(String id) {
         String sql = "DELETE FROM customers WHERE id = ?";
 
-        try (PreparedStatement stmt = getConnection().prepareStatement(sql)) {
-            stmt.setString(1, id);
+        try (Connection conn = getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setObject(1, IdColumns.toColumn(id));
 
             int rowsAffected = stmt.executeUpdate();
+            evict(id);
             return rowsAffected > 0;
         } catch (SQLException e) {
             System.err.println("Error deleting customer: " + e.getMessage());
+            QueryMetrics.recordError();
         }
 
         return false;
@@ -0,0 +1,20 @@
+package fr.efrei.repository;
+
+import java.time.LocalDate;
+import java.util.Comparator;
+
+/** Sort key of rentals and sales in the in-memory repositories: newest first, then by id descending. **/
+record DatedKey(LocalDate date, String id) {
+    static final Comparator<DatedKey> NEWEST_FIRST =
+            Comparator.comparing(DatedKey::date).thenComparing(DatedKey::id).reversed();
+
+    /** The key stored in a page cursor, or null for the first page. **/
+    static DatedKey fromCursor(String cursor) {
+        String[] keys = Page.decodeCursor(cursor, 2);
+        return keys == null ? null : new DatedKey(LocalDate.parse(keys[0]), keys[1]);
+    }
+
+    String toCursor() {
+        return Page.encodeCursor(date.toString(), id);
+    }
+}
@@ -2,57 +2,84 @@ package fr.efrei.repository;
 
 import fr.efrei.domain.Employee;
 import fr.efrei.util.DatabaseConnection;
+import fr.efrei.util.PasswordHasher;
+import fr.efrei.util.QueryMetrics;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 public class EmployeeRepository implements IEmployeeRepository {
+    private static final String INSERT_SQL = "INSERT INTO employees (id, name, email, password) VALUES (?, ?, ?, ?)";
+    // Only replaces the password that was verified, in case it changed in the meantime
+    private static final String REHASH_SQL = "UPDATE employees SET password = ? WHERE id = ? AND password = ?";
+
     private static EmployeeRepository instance;
 
     private EmployeeRepository() {}
 
-    public static EmployeeRepository getInstance() {
+    public static synchronized EmployeeRepository getInstance() {
         if (instance == null) {
             instance = new EmployeeRepository();
         }
         return instance;
     }
 
-    private Connection getConnection() {
+    private Connection getConnection() throws SQLException {
         return DatabaseConnection.getInstance().getConnection();
     }
 
-    public Employee save(Employee employee) {
-        String sql = "INSERT INTO employees (id, name, email, password) VALUES (?, ?, ?, ?)";
+    /** The employee as stored: with its password hashed if it was given in plain text. **/
+    static Employee withHashedPassword(Employee employee) {
+        String password = PasswordHasher.hashIfPlain(employee.getPassword());
+        return password.equals(employee.getPassword()) ? employee
+                : new Employee(employee.getId(), employee.getName(), employee.getEmail(), password);
+    }
 
-        try (PreparedStatement stmt = getConnection().prepareStatement(sql)) {
-            stmt.setString(1, employee.getId());
-            stmt.setString(2, employee.getName());
-            stmt.setString(3, employee.getEmail());
-            stmt.setString(4, employee.getPassword());
+    public Employee save(Employee employee) {
+        Employee stored = withHashedPassword(employee);
+        try (Connection conn = getConnection();
+             PreparedStatement stmt = conn.prepareStatement(INSERT_SQL)) {
+            bindInsert(stmt, stored);
 
             int rowsAffected = stmt.executeUpdate();
             if (rowsAffected > 0) {
-                return employee;
+                return stored;
             }
         } catch (SQLException e) {
             System.err.println("Error saving employee: " + e.getMessage());
+            QueryMetrics.recordError();
         }
 
         return null;
     }
 
+    public BatchResult<Employee> saveAll(Collection<Employee> employees, int batchSize) {
+        List<Employee> stored = employees == null ? null
+                : employees.stream().map(EmployeeRepository::withHashedPassword).toList();
+        return BatchWriter.write(INSERT_SQL, stored, EmployeeRepository::bindInsert, batchSize);
+    }
+
+    private static void bindInsert(PreparedStatement stmt, Employee employee) throws SQLException {
+        stmt.setObject(1, IdColumns.toColumn(employee.getId()));
+        stmt.setString(2, employee.getName());
+        stmt.setString(3, employee.getEmail());
+        stmt.setString(4, employee.getPassword());
+    }
+
     public Employee findById(String id) {
         String sql = "SELECT * FROM employees WHERE id = ?";
 
-        try (PreparedStatement stmt = getConnection().prepareStatement(sql)) {
-            stmt.setString(1, id);
+        try (Connection conn = getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setObject(1, IdColumns.toColumn(id));
 
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
                     return new Employee(
-                            rs.getString("id"),
+                            IdColumns.read(rs, "id"),
                             rs.getString("name"),
                             rs.getString("email"),
                             rs.getString("password")
@@ -61,6 +88,7 @@ public class EmployeeRepository implements IEmployeeRepository {
             }
         } catch (SQLException e) {
             System.err.println("Error finding employee by ID: " + e.getMessage());
+            QueryMetrics.recordError();
         }
 
         return null;
@@ -69,13 +97,14 @@ public class EmployeeRepository implements IEmployeeRepository {
     public Employee findByEmail(String email) {
         String sql = "SELECT * FROM employees WHERE email = ?";
 
-        try (PreparedStatement stmt = getConnection().prepareStatement(sql)) {
+        try (Connection conn = getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setString(1, email);
 
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
                     return new Employee(
-                            rs.getString("id"),
+                            IdColumns.read(rs, "id"),
                             rs.getString("name"),
                             rs.getString("email"),
                             rs.getString("password")
@@ -84,21 +113,47 @@ public class EmployeeRepository implements IEmployeeRepository {
             }
         } catch (SQLException e) {
             System.err.println("Error finding employee by email: " + e.getMessage());
+            QueryMetrics.recordError();
         }
 
         return null;
     }
 
+    public Employee authenticate(String email, String password) {
+        Employee employee = findByEmail(email);
+        if (!PasswordHasher.verify(password, employee == null ? null : employee.getPassword())) {
+            return null;
+        }
+        if (PasswordHasher.needsRehash(employee.getPassword())) {
+            String hash = PasswordHasher.hash(password);
+            try (Connection conn = getConnection();
+                 PreparedStatement stmt = conn.prepareStatement(REHASH_SQL)) {
+                stmt.setString(1, hash);
+                stmt.setObject(2, IdColumns.toColumn(employee.getId()));
+                stmt.setString(3, employee.getPassword());
+                if (stmt.executeUpdate() > 0) {
+                    employee = new Employee(employee.getId(), employee.getName(), employee.getEmail(), hash);
+                }
+            } catch (SQLException e) {
+                // The login still succeeds; the password is rehashed at the next one
+                System.err.println("Error rehashing employee password: " + e.getMessage());
+                QueryMetrics.recordError();
+            }
+        }
+        return employee;
+    }
+
     public List<Employee> findAll() {
         List<Employee> employees = new ArrayList<>();
         String sql = "SELECT * FROM employees ORDER BY name";
 
-        try (Statement stmt = getConnection().createStatement();
+        try (Connection conn = getConnection();
+             Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
 
             while (rs.next()) {
                 Employee employee = new Employee(
-                        rs.getString("id"),
+                        IdColumns.read(rs, "id"),
                         rs.getString("name"),
                         rs.getString("email"),
                         rs.getString("password")
@@ -107,24 +162,36 @@ public class EmployeeRepository implements IEmployeeRepository {
             }
         } catch (SQLException e) {
             System.err.println("Error finding all employees: " + e.getMessage());
+            QueryMetrics.recordError();
         }
 
         return employees;
     }
 
+    public Stream<Employee> streamAll() {
+        return ResultSetStream.of("SELECT * FROM employees", rs -> new Employee(
+                IdColumns.read(rs, "id"),
+                rs.getString("name"),
+                rs.getString("email"),
+                rs.getString("password")
+        ));
+    }
+
     public boolean update(Employee employee) {
         String sql = "UPDATE employees SET name = ?, email = ?, password = ? WHERE id = ?";
 
-        try (PreparedStatement stmt = getConnection().prepareStatement(sql)) {
+        try (Connection conn = getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setString(1, employee.getName());
             stmt.setString(2, employee.getEmail());
-            stmt.setString(3, employee.getPassword());
-            stmt.setString(4, employee.getId());
+            stmt.setString(3, PasswordHasher.hashIfPlain(employee.getPassword()));
+            stmt.setObject(4, IdColumns.toColumn(employee.getId()));
 
             int rowsAffected = stmt.executeUpdate();
             return rowsAffected > 0;
         } catch (SQLException e) {
             System.err.println("Error updating employee: " + e.getMessage());
+            QueryMetrics.recordError();
         }
 
         return false;
@@ -133,13 +200,15 @@ public class EmployeeRepository implements IEmployeeRepository {
     public boolean delete(String id) {
         String sql = "DELETE FROM employees WHERE id = ?";
 
-        try (PreparedStatement stmt = getConnection().prepareStatement(sql)) {
-            stmt.setString(1, id);
+        try (Connection conn = getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setObject(1, IdColumns.toColumn(id));
 
             int rowsAffected = stmt.executeUpdate();
             return rowsAffected > 0;
         } catch (SQLException e) {
             System.err.println("Error deleting employee: " + e.getMessage());
+            QueryMetrics.recordError();
         }
 
         return false;
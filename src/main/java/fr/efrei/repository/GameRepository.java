@@ -3,75 +3,224 @@ package fr.efrei.repository;
 import fr.efrei.domain.Game;
 import fr.efrei.domain.GamePlatform;
 import fr.efrei.domain.GameType;
-import fr.efrei.factory.GameFactory;
+import fr.efrei.util.Config;
 import fr.efrei.util.DatabaseConnection;
+import fr.efrei.util.LruCache;
+import fr.efrei.util.QueryMetrics;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 public class GameRepository implements IGameRepository {
 
+    private static final String INSERT_SQL = "INSERT INTO games (id, title, genre, platform, is_available, type, price) VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    private static final int IN_LIST_SIZE = 500;
+
     private static GameRepository instance;
 
-    private GameRepository() {}
+    // Read-through catalog cache. Callers always get copies, so mutating a returned Game never touches the cache.
+    private final LruCache<String, Game> cache;
+    private final LruCache<String, List<String>> platformTypeIndex;
+
+    // Whole-catalog index for availability queries, loaded on first use and rebuilt every CATALOG_INDEX_REFRESH_MS
+    // to pick up changes made by other tills; writes made through this repository are applied to it directly.
+    private final long catalogRefreshMillis;
+    private final ReentrantLock catalogLoading = new ReentrantLock();
+    private volatile CatalogIndex catalogIndex;
+    private volatile long catalogLoadedAt;
 
-    public static GameRepository getInstance() {
+    private GameRepository() {
+        long ttlMillis = Config.getLong("GAME_CACHE_TTL_MS", 300_000);
+        this.cache = new LruCache<>(Config.getInt("GAME_CACHE_MAX_SIZE", 10_000), ttlMillis);
+        this.platformTypeIndex = new LruCache<>(GamePlatform.values().length * GameType.values().length, ttlMillis);
+        this.catalogRefreshMillis = Config.getLong("CATALOG_INDEX_REFRESH_MS", 60_000);
+    }
+
+    public static synchronized GameRepository getInstance() {
         if (instance == null) {
             instance = new GameRepository();
         }
         return instance;
     }
 
-    private Connection getConnection() {
+    private Connection getConnection() throws SQLException {
         return DatabaseConnection.getInstance().getConnection();
     }
 
+    /** Builds a game from the current row; prefix selects aliased columns in joined queries. **/
+    static Game mapGame(ResultSet rs, String prefix) throws SQLException {
+        return new Game.Builder()
+            .setId(IdColumns.read(rs, prefix + "id"))
+            .setTitle(rs.getString(prefix + "title"))
+            .setGenre(rs.getString(prefix + "genre"))
+            .setPlatform(GamePlatform.valueOf(rs.getString(prefix + "platform")))
+            .setAvailable(rs.getBoolean(prefix + "is_available"))
+            .setType(GameType.valueOf(rs.getString(prefix + "type")))
+            .setPrice(rs.getDouble(prefix + "price"))
+            .setVersion(rs.getInt(prefix + "version"))
+            .build();
+    }
+
+    static Game copy(Game game) {
+        return new Game.Builder()
+            .setId(game.getId())
+            .setTitle(game.getTitle())
+            .setGenre(game.getGenre())
+            .setPlatform(game.getPlatform())
+            .setAvailable(game.isAvailable())
+            .setType(game.getType())
+            .setPrice(game.getPrice())
+            .setVersion(game.getVersion())
+            .build();
+    }
+
+    private static String indexKey(GamePlatform platform, GameType type) {
+        return platform.name() + ":" + type.name();
+    }
+
+    private void cache(Game game) {
+        cache.put(game.getId(), copy(game));
+    }
+
+    public LruCache.CacheStats getCacheStats() {
+        return cache.getStats();
+    }
+
+    /**
+     * Drops a game from the cache, e.g. after a transaction that updated it was rolled back.
+     * The catalog index was updated before the rollback too, so its entry is reloaded from the database.
+     */
+    public void invalidate(String id) {
+        cache.remove(id);
+        updateCatalog(index -> {
+            Game current = findById(id);
+            if (current != null) {
+                index.put(current);
+            } else {
+                index.remove(id);
+            }
+        });
+    }
+
+    public void clearCache() {
+        cache.clear();
+        platformTypeIndex.clear();
+    }
+
+    /**
+     * The catalog index, loaded if missing or older than CATALOG_INDEX_REFRESH_MS. While one thread reloads it,
+     * the others keep answering from the previous index.
+     */
+    private CatalogIndex catalogIndex() {
+        CatalogIndex index = catalogIndex;
+        boolean stale = index == null || System.currentTimeMillis() - catalogLoadedAt > catalogRefreshMillis;
+        if (!stale) {
+            return index;
+        }
+        if (index != null && !catalogLoading.tryLock()) {
+            return index;
+        }
+        if (index == null) {
+            catalogLoading.lock();
+        }
+        try {
+            if (catalogIndex != index && catalogIndex != null) {
+                return catalogIndex;
+            }
+            CatalogIndex loaded = new CatalogIndex(index == null ? 1_024 : index.size());
+            try (Stream<Game> games = streamAll()) {
+                games.forEach(loaded::put);
+            } catch (RuntimeException e) {
+                System.err.println("Error loading catalog index: " + e.getMessage());
+                QueryMetrics.recordError();
+                return index != null ? index : loaded;
+            }
+            catalogIndex = loaded;
+            catalogLoadedAt = System.currentTimeMillis();
+            return loaded;
+        } finally {
+            catalogLoading.unlock();
+        }
+    }
+
+    private void updateCatalog(Consumer<CatalogIndex> change) {
+        CatalogIndex index = catalogIndex;
+        if (index != null) {
+            change.accept(index);
+        }
+    }
+
     @Override
     public Game save(Game game) {
-        String sql = "INSERT INTO games (id, title, genre, platform, is_available, type, price) VALUES (?, ?, ?, ?, ?, ?, ?)";
-
-        try (PreparedStatement stmt = getConnection().prepareStatement(sql)) {
-            stmt.setString(1, game.getId());
-            stmt.setString(2, game.getTitle());
-            stmt.setString(3, game.getGenre());
-            stmt.setString(4, game.getPlatform().name());
-            stmt.setBoolean(5, game.isAvailable());
-            stmt.setString(6, game.getType().name());
-            stmt.setDouble(7, game.getPrice());
+        try (Connection conn = getConnection();
+             PreparedStatement stmt = conn.prepareStatement(INSERT_SQL)) {
+            bindInsert(stmt, game);
 
             int rowsAffected = stmt.executeUpdate();
             if (rowsAffected > 0) {
+                cache(game);
+                platformTypeIndex.remove(indexKey(game.getPlatform(), game.getType()));
+                updateCatalog(index -> index.put(game));
                 return game;
             }
         } catch (SQLException e) {
             System.err.println("Error saving game: " + e.getMessage());
+            QueryMetrics.recordError();
         }
 
         return null;
     }
 
+    @Override
+    public BatchResult<Game> saveAll(Collection<Game> games, int batchSize) {
+        BatchResult<Game> result = BatchWriter.write(INSERT_SQL, games, GameRepository::bindInsert, batchSize);
+        platformTypeIndex.clear();
+        updateCatalog(index -> result.getSaved().forEach(index::put));
+        return result;
+    }
+
+    private static void bindInsert(PreparedStatement stmt, Game game) throws SQLException {
+        stmt.setObject(1, IdColumns.toColumn(game.getId()));
+        stmt.setString(2, game.getTitle());
+        stmt.setString(3, game.getGenre());
+        stmt.setString(4, game.getPlatform().name());
+        stmt.setBoolean(5, game.isAvailable());
+        stmt.setString(6, game.getType().name());
+        stmt.setDouble(7, game.getPrice());
+    }
+
     @Override
     public Game findById(String id) {
+        Game cached = cache.get(id);
+        if (cached != null) {
+            return copy(cached);
+        }
+
         String sql = "SELECT * FROM games WHERE id = ?";
 
-        try (PreparedStatement stmt = getConnection().prepareStatement(sql)) {
-            stmt.setString(1, id);
-            ResultSet rs = stmt.executeQuery();
-
-            if (rs.next()) {
-                return GameFactory.create(
-                    rs.getString("id"),
-                    rs.getString("title"),
-                    rs.getString("genre"),
-                    GamePlatform.valueOf(rs.getString("platform")),
-                    rs.getBoolean("is_available"),
-                    GameType.valueOf(rs.getString("type")),
-                    rs.getDouble("price")
-                );
+        try (Connection conn = getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setObject(1, IdColumns.toColumn(id));
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    Game game = mapGame(rs, "");
+                    cache(game);
+                    return game;
+                }
             }
         } catch (SQLException e) {
             System.err.println("Error finding game: " + e.getMessage());
+            QueryMetrics.recordError();
         }
         return null;
     }
@@ -81,85 +230,240 @@ public class GameRepository implements IGameRepository {
         List<Game> games = new ArrayList<>();
         String sql = "SELECT * FROM games ORDER BY title";
 
-        try (Statement stmt = getConnection().createStatement();
+        try (Connection conn = getConnection();
+             Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
 
             while (rs.next()) {
-                Game game = GameFactory.create(
-                    rs.getString("id"),
-                    rs.getString("title"),
-                    rs.getString("genre"),
-                    GamePlatform.valueOf(rs.getString("platform")),
-                    rs.getBoolean("is_available"),
-                    GameType.valueOf(rs.getString("type")),
-                    rs.getDouble("price")
-                );
+                Game game = mapGame(rs, "");
+                cache(game);
                 games.add(game);
             }
         } catch (SQLException e) {
             System.err.println("Error finding all games: " + e.getMessage());
+            QueryMetrics.recordError();
         }
 
         return games;
     }
 
+    @Override
+    public Stream<Game> streamAll() {
+        return ResultSetStream.of("SELECT * FROM games", rs -> mapGame(rs, ""));
+    }
+
     @Override
     public List<Game> findByPlatformAndType(GamePlatform platform, GameType type) {
+        String key = indexKey(platform, type);
+        List<String> ids = platformTypeIndex.get(key);
+        if (ids != null) {
+            List<Game> cached = new ArrayList<>(ids.size());
+            for (String id : ids) {
+                Game game = cache.get(id);
+                if (game == null) {
+                    cached = null;
+                    break;
+                }
+                cached.add(copy(game));
+            }
+            if (cached != null) {
+                return cached;
+            }
+        }
+
         List<Game> games = new ArrayList<>();
         String sql = "SELECT * FROM games WHERE platform = ? AND type = ?";
 
-        try (PreparedStatement stmt = getConnection().prepareStatement(sql)) {
+        try (Connection conn = getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setString(1, platform.name());
             stmt.setString(2, type.name());
-            ResultSet rs = stmt.executeQuery();
 
-            while (rs.next()) {
-                games.add(GameFactory.create(
-                    rs.getString("id"),
-                    rs.getString("title"),
-                    rs.getString("genre"),
-                    GamePlatform.valueOf(rs.getString("platform")),
-                    rs.getBoolean("is_available"),
-                    GameType.valueOf(rs.getString("type")),
-                    rs.getDouble("price")
-                ));
+            List<String> loadedIds = new ArrayList<>();
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    Game game = mapGame(rs, "");
+                    cache(game);
+                    loadedIds.add(game.getId());
+                    games.add(game);
+                }
             }
+            platformTypeIndex.put(key, List.copyOf(loadedIds));
         } catch (SQLException e) {
             System.err.println("Error finding games: " + e.getMessage());
+            QueryMetrics.recordError();
+        }
+        return games;
+    }
+
+    @Override
+    public List<Game> findAvailable(GamePlatform platform, GameType type, double maxPrice, int limit) {
+        CatalogIndex index = catalogIndex();
+        String[] ids = new String[Math.max(0, Math.min(limit, index.size()))];
+        int found = index.findAvailable(platform, type, maxPrice, ids);
+
+        // The index may lag behind other tills, so the rows are checked again once loaded
+        int maxCents = CatalogIndex.toCents(maxPrice);
+        List<Game> games = findByIds(Arrays.asList(ids).subList(0, found));
+        games.removeIf(game -> !game.isAvailable() || game.getPlatform() != platform || game.getType() != type
+                || CatalogIndex.toCents(game.getPrice()) > maxCents);
+        return games;
+    }
+
+    @Override
+    public int countAvailable(GamePlatform platform, GameType type, double maxPrice) {
+        return catalogIndex().countAvailable(platform, type, maxPrice);
+    }
+
+    /** Games with the given ids in the same order, from the cache or with one IN query per 500 missing ids. **/
+    private List<Game> findByIds(List<String> ids) {
+        Map<String, Game> loaded = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String id : ids) {
+            Game cached = cache.get(id);
+            if (cached != null) {
+                loaded.put(id, copy(cached));
+            } else {
+                missing.add(id);
+            }
+        }
+
+        for (int from = 0; from < missing.size(); from += IN_LIST_SIZE) {
+            List<String> chunk = missing.subList(from, Math.min(from + IN_LIST_SIZE, missing.size()));
+            String sql = "SELECT * FROM games WHERE id IN (" + "?, ".repeat(chunk.size() - 1) + "?)";
+
+            try (Connection conn = getConnection();
+                 PreparedStatement stmt = conn.prepareStatement(sql)) {
+                for (int i = 0; i < chunk.size(); i++) {
+                    stmt.setObject(i + 1, IdColumns.toColumn(chunk.get(i)));
+                }
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        Game game = mapGame(rs, "");
+                        cache(game);
+                        loaded.put(game.getId(), game);
+                    }
+                }
+            } catch (SQLException e) {
+                System.err.println("Error finding games: " + e.getMessage());
+                QueryMetrics.recordError();
+            }
+        }
+
+        List<Game> games = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            Game game = loaded.get(id);
+            if (game != null) {
+                games.add(game);
+            }
         }
         return games;
     }
 
     @Override
     public boolean update(Game game) {
-        String sql = "UPDATE games SET title = ?, genre = ?, platform = ?, is_available = ?, type = ?, price = ? WHERE id = ?";
+        String sql = "UPDATE games SET title = ?, genre = ?, platform = ?, is_available = ?, type = ?, price = ?, " +
+                     "version = version + 1 WHERE id = ?";
 
-        try (PreparedStatement stmt = getConnection().prepareStatement(sql)) {
+        try (Connection conn = getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setString(1, game.getTitle());
             stmt.setString(2, game.getGenre());
             stmt.setString(3, game.getPlatform().name());
             stmt.setBoolean(4, game.isAvailable());
             stmt.setString(5, game.getType().name());
             stmt.setDouble(6, game.getPrice());
-            stmt.setString(7, game.getId());
-            return stmt.executeUpdate() > 0;
+            stmt.setObject(7, IdColumns.toColumn(game.getId()));
+            boolean updated = stmt.executeUpdate() > 0;
+            evictUpdated(game);
+            if (updated) {
+                updateCatalog(index -> index.put(game));
+            }
+            return updated;
         } catch (SQLException e) {
             System.err.println("Error updating game: " + e.getMessage());
+            QueryMetrics.recordError();
+            evictUpdated(game);
             return false;
         }
     }
 
+    /** The row version changed, so the cached copy is dropped rather than rewritten. **/
+    private void evictUpdated(Game game) {
+        Game previous = cache.remove(game.getId());
+        String key = indexKey(game.getPlatform(), game.getType());
+        if (previous == null) {
+            platformTypeIndex.clear();
+        } else if (!indexKey(previous.getPlatform(), previous.getType()).equals(key)) {
+            platformTypeIndex.remove(indexKey(previous.getPlatform(), previous.getType()));
+            platformTypeIndex.remove(key);
+        }
+    }
+
+    @Override
+    public Reservation tryReserve(String gameId, int expectedVersion) {
+        String sql = "UPDATE games SET is_available = false, version = version + 1 " +
+                     "WHERE id = ? AND version = ? AND is_available = true";
+
+        try (Connection conn = getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setObject(1, IdColumns.toColumn(gameId));
+            stmt.setInt(2, expectedVersion);
+            int rowsAffected = stmt.executeUpdate();
+            cache.remove(gameId);
+            if (rowsAffected > 0) {
+                updateCatalog(index -> index.setAvailable(gameId, false));
+                return Reservation.RESERVED;
+            }
+        } catch (SQLException e) {
+            // Not a version race: retrying as one would only hit the same error, so the checkout gives up
+            System.err.println("Error reserving game: " + e.getMessage());
+            QueryMetrics.recordError();
+            cache.remove(gameId);
+            return Reservation.UNAVAILABLE;
+        }
+
+        Game current = findById(gameId);
+        return current != null && current.isAvailable() ? Reservation.CONFLICT : Reservation.UNAVAILABLE;
+    }
+
+    @Override
+    public boolean release(String gameId) {
+        String sql = "UPDATE games SET is_available = true, version = version + 1 WHERE id = ?";
+
+        try (Connection conn = getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setObject(1, IdColumns.toColumn(gameId));
+            int rowsAffected = stmt.executeUpdate();
+            cache.remove(gameId);
+            if (rowsAffected > 0) {
+                updateCatalog(index -> index.setAvailable(gameId, true));
+            }
+            return rowsAffected > 0;
+        } catch (SQLException e) {
+            System.err.println("Error releasing game: " + e.getMessage());
+            QueryMetrics.recordError();
+            cache.remove(gameId);
+        }
+        return false;
+    }
+
     @Override
     public boolean delete(String id) {
         String sql = "DELETE FROM games WHERE id = ?";
 
-        try (PreparedStatement stmt = getConnection().prepareStatement(sql)) {
-            stmt.setString(1, id);
+        try (Connection conn = getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setObject(1, IdColumns.toColumn(id));
 
             int rowsAffected = stmt.executeUpdate();
+            cache.remove(id);
+            platformTypeIndex.removeIf(ids -> ids.contains(id));
+            updateCatalog(index -> index.remove(id));
             return rowsAffected > 0;
         } catch (SQLException e) {
             System.err.println("Error deleting game: " + e.getMessage());
+            QueryMetrics.recordError();
         }
 
         return false;
@@ -1,11 +1,52 @@
 package fr.efrei.repository;
 
 import fr.efrei.domain.Customer;
+import fr.efrei.domain.PointsAccrual;
+
+import java.util.List;
 
 public interface ICustomerRepository extends IRepository<Customer> {
 
     Customer findByContact(String contactNumber);
 
-    boolean updateLoyaltyPoints(String customerId, int loyaltyPoints);
+    /**
+     * Updates the name, contact number and password. The loyalty balance of the customer passed in is ignored:
+     * it may be stale, and balances only change through addPoints and redeemPoints.
+     */
+    @Override
+    boolean update(Customer customer);
+
+    /**
+     * Returns the customer if the password matches, or null. A password still stored in plain text or hashed
+     * with fewer iterations than configured is rehashed on success.
+     */
+    Customer authenticate(String contactNumber, String password);
+
+    /** Customers ordered by name, using keyset pagination. Pass a null cursor for the first page. **/
+    Page<Customer> findPage(String cursor, int limit);
+
+    /**
+     * Adds points (removes them if negative) to the balance stored in the database and records the change in
+     * the loyalty ledger, so concurrent tills never overwrite each other's changes. Returns false if the
+     * customer does not exist.
+     */
+    boolean addPoints(String customerId, int points, String reason);
+
+    /**
+     * Takes points from the balance only if it holds at least that many, in the same single update, and
+     * records the change in the loyalty ledger. Returns false, changing nothing, if the balance is too low.
+     */
+    boolean redeemPoints(String customerId, int points, String reason);
+
+    /**
+     * Applies buffered accruals in one transaction: one update per customer with the sum of its points, and one
+     * ledger row per accrual. The batch id is recorded with it, so applying the same batch again (e.g. when a
+     * journal is replayed after a crash) changes nothing. Accruals of customers deleted since are dropped.
+     * Returns false, applying nothing, if the transaction failed.
+     */
+    boolean addPointsBatch(String batchId, List<PointsAccrual> accruals);
+
+    /** Drops any cached copy of the customer, e.g. after a transaction that updated it was rolled back. **/
+    void invalidate(String id);
 }
 
@@ -5,5 +5,11 @@ import fr.efrei.domain.Employee;
 public interface IEmployeeRepository extends IRepository<Employee> {
 
     Employee findByEmail(String email);
+
+    /**
+     * Returns the employee if the password matches, or null. A password still stored in plain text or hashed
+     * with fewer iterations than configured is rehashed on success.
+     */
+    Employee authenticate(String email, String password);
 }
 
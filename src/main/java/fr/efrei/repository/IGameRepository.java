@@ -8,5 +8,24 @@ import java.util.List;
 public interface IGameRepository extends IRepository<Game> {
 
     List<Game> findByPlatformAndType(GamePlatform platform, GameType type);
+
+    /** Up to limit available games of the given platform and type priced at most maxPrice, found through the catalog index. **/
+    List<Game> findAvailable(GamePlatform platform, GameType type, double maxPrice, int limit);
+
+    /** Number of available games of the given platform and type priced at most maxPrice, read from the catalog index only. **/
+    int countAvailable(GamePlatform platform, GameType type, double maxPrice);
+
+    /**
+     * Marks the game unavailable only if it is still available and its version is still expectedVersion.
+     * Never blocks: a concurrent change makes it return CONFLICT, and the caller may reload and retry.
+     * A database error returns UNAVAILABLE, so it is never retried as a conflict.
+     */
+    Reservation tryReserve(String gameId, int expectedVersion);
+
+    /** Marks the game available again, e.g. when a rental is returned. **/
+    boolean release(String gameId);
+
+    /** Drops any cached copy of the game, e.g. after a transaction that updated it was rolled back. **/
+    void invalidate(String id);
 }
 
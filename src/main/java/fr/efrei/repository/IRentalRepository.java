@@ -1,11 +1,28 @@
 package fr.efrei.repository;
 
+import fr.efrei.domain.GamePlatform;
 import fr.efrei.domain.Rental;
+import fr.efrei.domain.RentalSummary;
+import java.time.YearMonth;
 import java.util.List;
+import java.util.Map;
 
 public interface IRentalRepository extends IRepository<Rental> {
 
     List<Rental> findActiveByCustomer(String customerId);
 
     List<Rental> findByCustomer(String customerId);
-}
\ No newline at end of file
+
+    /** Rentals from newest to oldest, using keyset pagination. Pass a null cursor for the first page. **/
+    Page<Rental> findPage(String cursor, int limit);
+
+    Page<Rental> findPageByCustomer(String customerId, String cursor, int limit);
+
+    RentalSummary getSummary();
+
+    Map<GamePlatform, Long> countByPlatform();
+
+    Map<String, Long> countByGenre();
+
+    Map<YearMonth, Long> countByMonth();
+}
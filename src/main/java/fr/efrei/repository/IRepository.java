@@ -1,15 +1,30 @@
 package fr.efrei.repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface IRepository<T> {
 
     T save(T entity);
 
+    /** Inserts all entities using JDBC batches of the given size, one transaction per batch. **/
+    BatchResult<T> saveAll(Collection<T> entities, int batchSize);
+
+    default BatchResult<T> saveAll(Collection<T> entities) {
+        return saveAll(entities, BatchWriter.DEFAULT_BATCH_SIZE);
+    }
+
     T findById(String id);
 
     List<T> findAll();
 
+    /**
+     * Streams every row without loading the whole table in memory.
+     * The stream holds a database connection until closed: use it in a try-with-resources block.
+     */
+    Stream<T> streamAll();
+
     boolean update(T entity);
 
     boolean delete(String id);
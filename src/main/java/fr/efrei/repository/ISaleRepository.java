@@ -1,7 +1,11 @@
 package fr.efrei.repository;
 
+import fr.efrei.domain.GamePlatform;
 import fr.efrei.domain.Sale;
+import fr.efrei.domain.SalesSummary;
+import java.time.YearMonth;
 import java.util.List;
+import java.util.Map;
 
 public interface ISaleRepository extends IRepository<Sale> {
 
@@ -9,6 +13,16 @@ public interface ISaleRepository extends IRepository<Sale> {
 
     List<Sale> findByGame(String gameId);
 
+    /** Sales from newest to oldest, using keyset pagination. Pass a null cursor for the first page. **/
+    Page<Sale> findPage(String cursor, int limit);
+
     double getTotalRevenue();
-}
 
+    SalesSummary getSummary();
+
+    Map<GamePlatform, Double> getRevenueByPlatform();
+
+    Map<String, Double> getRevenueByGenre();
+
+    Map<YearMonth, Double> getRevenueByMonth();
+}
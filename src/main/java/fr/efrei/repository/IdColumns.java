@@ -0,0 +1,59 @@
+package fr.efrei.repository;
+
+import fr.efrei.util.Config;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * Converts entity ids between the domain, where they are always strings, and the id columns, selected with
+ * ID_STORAGE: "varchar" (the default, VARCHAR(36) as created by database_setup.sql) or "binary" (BINARY(16),
+ * after database_migration_binary_ids.sql). In binary mode a canonical UUID string is stored as its 16 bytes and
+ * read back unchanged; any other id (such as the demo "game-1") is stored as the name-based UUID of its text,
+ * the same value the migration script computes, so it can still be looked up by its old id but is read back
+ * as that UUID. The order of binary ids is not the order of their original strings, but keyset cursors are
+ * built from ids read back from the database, which convert to the same column value, so they stay consistent.
+ */
+public final class IdColumns {
+    private static final boolean BINARY = "binary".equalsIgnoreCase(Config.get("ID_STORAGE", "varchar").trim());
+    private static final Pattern UUID_TEXT =
+            Pattern.compile("[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}");
+
+    private IdColumns() {}
+
+    public static boolean isBinary() {
+        return BINARY;
+    }
+
+    /** The value to bind to an id parameter with setObject. **/
+    static Object toColumn(String id) {
+        return BINARY && id != null ? toBytes(id) : id;
+    }
+
+    static String read(ResultSet rs, String column) throws SQLException {
+        if (!BINARY) {
+            return rs.getString(column);
+        }
+        byte[] bytes = rs.getBytes(column);
+        return bytes == null ? null : fromBytes(bytes);
+    }
+
+    static byte[] toBytes(String id) {
+        UUID uuid = UUID_TEXT.matcher(id).matches()
+                ? UUID.fromString(id)
+                : UUID.nameUUIDFromBytes(id.getBytes(StandardCharsets.UTF_8));
+        return ByteBuffer.allocate(16)
+                .putLong(uuid.getMostSignificantBits())
+                .putLong(uuid.getLeastSignificantBits())
+                .array();
+    }
+
+    static String fromBytes(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return new UUID(buffer.getLong(), buffer.getLong()).toString();
+    }
+}
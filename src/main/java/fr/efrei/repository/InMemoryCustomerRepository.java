@@ -0,0 +1,262 @@
+package fr.efrei.repository;
+
+import fr.efrei.domain.Customer;
+import fr.efrei.domain.PointsAccrual;
+import fr.efrei.util.PasswordHasher;
+import fr.efrei.util.QueryMetrics;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Customers held in memory, with a unique contact number index and a (name, id) ordered index for listings
+ * and keyset pages. Stored customers are private snapshots: callers always get copies.
+ */
+public class InMemoryCustomerRepository implements ICustomerRepository {
+    private record NameKey(String name, String id) {}
+
+    private static final Comparator<NameKey> BY_NAME = Comparator.comparing(NameKey::name).thenComparing(NameKey::id);
+
+    private final Map<String, Customer> byId = new ConcurrentHashMap<>();
+    private final Map<String, String> idByContact = new ConcurrentHashMap<>();
+    private final NavigableSet<NameKey> byName = new ConcurrentSkipListSet<>(BY_NAME);
+    private final Set<String> appliedBatches = ConcurrentHashMap.newKeySet();
+
+    // Rentals and sales of a deleted customer go with it, like ON DELETE CASCADE
+    private final List<Consumer<String>> deleteListeners = new CopyOnWriteArrayList<>();
+
+    void onDelete(Consumer<String> listener) {
+        deleteListeners.add(listener);
+    }
+
+    boolean exists(String id) {
+        return byId.containsKey(id);
+    }
+
+    @Override
+    public Customer save(Customer customer) {
+        Customer stored = CustomerRepository.withHashedPassword(customer);
+        String error = InMemoryTransaction.write(() -> insert(stored));
+        if (error != null) {
+            System.err.println("Error saving customer: " + error);
+            QueryMetrics.recordError();
+            return null;
+        }
+        return stored;
+    }
+
+    @Override
+    public BatchResult<Customer> saveAll(Collection<Customer> customers, int batchSize) {
+        BatchResult<Customer> result = new BatchResult<>();
+        if (customers == null) {
+            return result;
+        }
+        InMemoryTransaction.write(() -> {
+            for (Customer customer : customers) {
+                Customer stored = CustomerRepository.withHashedPassword(customer);
+                String error = insert(stored);
+                if (error == null) {
+                    result.addSaved(stored);
+                } else {
+                    result.addFailure(stored, error);
+                }
+            }
+            return result;
+        });
+        return result;
+    }
+
+    /** Returns why the customer was rejected, or null once it is stored. **/
+    private String insert(Customer customer) {
+        if (byId.containsKey(customer.getId())) {
+            return "Duplicate customer id " + customer.getId();
+        }
+        if (idByContact.containsKey(customer.getContactNumber())) {
+            return "Duplicate contact number " + customer.getContactNumber();
+        }
+        Customer snapshot = CustomerRepository.copy(customer);
+        store(null, snapshot);
+        InMemoryTransaction.onRollback(() -> store(snapshot, null));
+        return null;
+    }
+
+    /** Replaces previous by next in the table and its indexes; either may be null. **/
+    private void store(Customer previous, Customer next) {
+        if (previous != null) {
+            byId.remove(previous.getId());
+            idByContact.remove(previous.getContactNumber());
+            byName.remove(new NameKey(previous.getName(), previous.getId()));
+        }
+        if (next != null) {
+            byId.put(next.getId(), next);
+            idByContact.put(next.getContactNumber(), next.getId());
+            byName.add(new NameKey(next.getName(), next.getId()));
+        }
+    }
+
+    /** Nothing is cached in front of the maps, so there is nothing to drop. **/
+    @Override
+    public void invalidate(String id) {
+    }
+
+    @Override
+    public Customer findById(String id) {
+        Customer customer = byId.get(id);
+        return customer == null ? null : CustomerRepository.copy(customer);
+    }
+
+    @Override
+    public Customer findByContact(String contactNumber) {
+        String id = idByContact.get(contactNumber);
+        return id == null ? null : findById(id);
+    }
+
+    @Override
+    public Customer authenticate(String contactNumber, String password) {
+        Customer customer = findByContact(contactNumber);
+        if (!PasswordHasher.verify(password, customer == null ? null : customer.getPassword())) {
+            return null;
+        }
+        if (!PasswordHasher.needsRehash(customer.getPassword())) {
+            return customer;
+        }
+        String hash = PasswordHasher.hash(password);
+        return InMemoryTransaction.write(() -> {
+            Customer previous = byId.get(customer.getId());
+            if (previous == null || !previous.getPassword().equals(customer.getPassword())) {
+                return customer;
+            }
+            Customer next = CustomerRepository.withPassword(previous, hash);
+            replace(previous, next);
+            return CustomerRepository.copy(next);
+        });
+    }
+
+    @Override
+    public List<Customer> findAll() {
+        return copiesOf(byName, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public Stream<Customer> streamAll() {
+        return new ArrayList<>(byId.values()).stream().map(CustomerRepository::copy);
+    }
+
+    @Override
+    public Page<Customer> findPage(String cursor, int limit) {
+        Page.checkLimit(limit);
+        String[] keys = Page.decodeCursor(cursor, 2);
+        NavigableSet<NameKey> remaining = keys == null ? byName : byName.tailSet(new NameKey(keys[0], keys[1]), false);
+        return Page.fromRows(copiesOf(remaining, limit + 1), limit,
+                customer -> Page.encodeCursor(customer.getName(), customer.getId()));
+    }
+
+    private List<Customer> copiesOf(Collection<NameKey> keys, int max) {
+        List<Customer> customers = new ArrayList<>();
+        for (NameKey key : keys) {
+            if (customers.size() == max) {
+                break;
+            }
+            Customer customer = byId.get(key.id());
+            if (customer != null) {
+                customers.add(CustomerRepository.copy(customer));
+            }
+        }
+        return customers;
+    }
+
+    /** The in-memory backend keeps the balance only; the reason is not recorded anywhere. **/
+    @Override
+    public boolean addPoints(String customerId, int points, String reason) {
+        return InMemoryTransaction.write(() -> changePoints(customerId, points, Integer.MIN_VALUE));
+    }
+
+    @Override
+    public boolean redeemPoints(String customerId, int points, String reason) {
+        if (points < 0) {
+            throw new IllegalArgumentException("Redeemed points must not be negative");
+        }
+        return InMemoryTransaction.write(() -> changePoints(customerId, -points, points));
+    }
+
+    @Override
+    public boolean addPointsBatch(String batchId, List<PointsAccrual> accruals) {
+        return InMemoryTransaction.write(() -> {
+            if (!appliedBatches.add(batchId)) {
+                return true;
+            }
+            InMemoryTransaction.onRollback(() -> appliedBatches.remove(batchId));
+            for (PointsAccrual accrual : accruals) {
+                changePoints(accrual.getCustomerId(), accrual.getPoints(), Integer.MIN_VALUE);
+            }
+            return true;
+        });
+    }
+
+    private boolean changePoints(String customerId, int delta, int required) {
+        Customer previous = byId.get(customerId);
+        if (previous == null || previous.getLoyaltyPoints() < required) {
+            return false;
+        }
+        Customer next = CustomerRepository.copy(previous);
+        next.addLoyaltyPoints(delta);
+        replace(previous, next);
+        return true;
+    }
+
+    @Override
+    public boolean update(Customer customer) {
+        Customer hashed = CustomerRepository.withHashedPassword(customer);
+        return InMemoryTransaction.write(() -> {
+            Customer previous = byId.get(customer.getId());
+            if (previous == null) {
+                return false;
+            }
+            // as in the database, the balance only changes through addPoints/redeemPoints
+            Customer stored = new Customer.Builder()
+                    .setId(hashed.getId())
+                    .setName(hashed.getName())
+                    .setContactNumber(hashed.getContactNumber())
+                    .setPassword(hashed.getPassword())
+                    .setLoyaltyPoints(previous.getLoyaltyPoints())
+                    .build();
+            String owner = idByContact.get(customer.getContactNumber());
+            if (owner != null && !owner.equals(customer.getId())) {
+                System.err.println("Error updating customer: Duplicate contact number " + customer.getContactNumber());
+                QueryMetrics.recordError();
+                return false;
+            }
+            replace(previous, stored);
+            return true;
+        });
+    }
+
+    private void replace(Customer previous, Customer next) {
+        store(previous, next);
+        InMemoryTransaction.onRollback(() -> store(next, previous));
+    }
+
+    @Override
+    public boolean delete(String id) {
+        return InMemoryTransaction.write(() -> {
+            Customer previous = byId.get(id);
+            if (previous == null) {
+                return false;
+            }
+            deleteListeners.forEach(listener -> listener.accept(id));
+            store(previous, null);
+            InMemoryTransaction.onRollback(() -> store(null, previous));
+            return true;
+        });
+    }
+}
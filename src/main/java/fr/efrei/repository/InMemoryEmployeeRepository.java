@@ -0,0 +1,154 @@
+package fr.efrei.repository;
+
+import fr.efrei.domain.Employee;
+import fr.efrei.util.PasswordHasher;
+import fr.efrei.util.QueryMetrics;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/** Employees held in memory, with a unique email index. Employee is immutable, so instances are shared. **/
+public class InMemoryEmployeeRepository implements IEmployeeRepository {
+    private final Map<String, Employee> byId = new ConcurrentHashMap<>();
+    private final Map<String, String> idByEmail = new ConcurrentHashMap<>();
+
+    @Override
+    public Employee save(Employee employee) {
+        Employee stored = EmployeeRepository.withHashedPassword(employee);
+        String error = InMemoryTransaction.write(() -> insert(stored));
+        if (error != null) {
+            System.err.println("Error saving employee: " + error);
+            QueryMetrics.recordError();
+            return null;
+        }
+        return stored;
+    }
+
+    @Override
+    public BatchResult<Employee> saveAll(Collection<Employee> employees, int batchSize) {
+        BatchResult<Employee> result = new BatchResult<>();
+        if (employees == null) {
+            return result;
+        }
+        InMemoryTransaction.write(() -> {
+            for (Employee employee : employees) {
+                Employee stored = EmployeeRepository.withHashedPassword(employee);
+                String error = insert(stored);
+                if (error == null) {
+                    result.addSaved(stored);
+                } else {
+                    result.addFailure(stored, error);
+                }
+            }
+            return result;
+        });
+        return result;
+    }
+
+    /** Returns why the employee was rejected, or null once it is stored. **/
+    private String insert(Employee employee) {
+        if (byId.containsKey(employee.getId())) {
+            return "Duplicate employee id " + employee.getId();
+        }
+        if (idByEmail.containsKey(employee.getEmail())) {
+            return "Duplicate email " + employee.getEmail();
+        }
+        store(null, employee);
+        InMemoryTransaction.onRollback(() -> store(employee, null));
+        return null;
+    }
+
+    /** Replaces previous by next in the table and its index; either may be null. **/
+    private void store(Employee previous, Employee next) {
+        if (previous != null) {
+            byId.remove(previous.getId());
+            idByEmail.remove(previous.getEmail());
+        }
+        if (next != null) {
+            byId.put(next.getId(), next);
+            idByEmail.put(next.getEmail(), next.getId());
+        }
+    }
+
+    @Override
+    public Employee findById(String id) {
+        return byId.get(id);
+    }
+
+    @Override
+    public Employee findByEmail(String email) {
+        String id = idByEmail.get(email);
+        return id == null ? null : byId.get(id);
+    }
+
+    @Override
+    public Employee authenticate(String email, String password) {
+        Employee employee = findByEmail(email);
+        if (!PasswordHasher.verify(password, employee == null ? null : employee.getPassword())) {
+            return null;
+        }
+        if (!PasswordHasher.needsRehash(employee.getPassword())) {
+            return employee;
+        }
+        Employee rehashed = new Employee(employee.getId(), employee.getName(), employee.getEmail(),
+                PasswordHasher.hash(password));
+        return InMemoryTransaction.write(() -> {
+            if (byId.get(employee.getId()) != employee) {
+                return employee;
+            }
+            store(employee, rehashed);
+            InMemoryTransaction.onRollback(() -> store(rehashed, employee));
+            return rehashed;
+        });
+    }
+
+    @Override
+    public List<Employee> findAll() {
+        List<Employee> employees = new ArrayList<>(byId.values());
+        employees.sort(Comparator.comparing(Employee::getName));
+        return employees;
+    }
+
+    @Override
+    public Stream<Employee> streamAll() {
+        return new ArrayList<>(byId.values()).stream();
+    }
+
+    @Override
+    public boolean update(Employee employee) {
+        Employee stored = EmployeeRepository.withHashedPassword(employee);
+        return InMemoryTransaction.write(() -> {
+            Employee previous = byId.get(stored.getId());
+            if (previous == null) {
+                return false;
+            }
+            String owner = idByEmail.get(stored.getEmail());
+            if (owner != null && !owner.equals(stored.getId())) {
+                System.err.println("Error updating employee: Duplicate email " + stored.getEmail());
+                QueryMetrics.recordError();
+                return false;
+            }
+            store(previous, stored);
+            InMemoryTransaction.onRollback(() -> store(stored, previous));
+            return true;
+        });
+    }
+
+    @Override
+    public boolean delete(String id) {
+        return InMemoryTransaction.write(() -> {
+            Employee previous = byId.get(id);
+            if (previous == null) {
+                return false;
+            }
+            store(previous, null);
+            InMemoryTransaction.onRollback(() -> store(null, previous));
+            return true;
+        });
+    }
+}
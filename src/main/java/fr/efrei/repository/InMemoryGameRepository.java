@@ -0,0 +1,243 @@
+package fr.efrei.repository;
+
+import fr.efrei.domain.Game;
+import fr.efrei.domain.GamePlatform;
+import fr.efrei.domain.GameType;
+import fr.efrei.util.QueryMetrics;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Games held in memory, indexed by platform and type and in a CatalogIndex for availability queries.
+ * Stored games are private snapshots: callers always get copies, and availability only changes through update,
+ * tryReserve and release, which bump the version.
+ */
+public class InMemoryGameRepository implements IGameRepository {
+    private final Map<String, Game> byId = new ConcurrentHashMap<>();
+    // Built up front for every platform and type, so lookups never allocate
+    private final Map<GamePlatform, Map<GameType, Set<String>>> byPlatformAndType = new EnumMap<>(GamePlatform.class);
+    private final CatalogIndex catalogIndex = new CatalogIndex(1_024);
+
+    // Rentals and sales of a deleted game go with it, like ON DELETE CASCADE
+    private final List<Consumer<String>> deleteListeners = new CopyOnWriteArrayList<>();
+
+    public InMemoryGameRepository() {
+        for (GamePlatform platform : GamePlatform.values()) {
+            Map<GameType, Set<String>> byType = new EnumMap<>(GameType.class);
+            for (GameType type : GameType.values()) {
+                byType.put(type, ConcurrentHashMap.newKeySet());
+            }
+            byPlatformAndType.put(platform, byType);
+        }
+    }
+
+    void onDelete(Consumer<String> listener) {
+        deleteListeners.add(listener);
+    }
+
+    boolean exists(String id) {
+        return byId.containsKey(id);
+    }
+
+    @Override
+    public Game save(Game game) {
+        String error = InMemoryTransaction.write(() -> insert(game));
+        if (error != null) {
+            System.err.println("Error saving game: " + error);
+            QueryMetrics.recordError();
+            return null;
+        }
+        return game;
+    }
+
+    @Override
+    public BatchResult<Game> saveAll(Collection<Game> games, int batchSize) {
+        BatchResult<Game> result = new BatchResult<>();
+        if (games == null) {
+            return result;
+        }
+        InMemoryTransaction.write(() -> {
+            for (Game game : games) {
+                String error = insert(game);
+                if (error == null) {
+                    result.addSaved(game);
+                } else {
+                    result.addFailure(game, error);
+                }
+            }
+            return result;
+        });
+        return result;
+    }
+
+    /** Returns why the game was rejected, or null once it is stored. **/
+    private String insert(Game game) {
+        if (byId.containsKey(game.getId())) {
+            return "Duplicate game id " + game.getId();
+        }
+        Game snapshot = GameRepository.copy(game);
+        store(null, snapshot);
+        InMemoryTransaction.onRollback(() -> store(snapshot, null));
+        return null;
+    }
+
+    /** Replaces previous by next in the table and its index; either may be null. **/
+    private void store(Game previous, Game next) {
+        if (previous != null && (next == null || previous.getPlatform() != next.getPlatform()
+                || previous.getType() != next.getType())) {
+            byPlatformAndType.get(previous.getPlatform()).get(previous.getType()).remove(previous.getId());
+        }
+        if (next != null) {
+            byId.put(next.getId(), next);
+            byPlatformAndType.get(next.getPlatform()).get(next.getType()).add(next.getId());
+            catalogIndex.put(next);
+        } else if (previous != null) {
+            byId.remove(previous.getId());
+            catalogIndex.remove(previous.getId());
+        }
+    }
+
+    private void replace(Game previous, Game next) {
+        store(previous, next);
+        InMemoryTransaction.onRollback(() -> store(next, previous));
+    }
+
+    private static Game withAvailability(Game game, boolean available, int version) {
+        return new Game.Builder()
+            .setId(game.getId())
+            .setTitle(game.getTitle())
+            .setGenre(game.getGenre())
+            .setPlatform(game.getPlatform())
+            .setAvailable(available)
+            .setType(game.getType())
+            .setPrice(game.getPrice())
+            .setVersion(version)
+            .build();
+    }
+
+    /** Nothing is cached in front of the maps, so there is nothing to drop. **/
+    @Override
+    public void invalidate(String id) {
+    }
+
+    /** The stored snapshot itself, for repositories in this package that only read it. **/
+    Game get(String id) {
+        return byId.get(id);
+    }
+
+    @Override
+    public Game findById(String id) {
+        Game game = byId.get(id);
+        return game == null ? null : GameRepository.copy(game);
+    }
+
+    @Override
+    public List<Game> findAll() {
+        List<Game> games = new ArrayList<>(byId.size());
+        for (Game game : byId.values()) {
+            games.add(GameRepository.copy(game));
+        }
+        games.sort(Comparator.comparing(Game::getTitle));
+        return games;
+    }
+
+    @Override
+    public Stream<Game> streamAll() {
+        return new ArrayList<>(byId.values()).stream().map(GameRepository::copy);
+    }
+
+    @Override
+    public List<Game> findByPlatformAndType(GamePlatform platform, GameType type) {
+        Set<String> ids = byPlatformAndType.get(platform).get(type);
+        List<Game> games = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            Game game = byId.get(id);
+            if (game != null && game.getPlatform() == platform && game.getType() == type) {
+                games.add(GameRepository.copy(game));
+            }
+        }
+        return games;
+    }
+
+    @Override
+    public List<Game> findAvailable(GamePlatform platform, GameType type, double maxPrice, int limit) {
+        String[] ids = new String[Math.max(0, Math.min(limit, catalogIndex.size()))];
+        int found = catalogIndex.findAvailable(platform, type, maxPrice, ids);
+        List<Game> games = new ArrayList<>(found);
+        for (int i = 0; i < found; i++) {
+            Game game = byId.get(ids[i]);
+            if (game != null && game.isAvailable()) {
+                games.add(GameRepository.copy(game));
+            }
+        }
+        return games;
+    }
+
+    @Override
+    public int countAvailable(GamePlatform platform, GameType type, double maxPrice) {
+        return catalogIndex.countAvailable(platform, type, maxPrice);
+    }
+
+    @Override
+    public boolean update(Game game) {
+        return InMemoryTransaction.write(() -> {
+            Game previous = byId.get(game.getId());
+            if (previous == null) {
+                return false;
+            }
+            replace(previous, withAvailability(game, game.isAvailable(), previous.getVersion() + 1));
+            return true;
+        });
+    }
+
+    @Override
+    public Reservation tryReserve(String gameId, int expectedVersion) {
+        return InMemoryTransaction.write(() -> {
+            Game current = byId.get(gameId);
+            if (current == null || !current.isAvailable()) {
+                return Reservation.UNAVAILABLE;
+            }
+            if (current.getVersion() != expectedVersion) {
+                return Reservation.CONFLICT;
+            }
+            replace(current, withAvailability(current, false, current.getVersion() + 1));
+            return Reservation.RESERVED;
+        });
+    }
+
+    @Override
+    public boolean release(String gameId) {
+        return InMemoryTransaction.write(() -> {
+            Game current = byId.get(gameId);
+            if (current == null) {
+                return false;
+            }
+            replace(current, withAvailability(current, true, current.getVersion() + 1));
+            return true;
+        });
+    }
+
+    @Override
+    public boolean delete(String id) {
+        return InMemoryTransaction.write(() -> {
+            Game previous = byId.get(id);
+            if (previous == null) {
+                return false;
+            }
+            deleteListeners.forEach(listener -> listener.accept(id));
+            store(previous, null);
+            InMemoryTransaction.onRollback(() -> store(null, previous));
+            return true;
+        });
+    }
+}
@@ -0,0 +1,326 @@
+package fr.efrei.repository;
+
+import fr.efrei.domain.Customer;
+import fr.efrei.domain.Game;
+import fr.efrei.domain.GamePlatform;
+import fr.efrei.domain.Rental;
+import fr.efrei.domain.RentalSummary;
+import fr.efrei.util.QueryMetrics;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.stream.Stream;
+
+/**
+ * Rentals held in memory as rows of ids, indexed by date, by customer and by game, with the customer's
+ * active rentals kept apart. Reads join the customer and game from their repositories, sharing one copy of
+ * each per call like RentalRepository does; rows whose customer or game is missing are rejected on write.
+ */
+public class InMemoryRentalRepository implements IRentalRepository {
+    private record Row(String id, String customerId, String gameId, GamePlatform platform,
+                       LocalDate rentalDate, LocalDate returnDate, boolean returned) {
+        DatedKey key() {
+            return new DatedKey(rentalDate, id);
+        }
+    }
+
+    private final InMemoryCustomerRepository customers;
+    private final InMemoryGameRepository games;
+
+    private final Map<String, Row> byId = new ConcurrentHashMap<>();
+    private final NavigableSet<DatedKey> byDate = new ConcurrentSkipListSet<>(DatedKey.NEWEST_FIRST);
+    private final Map<String, NavigableSet<DatedKey>> byCustomer = new ConcurrentHashMap<>();
+    private final Map<String, NavigableSet<DatedKey>> byGame = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> activeByCustomer = new ConcurrentHashMap<>();
+
+    public InMemoryRentalRepository(InMemoryCustomerRepository customers, InMemoryGameRepository games) {
+        this.customers = customers;
+        this.games = games;
+        customers.onDelete(customerId -> deleteAll(byCustomer.get(customerId)));
+        games.onDelete(gameId -> deleteAll(byGame.get(gameId)));
+    }
+
+    private static Row rowOf(Rental rental) {
+        return new Row(rental.getRentalId(), rental.getCustomer().getId(), rental.getGame().getId(),
+                rental.getPlatform(), rental.getRentalDate(), rental.getReturnDate(), rental.isReturned());
+    }
+
+    @Override
+    public Rental save(Rental rental) {
+        String error = InMemoryTransaction.write(() -> upsert(rowOf(rental)));
+        if (error != null) {
+            System.err.println("Error saving rental: " + error);
+            QueryMetrics.recordError();
+            return null;
+        }
+        return rental;
+    }
+
+    @Override
+    public BatchResult<Rental> saveAll(Collection<Rental> rentals, int batchSize) {
+        BatchResult<Rental> result = new BatchResult<>();
+        if (rentals == null) {
+            return result;
+        }
+        InMemoryTransaction.write(() -> {
+            for (Rental rental : rentals) {
+                String error = upsert(rowOf(rental));
+                if (error == null) {
+                    result.addSaved(rental);
+                } else {
+                    result.addFailure(rental, error);
+                }
+            }
+            return result;
+        });
+        return result;
+    }
+
+    /** Inserts the row, or only updates its return fields if it exists, like ON DUPLICATE KEY UPDATE. **/
+    private String upsert(Row row) {
+        if (!customers.exists(row.customerId())) {
+            return "Unknown customer " + row.customerId();
+        }
+        if (!games.exists(row.gameId())) {
+            return "Unknown game " + row.gameId();
+        }
+        Row previous = byId.get(row.id());
+        Row next = previous == null ? row : new Row(previous.id(), previous.customerId(), previous.gameId(),
+                previous.platform(), previous.rentalDate(), row.returnDate(), row.returned());
+        replace(previous, next);
+        return null;
+    }
+
+    /** Replaces previous by next in the table and its indexes; either may be null. **/
+    private void store(Row previous, Row next) {
+        if (previous != null) {
+            byId.remove(previous.id());
+            byDate.remove(previous.key());
+            removeFrom(byCustomer, previous.customerId(), previous.key());
+            removeFrom(byGame, previous.gameId(), previous.key());
+            removeFrom(activeByCustomer, previous.customerId(), previous.id());
+        }
+        if (next != null) {
+            byId.put(next.id(), next);
+            byDate.add(next.key());
+            byCustomer.computeIfAbsent(next.customerId(), id -> new ConcurrentSkipListSet<>(DatedKey.NEWEST_FIRST))
+                    .add(next.key());
+            byGame.computeIfAbsent(next.gameId(), id -> new ConcurrentSkipListSet<>(DatedKey.NEWEST_FIRST))
+                    .add(next.key());
+            if (!next.returned()) {
+                activeByCustomer.computeIfAbsent(next.customerId(), id -> ConcurrentHashMap.newKeySet()).add(next.id());
+            }
+        }
+    }
+
+    private static <V> void removeFrom(Map<String, ? extends Set<V>> index, String key, V value) {
+        index.computeIfPresent(key, (k, values) -> {
+            values.remove(value);
+            return values.isEmpty() ? null : values;
+        });
+    }
+
+    private void replace(Row previous, Row next) {
+        store(previous, next);
+        InMemoryTransaction.onRollback(() -> store(next, previous));
+    }
+
+    @Override
+    public List<Rental> findAll() {
+        return join(byDate, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public Stream<Rental> streamAll() {
+        Map<String, Customer> customerCopies = new HashMap<>();
+        Map<String, Game> gameCopies = new HashMap<>();
+        return new ArrayList<>(byId.values()).stream()
+                .map(row -> join(row, customerCopies, gameCopies))
+                .filter(rental -> rental != null);
+    }
+
+    @Override
+    public Rental findById(String id) {
+        Row row = byId.get(id);
+        return row == null ? null : join(row, new HashMap<>(), new HashMap<>());
+    }
+
+    @Override
+    public List<Rental> findActiveByCustomer(String customerId) {
+        Set<String> ids = activeByCustomer.getOrDefault(customerId, Set.of());
+        List<DatedKey> keys = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            Row row = byId.get(id);
+            if (row != null) {
+                keys.add(row.key());
+            }
+        }
+        keys.sort(DatedKey.NEWEST_FIRST);
+        return join(keys, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<Rental> findByCustomer(String customerId) {
+        return join(byCustomer.getOrDefault(customerId, Collections.emptyNavigableSet()), Integer.MAX_VALUE);
+    }
+
+    @Override
+    public Page<Rental> findPage(String cursor, int limit) {
+        return page(byDate, cursor, limit);
+    }
+
+    @Override
+    public Page<Rental> findPageByCustomer(String customerId, String cursor, int limit) {
+        return page(byCustomer.getOrDefault(customerId, Collections.emptyNavigableSet()), cursor, limit);
+    }
+
+    private Page<Rental> page(NavigableSet<DatedKey> keys, String cursor, int limit) {
+        Page.checkLimit(limit);
+        DatedKey after = DatedKey.fromCursor(cursor);
+        List<Rental> rows = join(after == null ? keys : keys.tailSet(after, false), limit + 1);
+        return Page.fromRows(rows, limit, rental -> new DatedKey(rental.getRentalDate(), rental.getRentalId()).toCursor());
+    }
+
+    /** Builds up to max rentals in key order; each customer and game is copied once and shared. **/
+    private List<Rental> join(Collection<DatedKey> keys, int max) {
+        List<Rental> rentals = new ArrayList<>();
+        Map<String, Customer> customerCopies = new HashMap<>();
+        Map<String, Game> gameCopies = new HashMap<>();
+        for (DatedKey key : keys) {
+            if (rentals.size() == max) {
+                break;
+            }
+            Row row = byId.get(key.id());
+            Rental rental = row == null ? null : join(row, customerCopies, gameCopies);
+            if (rental != null) {
+                rentals.add(rental);
+            }
+        }
+        return rentals;
+    }
+
+    private Rental join(Row row, Map<String, Customer> customerCopies, Map<String, Game> gameCopies) {
+        Customer customer = customerCopies.computeIfAbsent(row.customerId(), customers::findById);
+        Game game = gameCopies.computeIfAbsent(row.gameId(), games::findById);
+        if (customer == null || game == null) {
+            return null;
+        }
+        return new Rental.Builder()
+            .setRentalId(row.id())
+            .setCustomer(customer)
+            .setGame(game)
+            .setPlatform(row.platform())
+            .setRentalDate(row.rentalDate())
+            .setReturnDate(row.returnDate())
+            .setReturned(row.returned())
+            .build();
+    }
+
+    @Override
+    public RentalSummary getSummary() {
+        LocalDate today = LocalDate.now();
+        long active = 0;
+        long overdue = 0;
+        for (Set<String> ids : activeByCustomer.values()) {
+            for (String id : ids) {
+                Row row = byId.get(id);
+                if (row != null) {
+                    active++;
+                    if (row.returnDate().isBefore(today)) {
+                        overdue++;
+                    }
+                }
+            }
+        }
+        return new RentalSummary(byId.size(), active, overdue);
+    }
+
+    @Override
+    public Map<GamePlatform, Long> countByPlatform() {
+        Map<GamePlatform, Long> counts = new EnumMap<>(GamePlatform.class);
+        for (Row row : byId.values()) {
+            counts.merge(row.platform(), 1L, Long::sum);
+        }
+        return byTotalDescending(counts);
+    }
+
+    @Override
+    public Map<String, Long> countByGenre() {
+        Map<String, Long> counts = new HashMap<>();
+        for (Row row : byId.values()) {
+            Game game = games.get(row.gameId());
+            if (game != null) {
+                counts.merge(game.getGenre(), 1L, Long::sum);
+            }
+        }
+        return byTotalDescending(counts);
+    }
+
+    @Override
+    public Map<YearMonth, Long> countByMonth() {
+        Map<YearMonth, Long> counts = new TreeMap<>();
+        for (Row row : byId.values()) {
+            counts.merge(YearMonth.from(row.rentalDate()), 1L, Long::sum);
+        }
+        return new LinkedHashMap<>(counts);
+    }
+
+    private static <K> Map<K, Long> byTotalDescending(Map<K, Long> counts) {
+        Map<K, Long> sorted = new LinkedHashMap<>();
+        counts.entrySet().stream()
+                .sorted(Map.Entry.<K, Long>comparingByValue().reversed())
+                .forEach(entry -> sorted.put(entry.getKey(), entry.getValue()));
+        return sorted;
+    }
+
+    @Override
+    public boolean update(Rental rental) {
+        return InMemoryTransaction.write(() -> {
+            Row previous = byId.get(rental.getRentalId());
+            if (previous == null) {
+                return false;
+            }
+            replace(previous, new Row(previous.id(), previous.customerId(), previous.gameId(), previous.platform(),
+                    previous.rentalDate(), previous.returnDate(), rental.isReturned()));
+            return true;
+        });
+    }
+
+    @Override
+    public boolean delete(String id) {
+        return InMemoryTransaction.write(() -> {
+            Row previous = byId.get(id);
+            if (previous == null) {
+                return false;
+            }
+            replace(previous, null);
+            return true;
+        });
+    }
+
+    /** Deletes the given rentals; called under the write lock when their customer or game is deleted. **/
+    private void deleteAll(Collection<DatedKey> keys) {
+        if (keys == null) {
+            return;
+        }
+        for (DatedKey key : new ArrayList<>(keys)) {
+            Row previous = byId.get(key.id());
+            if (previous != null) {
+                replace(previous, null);
+            }
+        }
+    }
+}
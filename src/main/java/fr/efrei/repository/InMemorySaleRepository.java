@@ -0,0 +1,309 @@
+package fr.efrei.repository;
+
+import fr.efrei.domain.Customer;
+import fr.efrei.domain.Game;
+import fr.efrei.domain.GamePlatform;
+import fr.efrei.domain.Sale;
+import fr.efrei.domain.SalesSummary;
+import fr.efrei.util.QueryMetrics;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.stream.Stream;
+
+/**
+ * Sales held in memory as rows of ids, indexed by date, by customer and by game. Reads join the customer
+ * and game from their repositories, sharing one copy of each per call like SaleRepository does; rows whose
+ * customer or game is missing are rejected on write.
+ */
+public class InMemorySaleRepository implements ISaleRepository {
+    private record Row(String id, String customerId, String gameId, LocalDate date, double price) {
+        DatedKey key() {
+            return new DatedKey(date, id);
+        }
+    }
+
+    private final InMemoryCustomerRepository customers;
+    private final InMemoryGameRepository games;
+
+    private final Map<String, Row> byId = new ConcurrentHashMap<>();
+    private final NavigableSet<DatedKey> byDate = new ConcurrentSkipListSet<>(DatedKey.NEWEST_FIRST);
+    private final Map<String, NavigableSet<DatedKey>> byCustomer = new ConcurrentHashMap<>();
+    private final Map<String, NavigableSet<DatedKey>> byGame = new ConcurrentHashMap<>();
+
+    public InMemorySaleRepository(InMemoryCustomerRepository customers, InMemoryGameRepository games) {
+        this.customers = customers;
+        this.games = games;
+        customers.onDelete(customerId -> deleteAll(byCustomer.get(customerId)));
+        games.onDelete(gameId -> deleteAll(byGame.get(gameId)));
+    }
+
+    private static Row rowOf(Sale sale) {
+        return new Row(sale.getId(), sale.getCustomer().getId(), sale.getGame().getId(), sale.getDate(), sale.getPrice());
+    }
+
+    @Override
+    public Sale save(Sale sale) {
+        String error = InMemoryTransaction.write(() -> insert(rowOf(sale)));
+        if (error != null) {
+            System.err.println("Error saving sale: " + error);
+            QueryMetrics.recordError();
+            return null;
+        }
+        return sale;
+    }
+
+    @Override
+    public BatchResult<Sale> saveAll(Collection<Sale> sales, int batchSize) {
+        BatchResult<Sale> result = new BatchResult<>();
+        if (sales == null) {
+            return result;
+        }
+        InMemoryTransaction.write(() -> {
+            for (Sale sale : sales) {
+                String error = insert(rowOf(sale));
+                if (error == null) {
+                    result.addSaved(sale);
+                } else {
+                    result.addFailure(sale, error);
+                }
+            }
+            return result;
+        });
+        return result;
+    }
+
+    /** Returns why the sale was rejected, or null once it is stored. **/
+    private String insert(Row row) {
+        if (byId.containsKey(row.id())) {
+            return "Duplicate sale id " + row.id();
+        }
+        String error = checkReferences(row);
+        if (error == null) {
+            replace(null, row);
+        }
+        return error;
+    }
+
+    private String checkReferences(Row row) {
+        if (!customers.exists(row.customerId())) {
+            return "Unknown customer " + row.customerId();
+        }
+        if (!games.exists(row.gameId())) {
+            return "Unknown game " + row.gameId();
+        }
+        return null;
+    }
+
+    /** Replaces previous by next in the table and its indexes; either may be null. **/
+    private void store(Row previous, Row next) {
+        if (previous != null) {
+            byId.remove(previous.id());
+            byDate.remove(previous.key());
+            removeFrom(byCustomer, previous.customerId(), previous.key());
+            removeFrom(byGame, previous.gameId(), previous.key());
+        }
+        if (next != null) {
+            byId.put(next.id(), next);
+            byDate.add(next.key());
+            byCustomer.computeIfAbsent(next.customerId(), id -> new ConcurrentSkipListSet<>(DatedKey.NEWEST_FIRST))
+                    .add(next.key());
+            byGame.computeIfAbsent(next.gameId(), id -> new ConcurrentSkipListSet<>(DatedKey.NEWEST_FIRST))
+                    .add(next.key());
+        }
+    }
+
+    private static void removeFrom(Map<String, NavigableSet<DatedKey>> index, String key, DatedKey value) {
+        index.computeIfPresent(key, (k, values) -> {
+            values.remove(value);
+            return values.isEmpty() ? null : values;
+        });
+    }
+
+    private void replace(Row previous, Row next) {
+        store(previous, next);
+        InMemoryTransaction.onRollback(() -> store(next, previous));
+    }
+
+    @Override
+    public Sale findById(String id) {
+        Row row = byId.get(id);
+        return row == null ? null : join(row, new HashMap<>(), new HashMap<>());
+    }
+
+    @Override
+    public List<Sale> findAll() {
+        return join(byDate, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public Stream<Sale> streamAll() {
+        Map<String, Customer> customerCopies = new HashMap<>();
+        Map<String, Game> gameCopies = new HashMap<>();
+        return new ArrayList<>(byId.values()).stream()
+                .map(row -> join(row, customerCopies, gameCopies))
+                .filter(sale -> sale != null);
+    }
+
+    @Override
+    public List<Sale> findByCustomer(String customerId) {
+        return join(byCustomer.getOrDefault(customerId, Collections.emptyNavigableSet()), Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<Sale> findByGame(String gameId) {
+        return join(byGame.getOrDefault(gameId, Collections.emptyNavigableSet()), Integer.MAX_VALUE);
+    }
+
+    @Override
+    public Page<Sale> findPage(String cursor, int limit) {
+        Page.checkLimit(limit);
+        DatedKey after = DatedKey.fromCursor(cursor);
+        List<Sale> rows = join(after == null ? byDate : byDate.tailSet(after, false), limit + 1);
+        return Page.fromRows(rows, limit, sale -> new DatedKey(sale.getDate(), sale.getId()).toCursor());
+    }
+
+    /** Builds up to max sales in key order; each customer and game is copied once and shared. **/
+    private List<Sale> join(Collection<DatedKey> keys, int max) {
+        List<Sale> sales = new ArrayList<>();
+        Map<String, Customer> customerCopies = new HashMap<>();
+        Map<String, Game> gameCopies = new HashMap<>();
+        for (DatedKey key : keys) {
+            if (sales.size() == max) {
+                break;
+            }
+            Row row = byId.get(key.id());
+            Sale sale = row == null ? null : join(row, customerCopies, gameCopies);
+            if (sale != null) {
+                sales.add(sale);
+            }
+        }
+        return sales;
+    }
+
+    private Sale join(Row row, Map<String, Customer> customerCopies, Map<String, Game> gameCopies) {
+        Customer customer = customerCopies.computeIfAbsent(row.customerId(), customers::findById);
+        Game game = gameCopies.computeIfAbsent(row.gameId(), games::findById);
+        if (customer == null || game == null) {
+            return null;
+        }
+        return new Sale(row.id(), customer, game, row.date(), row.price());
+    }
+
+    @Override
+    public double getTotalRevenue() {
+        double total = 0;
+        for (Row row : byId.values()) {
+            total += row.price();
+        }
+        return total;
+    }
+
+    @Override
+    public SalesSummary getSummary() {
+        long count = 0;
+        double total = 0;
+        for (Row row : byId.values()) {
+            count++;
+            total += row.price();
+        }
+        return new SalesSummary(count, total, count == 0 ? 0.0 : total / count);
+    }
+
+    @Override
+    public Map<GamePlatform, Double> getRevenueByPlatform() {
+        Map<GamePlatform, Double> revenue = new EnumMap<>(GamePlatform.class);
+        for (Row row : byId.values()) {
+            Game game = games.get(row.gameId());
+            if (game != null) {
+                revenue.merge(game.getPlatform(), row.price(), Double::sum);
+            }
+        }
+        return byTotalDescending(revenue);
+    }
+
+    @Override
+    public Map<String, Double> getRevenueByGenre() {
+        Map<String, Double> revenue = new HashMap<>();
+        for (Row row : byId.values()) {
+            Game game = games.get(row.gameId());
+            if (game != null) {
+                revenue.merge(game.getGenre(), row.price(), Double::sum);
+            }
+        }
+        return byTotalDescending(revenue);
+    }
+
+    @Override
+    public Map<YearMonth, Double> getRevenueByMonth() {
+        Map<YearMonth, Double> revenue = new TreeMap<>();
+        for (Row row : byId.values()) {
+            revenue.merge(YearMonth.from(row.date()), row.price(), Double::sum);
+        }
+        return new LinkedHashMap<>(revenue);
+    }
+
+    private static <K> Map<K, Double> byTotalDescending(Map<K, Double> totals) {
+        Map<K, Double> sorted = new LinkedHashMap<>();
+        totals.entrySet().stream()
+                .sorted(Map.Entry.<K, Double>comparingByValue().reversed())
+                .forEach(entry -> sorted.put(entry.getKey(), entry.getValue()));
+        return sorted;
+    }
+
+    @Override
+    public boolean update(Sale sale) {
+        return InMemoryTransaction.write(() -> {
+            Row previous = byId.get(sale.getId());
+            if (previous == null) {
+                return false;
+            }
+            Row next = rowOf(sale);
+            String error = checkReferences(next);
+            if (error != null) {
+                System.err.println("Error updating sale: " + error);
+                QueryMetrics.recordError();
+                return false;
+            }
+            replace(previous, next);
+            return true;
+        });
+    }
+
+    @Override
+    public boolean delete(String id) {
+        return InMemoryTransaction.write(() -> {
+            Row previous = byId.get(id);
+            if (previous == null) {
+                return false;
+            }
+            replace(previous, null);
+            return true;
+        });
+    }
+
+    /** Deletes the given sales; called under the write lock when their customer or game is deleted. **/
+    private void deleteAll(Collection<DatedKey> keys) {
+        if (keys == null) {
+            return;
+        }
+        for (DatedKey key : new ArrayList<>(keys)) {
+            Row previous = byId.get(key.id());
+            if (previous != null) {
+                replace(previous, null);
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package fr.efrei.repository;
+
+import fr.efrei.util.DatabaseConnection.TransactionWork;
+
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Transactions for the in-memory repositories. All their writes are serialised on one lock, and a transaction
+ * holds it from start to end, so its writes are atomic for other writers. Each write registers how to undo it,
+ * and the undo log is replayed in reverse when the work throws.
+ * Reads never take the lock and may see the writes of a transaction still in progress.
+ */
+final class InMemoryTransaction {
+    private static final ReentrantLock WRITE_LOCK = new ReentrantLock();
+    private static final ThreadLocal<Deque<Runnable>> UNDO_LOG = new ThreadLocal<>();
+
+    private InMemoryTransaction() {}
+
+    /** Same contract as DatabaseConnection.inTransaction: nested calls join the transaction in progress. **/
+    static <T> T run(TransactionWork<T> work) throws SQLException {
+        if (UNDO_LOG.get() != null) {
+            return work.execute();
+        }
+
+        WRITE_LOCK.lock();
+        Deque<Runnable> undoLog = new ArrayDeque<>();
+        UNDO_LOG.set(undoLog);
+        try {
+            return work.execute();
+        } catch (SQLException | RuntimeException e) {
+            while (!undoLog.isEmpty()) {
+                undoLog.pop().run();
+            }
+            throw e;
+        } finally {
+            UNDO_LOG.remove();
+            WRITE_LOCK.unlock();
+        }
+    }
+
+    /** Runs a single write under the shared lock. **/
+    static <T> T write(Supplier<T> change) {
+        WRITE_LOCK.lock();
+        try {
+            return change.get();
+        } finally {
+            WRITE_LOCK.unlock();
+        }
+    }
+
+    /** Registers how to revert a write just made, if it was made inside a transaction. **/
+    static void onRollback(Runnable undo) {
+        Deque<Runnable> undoLog = UNDO_LOG.get();
+        if (undoLog != null) {
+            undoLog.push(undo);
+        }
+    }
+}
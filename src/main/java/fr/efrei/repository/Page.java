@@ -0,0 +1,76 @@
+package fr.efrei.repository;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * One page of a keyset-paginated listing.
+ * The cursor is opaque to callers: pass getNextCursor() back to the repository to fetch the following page.
+ */
+public class Page<T> {
+    private static final String SEPARATOR = "\u001F";
+
+    private final List<T> items;
+    private final String nextCursor;
+
+    public Page(List<T> items, String nextCursor) {
+        this.items = Collections.unmodifiableList(items);
+        this.nextCursor = nextCursor;
+    }
+
+    public List<T> getItems() { return items; }
+    public String getNextCursor() { return nextCursor; }
+    public boolean hasNext() { return nextCursor != null; }
+    public boolean isEmpty() { return items.isEmpty(); }
+
+    /** Builds a cursor from the sort key values of the last row of a page. **/
+    static String encodeCursor(String... keys) {
+        String raw = String.join(SEPARATOR, keys);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Returns the sort key values stored in a cursor, or null for the first page. **/
+    static String[] decodeCursor(String cursor, int expectedKeys) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        String raw;
+        try {
+            raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid page cursor", e);
+        }
+        String[] keys = raw.split(SEPARATOR, -1);
+        if (keys.length != expectedKeys) {
+            throw new IllegalArgumentException("Invalid page cursor");
+        }
+        return keys;
+    }
+
+    /** Builds a page from up to limit + 1 fetched rows; the extra row only signals that another page exists. **/
+    static <T> Page<T> fromRows(List<T> rows, int limit, Function<T, String> cursorOf) {
+        if (rows.size() <= limit) {
+            return new Page<>(rows, null);
+        }
+        List<T> items = rows.subList(0, limit);
+        return new Page<>(items, cursorOf.apply(items.get(limit - 1)));
+    }
+
+    static int checkLimit(int limit) {
+        if (limit < 1 || limit > 1_000) {
+            throw new IllegalArgumentException("Page limit must be between 1 and 1000");
+        }
+        return limit;
+    }
+
+    @Override
+    public String toString() {
+        return "Page{" +
+                "items=" + items.size() +
+                ", hasNext=" + hasNext() +
+                '}';
+    }
+}
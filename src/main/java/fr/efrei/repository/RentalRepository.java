@@ -4,199 +4,300 @@ import fr.efrei.domain.Customer;
 import fr.efrei.domain.Game;
 import fr.efrei.domain.GamePlatform;
 import fr.efrei.domain.Rental;
+import fr.efrei.domain.RentalSummary;
 import fr.efrei.util.DatabaseConnection;
+import fr.efrei.util.QueryMetrics;
 
 import java.sql.*;
+import java.time.YearMonth;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
 public class RentalRepository implements IRentalRepository {
 
+    private static final String INSERT_SQL = "INSERT INTO rentals (id, customer_id, game_id, platform, rental_date, return_date, is_returned) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE return_date = VALUES(return_date), is_returned = VALUES(is_returned)";
+
+    private static final int STREAM_IDENTITY_MAP_SIZE = 1_024;
+
+    private static final String SELECT_WITH_DETAILS =
+        "SELECT r.id, r.customer_id, r.game_id, r.platform, r.rental_date, r.return_date, r.is_returned, " +
+        "c.id AS c_id, c.name AS c_name, c.contact_number AS c_contact_number, c.password AS c_password, " +
+        "c.loyalty_points AS c_loyalty_points, " +
+        "g.id AS g_id, g.title AS g_title, g.genre AS g_genre, g.platform AS g_platform, " +
+        "g.is_available AS g_is_available, g.type AS g_type, g.price AS g_price, g.version AS g_version " +
+        "FROM rentals r " +
+        "JOIN customers c ON c.id = r.customer_id " +
+        "JOIN games g ON g.id = r.game_id";
+
     private static RentalRepository instance;
 
     private RentalRepository() {}
 
-    public static RentalRepository getInstance() {
+    public static synchronized RentalRepository getInstance() {
         if (instance == null) {
             instance = new RentalRepository();
         }
         return instance;
     }
 
-    private Connection getConnection() {
+    private Connection getConnection() throws SQLException {
         return DatabaseConnection.getInstance().getConnection();
     }
 
     @Override
     public Rental save(Rental rental) {
-        String sql = "INSERT INTO rentals (id, customer_id, game_id, platform, rental_date, return_date, is_returned) " +
-                     "VALUES (?, ?, ?, ?, ?, ?, ?) " +
-                     "ON DUPLICATE KEY UPDATE return_date = VALUES(return_date), is_returned = VALUES(is_returned)";
-
-        try (PreparedStatement stmt = getConnection().prepareStatement(sql)) {
-            stmt.setString(1, rental.getRentalId());
-            stmt.setString(2, rental.getCustomer().getId());
-            stmt.setString(3, rental.getGame().getId());
-            stmt.setString(4, rental.getPlatform().name());
-            stmt.setDate(5, Date.valueOf(rental.getRentalDate()));
-            stmt.setDate(6, Date.valueOf(rental.getReturnDate()));
-            stmt.setBoolean(7, rental.isReturned());
+        try (Connection conn = getConnection();
+             PreparedStatement stmt = conn.prepareStatement(INSERT_SQL)) {
+            bindInsert(stmt, rental);
             stmt.executeUpdate();
             return rental;
         } catch (SQLException e) {
             System.err.println("Error saving rental: " + e.getMessage());
+            QueryMetrics.recordError();
             return null;
         }
     }
 
+    @Override
+    public BatchResult<Rental> saveAll(Collection<Rental> rentals, int batchSize) {
+        return BatchWriter.write(INSERT_SQL, rentals, RentalRepository::bindInsert, batchSize);
+    }
+
+    private static void bindInsert(PreparedStatement stmt, Rental rental) throws SQLException {
+        stmt.setObject(1, IdColumns.toColumn(rental.getRentalId()));
+        stmt.setObject(2, IdColumns.toColumn(rental.getCustomer().getId()));
+        stmt.setObject(3, IdColumns.toColumn(rental.getGame().getId()));
+        stmt.setString(4, rental.getPlatform().name());
+        stmt.setDate(5, Date.valueOf(rental.getRentalDate()));
+        stmt.setDate(6, Date.valueOf(rental.getReturnDate()));
+        stmt.setBoolean(7, rental.isReturned());
+    }
+
     @Override
     public List<Rental> findAll() {
-        List<Rental> rentals = new ArrayList<>();
-        String sql = "SELECT * FROM rentals";
+        return findWithDetails("");
+    }
 
-        try (Statement stmt = getConnection().createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
+    @Override
+    public Stream<Rental> streamAll() {
+        Map<String, Customer> customers = ResultSetStream.boundedIdentityMap(STREAM_IDENTITY_MAP_SIZE);
+        Map<String, Game> games = ResultSetStream.boundedIdentityMap(STREAM_IDENTITY_MAP_SIZE);
+        return ResultSetStream.of(SELECT_WITH_DETAILS, rs -> mapRental(rs, customers, games));
+    }
 
-            while (rs.next()) {
-                Customer customer = CustomerRepository.getInstance().findById(rs.getString("customer_id"));
-                Game game = GameRepository.getInstance().findById(rs.getString("game_id"));
-
-                if (customer != null && game != null) {
-                    rentals.add(new Rental.Builder()
-                        .setRentalId(rs.getString("id"))
-                        .setCustomer(customer)
-                        .setGame(game)
-                        .setPlatform(GamePlatform.valueOf(rs.getString("platform")))
-                        .setRentalDate(rs.getDate("rental_date").toLocalDate())
-                        .setReturnDate(rs.getDate("return_date").toLocalDate())
-                        .setReturned(rs.getBoolean("is_returned"))
-                        .build());
+    @Override
+    public Rental findById(String id) {
+        List<Rental> rentals = findWithDetails(" WHERE r.id = ?", IdColumns.toColumn(id));
+        return rentals.isEmpty() ? null : rentals.get(0);
+    }
+
+    @Override
+    public List<Rental> findActiveByCustomer(String customerId) {
+        return findWithDetails(" WHERE r.customer_id = ? AND r.is_returned = false", IdColumns.toColumn(customerId));
+    }
+
+    @Override
+    public boolean update(Rental rental) {
+        String sql = "UPDATE rentals SET is_returned = ? WHERE id = ?";
+
+        try (Connection conn = getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setBoolean(1, rental.isReturned());
+            stmt.setObject(2, IdColumns.toColumn(rental.getRentalId()));
+            return stmt.executeUpdate() > 0;
+        } catch (SQLException e) {
+            System.err.println("Error updating rental: " + e.getMessage());
+            QueryMetrics.recordError();
+            return false;
+        }
+    }
+
+    @Override
+    public List<Rental> findByCustomer(String customerId) {
+        return findWithDetails(" WHERE r.customer_id = ?", IdColumns.toColumn(customerId));
+    }
+
+    @Override
+    public Page<Rental> findPage(String cursor, int limit) {
+        Page.checkLimit(limit);
+        String[] keys = Page.decodeCursor(cursor, 2);
+        List<Rental> rows = keys == null
+            ? findWithDetails(" ORDER BY r.rental_date DESC, r.id DESC LIMIT ?", limit + 1)
+            : findWithDetails(" WHERE r.rental_date <= ? AND (r.rental_date < ? OR r.id < ?)" +
+                              " ORDER BY r.rental_date DESC, r.id DESC LIMIT ?",
+                              Date.valueOf(keys[0]), Date.valueOf(keys[0]), IdColumns.toColumn(keys[1]), limit + 1);
+        return Page.fromRows(rows, limit, RentalRepository::cursorOf);
+    }
+
+    @Override
+    public Page<Rental> findPageByCustomer(String customerId, String cursor, int limit) {
+        Page.checkLimit(limit);
+        String[] keys = Page.decodeCursor(cursor, 2);
+        List<Rental> rows = keys == null
+            ? findWithDetails(" WHERE r.customer_id = ? ORDER BY r.rental_date DESC, r.id DESC LIMIT ?",
+                              IdColumns.toColumn(customerId), limit + 1)
+            : findWithDetails(" WHERE r.customer_id = ? AND r.rental_date <= ? AND (r.rental_date < ? OR r.id < ?)" +
+                              " ORDER BY r.rental_date DESC, r.id DESC LIMIT ?",
+                              IdColumns.toColumn(customerId), Date.valueOf(keys[0]), Date.valueOf(keys[0]),
+                              IdColumns.toColumn(keys[1]), limit + 1);
+        return Page.fromRows(rows, limit, RentalRepository::cursorOf);
+    }
+
+    private static String cursorOf(Rental rental) {
+        return Page.encodeCursor(rental.getRentalDate().toString(), rental.getRentalId());
+    }
+
+    /**
+     * Loads rentals together with their customer and game in a single joined query.
+     * Each customer and game is built once per call and shared by all its rentals.
+     */
+    private List<Rental> findWithDetails(String clauses, Object... parameters) {
+        List<Rental> rentals = new ArrayList<>();
+        Map<String, Customer> customers = new HashMap<>();
+        Map<String, Game> games = new HashMap<>();
+        String sql = SELECT_WITH_DETAILS + clauses;
+
+        try (Connection conn = getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i < parameters.length; i++) {
+                stmt.setObject(i + 1, parameters[i]);
+            }
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    rentals.add(mapRental(rs, customers, games));
                 }
             }
         } catch (SQLException e) {
             System.err.println("Error retrieving rentals: " + e.getMessage());
+            QueryMetrics.recordError();
         }
         return rentals;
     }
 
-    @Override
-    public Rental findById(String id) {
-        String sql = "SELECT * FROM rentals WHERE id = ?";
+    private static Rental mapRental(ResultSet rs, Map<String, Customer> customers, Map<String, Game> games) throws SQLException {
+        Customer customer = customers.get(IdColumns.read(rs, "customer_id"));
+        if (customer == null) {
+            customer = CustomerRepository.mapCustomer(rs, "c_");
+            customers.put(customer.getId(), customer);
+        }
+        Game game = games.get(IdColumns.read(rs, "game_id"));
+        if (game == null) {
+            game = GameRepository.mapGame(rs, "g_");
+            games.put(game.getId(), game);
+        }
+
+        return new Rental.Builder()
+            .setRentalId(IdColumns.read(rs, "id"))
+            .setCustomer(customer)
+            .setGame(game)
+            .setPlatform(GamePlatform.valueOf(rs.getString("platform")))
+            .setRentalDate(rs.getDate("rental_date").toLocalDate())
+            .setReturnDate(rs.getDate("return_date").toLocalDate())
+            .setReturned(rs.getBoolean("is_returned"))
+            .build();
+    }
 
-        try (PreparedStatement stmt = getConnection().prepareStatement(sql)) {
-            stmt.setString(1, id);
-            ResultSet rs = stmt.executeQuery();
+    @Override
+    public RentalSummary getSummary() {
+        String sql = "SELECT COUNT(*) AS total_rentals, " +
+                     "COALESCE(SUM(CASE WHEN is_returned = false THEN 1 ELSE 0 END), 0) AS active_rentals, " +
+                     "COALESCE(SUM(CASE WHEN is_returned = false AND return_date < CURRENT_DATE THEN 1 ELSE 0 END), 0) AS overdue_rentals " +
+                     "FROM rentals";
+
+        try (Connection conn = getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
 
             if (rs.next()) {
-                Customer customer = CustomerRepository.getInstance().findById(rs.getString("customer_id"));
-                Game game = GameRepository.getInstance().findById(rs.getString("game_id"));
-
-                if (customer != null && game != null) {
-                    return new Rental.Builder()
-                        .setRentalId(rs.getString("id"))
-                        .setCustomer(customer)
-                        .setGame(game)
-                        .setPlatform(GamePlatform.valueOf(rs.getString("platform")))
-                        .setRentalDate(rs.getDate("rental_date").toLocalDate())
-                        .setReturnDate(rs.getDate("return_date").toLocalDate())
-                        .setReturned(rs.getBoolean("is_returned"))
-                        .build();
-                }
+                return new RentalSummary(rs.getLong("total_rentals"), rs.getLong("active_rentals"), rs.getLong("overdue_rentals"));
             }
         } catch (SQLException e) {
-            System.err.println("Error finding rental by ID: " + e.getMessage());
+            System.err.println("Error calculating rental summary: " + e.getMessage());
+            QueryMetrics.recordError();
         }
-
-        return null;
+        return new RentalSummary(0, 0, 0);
     }
 
     @Override
-    public List<Rental> findActiveByCustomer(String customerId) {
-        List<Rental> rentals = new ArrayList<>();
-        String sql = "SELECT * FROM rentals WHERE customer_id = ? AND is_returned = false";
+    public Map<GamePlatform, Long> countByPlatform() {
+        Map<GamePlatform, Long> counts = new LinkedHashMap<>();
+        String sql = "SELECT platform, COUNT(*) AS total FROM rentals GROUP BY platform ORDER BY total DESC";
 
-        try (PreparedStatement stmt = getConnection().prepareStatement(sql)) {
-            stmt.setString(1, customerId);
-            ResultSet rs = stmt.executeQuery();
+        try (Connection conn = getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
 
             while (rs.next()) {
-                Customer customer = CustomerRepository.getInstance().findById(customerId);
-                Game game = GameRepository.getInstance().findById(rs.getString("game_id"));
-
-                if (customer != null && game != null) {
-                    rentals.add(new Rental.Builder()
-                        .setRentalId(rs.getString("id"))
-                        .setCustomer(customer)
-                        .setGame(game)
-                        .setPlatform(GamePlatform.valueOf(rs.getString("platform")))
-                        .setRentalDate(rs.getDate("rental_date").toLocalDate())
-                        .setReturnDate(rs.getDate("return_date").toLocalDate())
-                        .setReturned(false)
-                        .build());
-                }
+                counts.put(GamePlatform.valueOf(rs.getString("platform")), rs.getLong("total"));
             }
         } catch (SQLException e) {
-            System.err.println("Error retrieving active rentals: " + e.getMessage());
+            System.err.println("Error counting rentals by platform: " + e.getMessage());
+            QueryMetrics.recordError();
         }
-        return rentals;
+        return counts;
     }
 
     @Override
-    public boolean update(Rental rental) {
-        String sql = "UPDATE rentals SET is_returned = ? WHERE id = ?";
+    public Map<String, Long> countByGenre() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        String sql = "SELECT g.genre AS genre, COUNT(*) AS total FROM rentals r " +
+                     "JOIN games g ON g.id = r.game_id GROUP BY g.genre ORDER BY total DESC";
 
-        try (PreparedStatement stmt = getConnection().prepareStatement(sql)) {
-            stmt.setBoolean(1, rental.isReturned());
-            stmt.setString(2, rental.getRentalId());
-            return stmt.executeUpdate() > 0;
+        try (Connection conn = getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+
+            while (rs.next()) {
+                counts.put(rs.getString("genre"), rs.getLong("total"));
+            }
         } catch (SQLException e) {
-            System.err.println("Error updating rental: " + e.getMessage());
-            return false;
+            System.err.println("Error counting rentals by genre: " + e.getMessage());
+            QueryMetrics.recordError();
         }
+        return counts;
     }
 
     @Override
-    public List<Rental> findByCustomer(String customerId) {
-        List<Rental> rentals = new ArrayList<>();
-        String sql = "SELECT * FROM rentals WHERE customer_id = ?";
+    public Map<YearMonth, Long> countByMonth() {
+        Map<YearMonth, Long> counts = new LinkedHashMap<>();
+        String sql = "SELECT YEAR(rental_date) AS rental_year, MONTH(rental_date) AS rental_month, COUNT(*) AS total " +
+                     "FROM rentals GROUP BY YEAR(rental_date), MONTH(rental_date) ORDER BY rental_year, rental_month";
 
-        try (PreparedStatement stmt = getConnection().prepareStatement(sql)) {
-            stmt.setString(1, customerId);
-            ResultSet rs = stmt.executeQuery();
+        try (Connection conn = getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
 
             while (rs.next()) {
-                Customer customer = CustomerRepository.getInstance().findById(customerId);
-                Game game = GameRepository.getInstance().findById(rs.getString("game_id"));
-
-                if (customer != null && game != null) {
-                    rentals.add(new Rental.Builder()
-                        .setRentalId(rs.getString("id"))
-                        .setCustomer(customer)
-                        .setGame(game)
-                        .setPlatform(GamePlatform.valueOf(rs.getString("platform")))
-                        .setRentalDate(rs.getDate("rental_date").toLocalDate())
-                        .setReturnDate(rs.getDate("return_date").toLocalDate())
-                        .setReturned(rs.getBoolean("is_returned"))
-                        .build());
-                }
+                counts.put(YearMonth.of(rs.getInt("rental_year"), rs.getInt("rental_month")), rs.getLong("total"));
             }
         } catch (SQLException e) {
-            System.err.println("Error retrieving rentals: " + e.getMessage());
+            System.err.println("Error counting rentals by month: " + e.getMessage());
+            QueryMetrics.recordError();
         }
-        return rentals;
+        return counts;
     }
 
     @Override
     public boolean delete(String id) {
         String sql = "DELETE FROM rentals WHERE id = ?";
 
-        try (PreparedStatement stmt = getConnection().prepareStatement(sql)) {
-            stmt.setString(1, id);
+        try (Connection conn = getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setObject(1, IdColumns.toColumn(id));
 
             int rowsAffected = stmt.executeUpdate();
             return rowsAffected > 0;
         } catch (SQLException e) {
             System.err.println("Error deleting rental: " + e.getMessage());
+            QueryMetrics.recordError();
         }
 
         return false;
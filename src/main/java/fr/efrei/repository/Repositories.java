@@ -0,0 +1,147 @@
+package fr.efrei.repository;
+
+import fr.efrei.domain.Employee;
+import fr.efrei.domain.Game;
+import fr.efrei.domain.GamePlatform;
+import fr.efrei.domain.GameType;
+import fr.efrei.util.Config;
+import fr.efrei.util.DatabaseConnection;
+import fr.efrei.util.DatabaseConnection.TransactionWork;
+import fr.efrei.util.QueryInspector;
+import fr.efrei.util.QueryMetrics;
+
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.BaseStream;
+
+/**
+ * Repositories as used by the application. REPOSITORY_BACKEND selects MySQL (the default) or "memory",
+ * which keeps everything in the in-memory repositories, seeded with the demo data of database_setup.sql.
+ * When metrics are enabled (METRICS_ENABLED, the default), each one is wrapped so its calls are recorded
+ * in {@link QueryMetrics}; with QUERY_LOG_ENABLED each MySQL call is also a logical operation for the
+ * {@link QueryInspector}.
+ */
+public final class Repositories {
+    private static final boolean IN_MEMORY = "memory".equalsIgnoreCase(Config.get("REPOSITORY_BACKEND", "mysql").trim());
+
+    private static IEmployeeRepository employees;
+    private static ICustomerRepository customers;
+    private static IGameRepository games;
+    private static IRentalRepository rentals;
+    private static ISaleRepository sales;
+
+    private Repositories() {}
+
+    public static synchronized IEmployeeRepository employees() {
+        if (employees == null) {
+            employees = instrument(IEmployeeRepository.class, IN_MEMORY ? InMemory.EMPLOYEES : EmployeeRepository.getInstance());
+        }
+        return employees;
+    }
+
+    public static synchronized ICustomerRepository customers() {
+        if (customers == null) {
+            customers = instrument(ICustomerRepository.class, IN_MEMORY ? InMemory.CUSTOMERS : CustomerRepository.getInstance());
+        }
+        return customers;
+    }
+
+    public static synchronized IGameRepository games() {
+        if (games == null) {
+            games = instrument(IGameRepository.class, IN_MEMORY ? InMemory.GAMES : GameRepository.getInstance());
+        }
+        return games;
+    }
+
+    public static synchronized IRentalRepository rentals() {
+        if (rentals == null) {
+            rentals = instrument(IRentalRepository.class, IN_MEMORY ? InMemory.RENTALS : RentalRepository.getInstance());
+        }
+        return rentals;
+    }
+
+    public static synchronized ISaleRepository sales() {
+        if (sales == null) {
+            sales = instrument(ISaleRepository.class, IN_MEMORY ? InMemory.SALES : SaleRepository.getInstance());
+        }
+        return sales;
+    }
+
+    public static boolean isInMemory() {
+        return IN_MEMORY;
+    }
+
+    /**
+     * Runs the work in a single transaction of the selected backend: a database transaction, or for the
+     * in-memory repositories one whose writes are undone if the work throws.
+     */
+    public static <T> T inTransaction(TransactionWork<T> work) throws SQLException {
+        return IN_MEMORY ? InMemoryTransaction.run(work) : DatabaseConnection.getInstance().inTransaction(work);
+    }
+
+    private static <T> T instrument(Class<T> type, T repository) {
+        T instrumented = repository;
+        if (QueryInspector.isEnabled() && !IN_MEMORY) {
+            instrumented = QueryInspector.getInstance().scoped(type, instrumented);
+        }
+        if (QueryMetrics.isEnabled()) {
+            instrumented = QueryMetrics.getInstance().instrument(type, instrumented, Repositories::rowCount);
+        }
+        return instrumented;
+    }
+
+    /** Rows held by a repository result; streams are read after the call returns and are not counted. **/
+    private static int rowCount(Object result) {
+        if (result == null || result instanceof Boolean || result instanceof Number
+                || result instanceof Enum || result instanceof BaseStream) {
+            return 0;
+        }
+        if (result instanceof Collection<?> collection) return collection.size();
+        if (result instanceof Map<?, ?> map) return map.size();
+        if (result instanceof Page<?> page) return page.getItems().size();
+        if (result instanceof BatchResult<?> batch) return batch.getSavedCount();
+        return 1;
+    }
+
+    /** The in-memory backend, created on first use. **/
+    private static final class InMemory {
+        static final InMemoryEmployeeRepository EMPLOYEES = new InMemoryEmployeeRepository();
+        static final InMemoryCustomerRepository CUSTOMERS = new InMemoryCustomerRepository();
+        static final InMemoryGameRepository GAMES = new InMemoryGameRepository();
+        static final InMemoryRentalRepository RENTALS = new InMemoryRentalRepository(CUSTOMERS, GAMES);
+        static final InMemorySaleRepository SALES = new InMemorySaleRepository(CUSTOMERS, GAMES);
+
+        static {
+            EMPLOYEES.save(new Employee("emp-1", "Admin User", "admin@capetown.com", "admin123"));
+            GAMES.saveAll(List.of(
+                demoGame("game-1", "Halo Infinite", "Shooter", GamePlatform.XBOX_SERIES_X, GameType.RENTAL, 4.99),
+                demoGame("game-2", "Forza Horizon 5", "Racing", GamePlatform.XBOX_SERIES_X, GameType.RENTAL, 3.99),
+                demoGame("game-3", "God of War Ragnarök", "Action", GamePlatform.PS5, GameType.RENTAL, 5.99),
+                demoGame("game-4", "The Last of Us Part II", "Action", GamePlatform.PS4, GameType.RENTAL, 3.49),
+                demoGame("game-5", "Cyberpunk 2077", "RPG", GamePlatform.PC_WINDOWS, GameType.RENTAL, 4.49),
+                demoGame("game-6", "Elden Ring", "RPG", GamePlatform.PC_WINDOWS, GameType.SALE, 49.99),
+                demoGame("game-7", "Spider-Man Miles Morales", "Action", GamePlatform.PS5, GameType.SALE, 39.99),
+                demoGame("game-8", "Gears 5", "Shooter", GamePlatform.XBOX_ONE, GameType.SALE, 29.99),
+                demoGame("game-9", "FIFA 25", "Sport", GamePlatform.PS5, GameType.SALE, 59.99),
+                demoGame("game-10", "Call of Duty: Modern Warfare 3", "Shooter", GamePlatform.XBOX_SERIES_X, GameType.SALE, 69.99),
+                demoGame("game-11", "The Sims 5", "Simulation", GamePlatform.PC_WINDOWS, GameType.SALE, 44.99),
+                demoGame("game-12", "Gran Turismo 8", "Racing", GamePlatform.PS5, GameType.SALE, 54.99),
+                demoGame("game-13", "Minecraft Legends", "Adventure", GamePlatform.PC_WINDOWS, GameType.SALE, 24.99),
+                demoGame("game-14", "Forza Motorsport", "Racing", GamePlatform.XBOX_SERIES_X, GameType.SALE, 49.99),
+                demoGame("game-15", "Football Manager 2025", "Sport", GamePlatform.PC_WINDOWS, GameType.SALE, 39.99)));
+        }
+
+        private static Game demoGame(String id, String title, String genre, GamePlatform platform, GameType type, double price) {
+            return new Game.Builder()
+                .setId(id)
+                .setTitle(title)
+                .setGenre(genre)
+                .setPlatform(platform)
+                .setType(type)
+                .setPrice(price)
+                .build();
+        }
+    }
+}
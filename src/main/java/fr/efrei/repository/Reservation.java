@@ -0,0 +1,8 @@
+package fr.efrei.repository;
+
+/** Outcome of IGameRepository.tryReserve. **/
+public enum Reservation {
+    RESERVED,
+    CONFLICT,
+    UNAVAILABLE
+}
@@ -0,0 +1,114 @@
+package fr.efrei.repository;
+
+import fr.efrei.util.DatabaseConnection;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Exposes a query result as a lazily populated Stream backed by a server-side cursor.
+ * The connection stays borrowed until the stream is closed or fully consumed, so always use try-with-resources.
+ */
+final class ResultSetStream {
+    private static final int DEFAULT_FETCH_SIZE = 1_000;
+
+    @FunctionalInterface
+    interface RowMapper<T> {
+        T map(ResultSet rs) throws SQLException;
+    }
+
+    private ResultSetStream() {}
+
+    static <T> Stream<T> of(String sql, RowMapper<T> mapper) {
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        try {
+            conn = DatabaseConnection.getInstance().getConnection();
+            stmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            stmt.setFetchSize(streamingFetchSize(conn));
+            rs = stmt.executeQuery();
+        } catch (SQLException e) {
+            closeQuietly(rs, stmt, conn);
+            throw new RuntimeException("Unable to open result stream: " + e.getMessage(), e);
+        }
+
+        Cursor<T> cursor = new Cursor<>(conn, stmt, rs, mapper);
+        return StreamSupport.stream(cursor, false).onClose(cursor::close);
+    }
+
+    /** MySQL Connector/J only streams rows one by one when the fetch size is Integer.MIN_VALUE. **/
+    private static int streamingFetchSize(Connection conn) throws SQLException {
+        String product = conn.getMetaData().getDatabaseProductName();
+        return "MySQL".equalsIgnoreCase(product) ? Integer.MIN_VALUE : DEFAULT_FETCH_SIZE;
+    }
+
+    /** Identity map that forgets the least recently used entries, so streaming stays in constant memory. **/
+    static <K, V> Map<K, V> boundedIdentityMap(int maxEntries) {
+        return new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    private static void closeQuietly(AutoCloseable... resources) {
+        for (AutoCloseable resource : resources) {
+            if (resource == null) continue;
+            try {
+                resource.close();
+            } catch (Exception e) {
+                System.err.println("Error closing result stream: " + e.getMessage());
+            }
+        }
+    }
+
+    private static final class Cursor<T> extends Spliterators.AbstractSpliterator<T> {
+        private final Connection conn;
+        private final PreparedStatement stmt;
+        private final ResultSet rs;
+        private final RowMapper<T> mapper;
+        private boolean closed;
+
+        private Cursor(Connection conn, PreparedStatement stmt, ResultSet rs, RowMapper<T> mapper) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.conn = conn;
+            this.stmt = stmt;
+            this.rs = rs;
+            this.mapper = mapper;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (closed) return false;
+            try {
+                if (!rs.next()) {
+                    close();
+                    return false;
+                }
+                action.accept(mapper.map(rs));
+                return true;
+            } catch (SQLException e) {
+                close();
+                throw new RuntimeException("Error reading result stream: " + e.getMessage(), e);
+            }
+        }
+
+        private void close() {
+            if (!closed) {
+                closed = true;
+                closeQuietly(rs, stmt, conn);
+            }
+        }
+    }
+}
@@ -2,44 +2,57 @@ package fr.efrei.repository;
 
 import fr.efrei.domain.Customer;
 import fr.efrei.domain.Game;
+import fr.efrei.domain.GamePlatform;
 import fr.efrei.domain.Sale;
+import fr.efrei.domain.SalesSummary;
 import fr.efrei.util.DatabaseConnection;
+import fr.efrei.util.QueryMetrics;
 
 import java.sql.*;
+import java.time.YearMonth;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
 public class SaleRepository implements ISaleRepository {
+    private static final String INSERT_SQL = "INSERT INTO sales (id, customer_id, game_id, sale_date, price) VALUES (?, ?, ?, ?, ?)";
+
+    private static final int STREAM_IDENTITY_MAP_SIZE = 1_024;
+
+    private static final String SELECT_WITH_DETAILS =
+            "SELECT s.id, s.customer_id, s.game_id, s.sale_date, s.price, " +
+            "c.id AS c_id, c.name AS c_name, c.contact_number AS c_contact_number, c.password AS c_password, " +
+            "c.loyalty_points AS c_loyalty_points, " +
+            "g.id AS g_id, g.title AS g_title, g.genre AS g_genre, g.platform AS g_platform, " +
+            "g.is_available AS g_is_available, g.type AS g_type, g.price AS g_price, g.version AS g_version " +
+            "FROM sales s " +
+            "JOIN customers c ON c.id = s.customer_id " +
+            "JOIN games g ON g.id = s.game_id";
+
     private static SaleRepository instance;
-    private final CustomerRepository customerRepository;
-    private final GameRepository gameRepository;
 
-    private SaleRepository() {
-        this.customerRepository = CustomerRepository.getInstance();
-        this.gameRepository = GameRepository.getInstance();
-    }
+    private SaleRepository() {}
 
-    public static SaleRepository getInstance() {
+    public static synchronized SaleRepository getInstance() {
         if (instance == null) {
             instance = new SaleRepository();
         }
         return instance;
     }
 
-    private Connection getConnection() {
+    private Connection getConnection() throws SQLException {
         return DatabaseConnection.getInstance().getConnection();
     }
 
     @Override
     public Sale save(Sale sale) {
-        String sql = "INSERT INTO sales (id, customer_id, game_id, sale_date, price) VALUES (?, ?, ?, ?, ?)";
-
-        try (PreparedStatement stmt = getConnection().prepareStatement(sql)) {
-            stmt.setString(1, sale.getId());
-            stmt.setString(2, sale.getCustomer().getId());
-            stmt.setString(3, sale.getGame().getId());
-            stmt.setDate(4, Date.valueOf(sale.getDate()));
-            stmt.setDouble(5, sale.getPrice());
+        try (Connection conn = getConnection();
+             PreparedStatement stmt = conn.prepareStatement(INSERT_SQL)) {
+            bindInsert(stmt, sale);
 
             int rowsAffected = stmt.executeUpdate();
             if (rowsAffected > 0) {
@@ -47,164 +60,227 @@ public class SaleRepository implements ISaleRepository {
             }
         } catch (SQLException e) {
             System.err.println("Error saving sale: " + e.getMessage());
+            QueryMetrics.recordError();
         }
 
         return null;
     }
 
+    @Override
+    public BatchResult<Sale> saveAll(Collection<Sale> sales, int batchSize) {
+        return BatchWriter.write(INSERT_SQL, sales, SaleRepository::bindInsert, batchSize);
+    }
+
+    private static void bindInsert(PreparedStatement stmt, Sale sale) throws SQLException {
+        stmt.setObject(1, IdColumns.toColumn(sale.getId()));
+        stmt.setObject(2, IdColumns.toColumn(sale.getCustomer().getId()));
+        stmt.setObject(3, IdColumns.toColumn(sale.getGame().getId()));
+        stmt.setDate(4, Date.valueOf(sale.getDate()));
+        stmt.setDouble(5, sale.getPrice());
+    }
+
     @Override
     public Sale findById(String id) {
-        String sql = "SELECT * FROM sales WHERE id = ?";
+        List<Sale> sales = findWithDetails(" WHERE s.id = ?", IdColumns.toColumn(id));
+        return sales.isEmpty() ? null : sales.get(0);
+    }
 
-        try (PreparedStatement stmt = getConnection().prepareStatement(sql)) {
-            stmt.setString(1, id);
+    @Override
+    public List<Sale> findAll() {
+        return findWithDetails(" ORDER BY s.sale_date DESC");
+    }
+
+    @Override
+    public Stream<Sale> streamAll() {
+        Map<String, Customer> customers = ResultSetStream.boundedIdentityMap(STREAM_IDENTITY_MAP_SIZE);
+        Map<String, Game> games = ResultSetStream.boundedIdentityMap(STREAM_IDENTITY_MAP_SIZE);
+        return ResultSetStream.of(SELECT_WITH_DETAILS, rs -> mapSale(rs, customers, games));
+    }
+
+    public List<Sale> findByCustomer(String customerId) {
+        return findWithDetails(" WHERE s.customer_id = ? ORDER BY s.sale_date DESC", IdColumns.toColumn(customerId));
+    }
+
+    public List<Sale> findByGame(String gameId) {
+        return findWithDetails(" WHERE s.game_id = ? ORDER BY s.sale_date DESC", IdColumns.toColumn(gameId));
+    }
+
+    @Override
+    public Page<Sale> findPage(String cursor, int limit) {
+        Page.checkLimit(limit);
+        String[] keys = Page.decodeCursor(cursor, 2);
+        List<Sale> rows = keys == null
+                ? findWithDetails(" ORDER BY s.sale_date DESC, s.id DESC LIMIT ?", limit + 1)
+                : findWithDetails(" WHERE s.sale_date <= ? AND (s.sale_date < ? OR s.id < ?)" +
+                                  " ORDER BY s.sale_date DESC, s.id DESC LIMIT ?",
+                                  Date.valueOf(keys[0]), Date.valueOf(keys[0]), IdColumns.toColumn(keys[1]), limit + 1);
+        return Page.fromRows(rows, limit, sale -> Page.encodeCursor(sale.getDate().toString(), sale.getId()));
+    }
+
+    /**
+     * Loads sales together with their customer and game in a single joined query.
+     * Each customer and game is built once per call and shared by all its sales.
+     */
+    private List<Sale> findWithDetails(String clauses, Object... parameters) {
+        List<Sale> sales = new ArrayList<>();
+        Map<String, Customer> customers = new HashMap<>();
+        Map<String, Game> games = new HashMap<>();
+        String sql = SELECT_WITH_DETAILS + clauses;
+
+        try (Connection conn = getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i < parameters.length; i++) {
+                stmt.setObject(i + 1, parameters[i]);
+            }
 
             try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    Customer customer = customerRepository.findById(rs.getString("customer_id"));
-                    Game game = gameRepository.findById(rs.getString("game_id"));
-
-                    if (customer != null && game != null) {
-                        return new Sale(
-                                rs.getString("id"),
-                                customer,
-                                game,
-                                rs.getDate("sale_date").toLocalDate(),
-                                rs.getDouble("price")
-                        );
-                    }
+                while (rs.next()) {
+                    sales.add(mapSale(rs, customers, games));
                 }
             }
         } catch (SQLException e) {
-            System.err.println("Error finding sale by ID: " + e.getMessage());
+            System.err.println("Error finding sales: " + e.getMessage());
+            QueryMetrics.recordError();
         }
 
-        return null;
+        return sales;
     }
 
-    @Override
-    public List<Sale> findAll() {
-        List<Sale> sales = new ArrayList<>();
-        String sql = "SELECT * FROM sales ORDER BY sale_date DESC";
+    private static Sale mapSale(ResultSet rs, Map<String, Customer> customers, Map<String, Game> games) throws SQLException {
+        Customer customer = customers.get(IdColumns.read(rs, "customer_id"));
+        if (customer == null) {
+            customer = CustomerRepository.mapCustomer(rs, "c_");
+            customers.put(customer.getId(), customer);
+        }
+        Game game = games.get(IdColumns.read(rs, "game_id"));
+        if (game == null) {
+            game = GameRepository.mapGame(rs, "g_");
+            games.put(game.getId(), game);
+        }
+
+        return new Sale(
+                IdColumns.read(rs, "id"),
+                customer,
+                game,
+                rs.getDate("sale_date").toLocalDate(),
+                rs.getDouble("price")
+        );
+    }
+
+    public double getTotalRevenue() {
+        String sql = "SELECT COALESCE(SUM(price), 0) as total FROM sales";
 
-        try (Statement stmt = getConnection().createStatement();
+        try (Connection conn = getConnection();
+             Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
 
-            while (rs.next()) {
-                Customer customer = customerRepository.findById(rs.getString("customer_id"));
-                Game game = gameRepository.findById(rs.getString("game_id"));
-
-                if (customer != null && game != null) {
-                    Sale sale = new Sale(
-                            rs.getString("id"),
-                            customer,
-                            game,
-                            rs.getDate("sale_date").toLocalDate(),
-                            rs.getDouble("price")
-                    );
-                    sales.add(sale);
-                }
+            if (rs.next()) {
+                return rs.getDouble("total");
             }
         } catch (SQLException e) {
-            System.err.println("Error finding all sales: " + e.getMessage());
+            System.err.println("Error calculating total revenue: " + e.getMessage());
+            QueryMetrics.recordError();
         }
 
-        return sales;
+        return 0.0;
     }
 
-    public List<Sale> findByCustomer(String customerId) {
-        List<Sale> sales = new ArrayList<>();
-        String sql = "SELECT * FROM sales WHERE customer_id = ? ORDER BY sale_date DESC";
+    public SalesSummary getSummary() {
+        String sql = "SELECT COUNT(*) AS total_sales, COALESCE(SUM(price), 0) AS total, COALESCE(AVG(price), 0) AS average " +
+                     "FROM sales";
 
-        try (PreparedStatement stmt = getConnection().prepareStatement(sql)) {
-            stmt.setString(1, customerId);
+        try (Connection conn = getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
 
-            try (ResultSet rs = stmt.executeQuery()) {
-                while (rs.next()) {
-                    Customer customer = customerRepository.findById(rs.getString("customer_id"));
-                    Game game = gameRepository.findById(rs.getString("game_id"));
-
-                    if (customer != null && game != null) {
-                        Sale sale = new Sale(
-                                rs.getString("id"),
-                                customer,
-                                game,
-                                rs.getDate("sale_date").toLocalDate(),
-                                rs.getDouble("price")
-                        );
-                        sales.add(sale);
-                    }
-                }
+            if (rs.next()) {
+                return new SalesSummary(rs.getLong("total_sales"), rs.getDouble("total"), rs.getDouble("average"));
             }
         } catch (SQLException e) {
-            System.err.println("Error finding sales by customer: " + e.getMessage());
+            System.err.println("Error calculating sales summary: " + e.getMessage());
+            QueryMetrics.recordError();
         }
 
-        return sales;
+        return new SalesSummary(0, 0.0, 0.0);
     }
 
-    public List<Sale> findByGame(String gameId) {
-        List<Sale> sales = new ArrayList<>();
-        String sql = "SELECT * FROM sales WHERE game_id = ? ORDER BY sale_date DESC";
+    public Map<GamePlatform, Double> getRevenueByPlatform() {
+        Map<GamePlatform, Double> revenue = new LinkedHashMap<>();
+        String sql = "SELECT g.platform AS platform, SUM(s.price) AS total FROM sales s " +
+                     "JOIN games g ON g.id = s.game_id GROUP BY g.platform ORDER BY total DESC";
 
-        try (PreparedStatement stmt = getConnection().prepareStatement(sql)) {
-            stmt.setString(1, gameId);
+        try (Connection conn = getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
 
-            try (ResultSet rs = stmt.executeQuery()) {
-                while (rs.next()) {
-                    Customer customer = customerRepository.findById(rs.getString("customer_id"));
-                    Game game = gameRepository.findById(rs.getString("game_id"));
-
-                    if (customer != null && game != null) {
-                        Sale sale = new Sale(
-                                rs.getString("id"),
-                                customer,
-                                game,
-                                rs.getDate("sale_date").toLocalDate(),
-                                rs.getDouble("price")
-                        );
-                        sales.add(sale);
-                    }
-                }
+            while (rs.next()) {
+                revenue.put(GamePlatform.valueOf(rs.getString("platform")), rs.getDouble("total"));
             }
         } catch (SQLException e) {
-            System.err.println("Error finding sales by game: " + e.getMessage());
+            System.err.println("Error calculating revenue by platform: " + e.getMessage());
+            QueryMetrics.recordError();
         }
 
-        return sales;
+        return revenue;
     }
 
-    public double getTotalRevenue() {
-        String sql = "SELECT COALESCE(SUM(price), 0) as total FROM sales";
+    public Map<String, Double> getRevenueByGenre() {
+        Map<String, Double> revenue = new LinkedHashMap<>();
+        String sql = "SELECT g.genre AS genre, SUM(s.price) AS total FROM sales s " +
+                     "JOIN games g ON g.id = s.game_id GROUP BY g.genre ORDER BY total DESC";
 
-        try (Statement stmt = getConnection().createStatement();
+        try (Connection conn = getConnection();
+             Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
 
-            if (rs.next()) {
-                return rs.getDouble("total");
+            while (rs.next()) {
+                revenue.put(rs.getString("genre"), rs.getDouble("total"));
             }
         } catch (SQLException e) {
-            System.err.println("Error calculating total revenue: " + e.getMessage());
+            System.err.println("Error calculating revenue by genre: " + e.getMessage());
+            QueryMetrics.recordError();
         }
 
-        return 0.0;
+        return revenue;
+    }
+
+    public Map<YearMonth, Double> getRevenueByMonth() {
+        Map<YearMonth, Double> revenue = new LinkedHashMap<>();
+        String sql = "SELECT YEAR(sale_date) AS sale_year, MONTH(sale_date) AS sale_month, SUM(price) AS total " +
+                     "FROM sales GROUP BY YEAR(sale_date), MONTH(sale_date) ORDER BY sale_year, sale_month";
+
+        try (Connection conn = getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+
+            while (rs.next()) {
+                revenue.put(YearMonth.of(rs.getInt("sale_year"), rs.getInt("sale_month")), rs.getDouble("total"));
+            }
+        } catch (SQLException e) {
+            System.err.println("Error calculating revenue by month: " + e.getMessage());
+            QueryMetrics.recordError();
+        }
+
+        return revenue;
     }
 
     @Override
     public boolean update(Sale sale) {
         String sql = "UPDATE sales SET customer_id = ?, game_id = ?, sale_date = ?, price = ? WHERE id = ?";
 
-        try (PreparedStatement stmt = getConnection().prepareStatement(sql)) {
-            stmt.setString(1, sale.getCustomer().getId());
-            stmt.setString(2, sale.getGame().getId());
+        try (Connection conn = getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setObject(1, IdColumns.toColumn(sale.getCustomer().getId()));
+            stmt.setObject(2, IdColumns.toColumn(sale.getGame().getId()));
             stmt.setDate(3, Date.valueOf(sale.getDate()));
             stmt.setDouble(4, sale.getPrice());
-            stmt.setString(5, sale.getId());
+            stmt.setObject(5, IdColumns.toColumn(sale.getId()));
 
             int rowsAffected = stmt.executeUpdate();
             return rowsAffected > 0;
         } catch (SQLException e) {
             System.err.println("Error updating sale: " + e.getMessage());
+            QueryMetrics.recordError();
         }
 
         return false;
@@ -214,13 +290,15 @@ public class SaleRepository implements ISaleRepository {
     public boolean delete(String id) {
         String sql = "DELETE FROM sales WHERE id = ?";
 
-        try (PreparedStatement stmt = getConnection().prepareStatement(sql)) {
-            stmt.setString(1, id);
+        try (Connection conn = getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setObject(1, IdColumns.toColumn(id));
 
             int rowsAffected = stmt.executeUpdate();
             return rowsAffected > 0;
         } catch (SQLException e) {
             System.err.println("Error deleting sale: " + e.getMessage());
+            QueryMetrics.recordError();
         }
 
         return false;
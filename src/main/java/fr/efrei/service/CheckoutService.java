@@ -0,0 +1,251 @@
+package fr.efrei.service;
+
+import fr.efrei.domain.Customer;
+import fr.efrei.domain.Game;
+import fr.efrei.domain.GamePlatform;
+import fr.efrei.domain.PointsAccrual;
+import fr.efrei.domain.Rental;
+import fr.efrei.domain.Sale;
+import fr.efrei.repository.ICustomerRepository;
+import fr.efrei.repository.IGameRepository;
+import fr.efrei.repository.IRentalRepository;
+import fr.efrei.repository.ISaleRepository;
+import fr.efrei.repository.Repositories;
+import fr.efrei.repository.Reservation;
+import fr.efrei.util.DatabaseConnection.TransactionWork;
+import fr.efrei.util.Helper;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Rent, buy and return operations. Each one writes the rental or sale, the game availability
+ * and the customer's loyalty points in a single transaction, so a failure never leaves partial state.
+ * With LOYALTY_BUFFER_ENABLED, the points earned are journaled by the LoyaltyAccrualBuffer as the last step of
+ * the transaction instead, and written later in batches.
+ */
+public class CheckoutService {
+    public static final int ON_TIME_RETURN_BONUS = 50;
+    private static final int MAX_RESERVATION_ATTEMPTS = 3;
+
+    private static CheckoutService instance;
+
+    private final ICustomerRepository customerRepo;
+    private final IGameRepository gameRepo;
+    private final IRentalRepository rentalRepo;
+    private final ISaleRepository saleRepo;
+    // Null when earned points are written in the checkout transaction
+    private final LoyaltyAccrualBuffer accruals;
+
+    private CheckoutService() {
+        this.customerRepo = Repositories.customers();
+        this.gameRepo = Repositories.games();
+        this.rentalRepo = Repositories.rentals();
+        this.saleRepo = Repositories.sales();
+        this.accruals = LoyaltyAccrualBuffer.isEnabled() ? LoyaltyAccrualBuffer.getInstance() : null;
+    }
+
+    public static synchronized CheckoutService getInstance() {
+        if (instance == null) {
+            instance = new CheckoutService();
+        }
+        return instance;
+    }
+
+    /** Loyalty points earned for a purchase or rental (10 points per dollar). **/
+    public static int pointsEarned(double price) {
+        return (int) (price * 10);
+    }
+
+    /** Price of a rental of 1 day, 1 week (15% off) or 1 month (30% off). **/
+    public static double rentalPrice(Game game, int days) {
+        return switch (days) {
+            case 1 -> game.getPrice();
+            case 7 -> game.getPrice() * 7 * 0.85;
+            case 30 -> game.getPrice() * 30 * 0.70;
+            default -> throw new IllegalArgumentException("A rental lasts 1, 7 or 30 days");
+        };
+    }
+
+    /** Points that can be used at checkout: the balance in multiples of 100. **/
+    public static int redeemablePoints(int balance) {
+        return (balance / 100) * 100;
+    }
+
+    /** Price after using the points (100 points = $1 discount), never below zero. **/
+    public static double discountedPrice(double price, int pointsUsed) {
+        return Math.max(0, price - pointsUsed / 100.0);
+    }
+
+    public static boolean isOnTime(Rental rental) {
+        return !LocalDate.now().isAfter(rental.getReturnDate());
+    }
+
+    /** Rents the game; returns the saved rental, or null if nothing was written. **/
+    public Rental rent(Customer customer, Game game, GamePlatform platform, int days, double finalPrice, int pointsUsed) {
+        Rental rental = new Rental.Builder()
+            .setRentalId(Helper.IdGenerator.uuid())
+            .setCustomer(customer)
+            .setGame(game)
+            .setPlatform(platform)
+            .setRentalDate(LocalDate.now())
+            .setReturnDate(LocalDate.now().plusDays(days))
+            .setReturned(false)
+            .build();
+        int pointsEarned = pointsEarned(finalPrice);
+        String reason = "Rental " + rental.getRentalId();
+
+        try {
+            flushPending(customer, pointsUsed);
+            inTransaction(customer, pointsEarned, reason, () -> {
+                reserve(game);
+                require(rentalRepo.save(rental) != null, "rental insert failed");
+                changePoints(customer, pointsUsed, pointsEarned, reason);
+                return rental;
+            });
+        } catch (SQLException | RuntimeException e) {
+            System.err.println("Error processing rental: " + e.getMessage());
+            rollbackState(customer, game, true);
+            return null;
+        }
+
+        evictBalance(customer);
+        customer.addLoyaltyPoints(pointsEarned - pointsUsed);
+        return rental;
+    }
+
+    /** Sells the game; returns the saved sale, or null if nothing was written. **/
+    public Sale buy(Customer customer, Game game, double finalPrice, int pointsUsed) {
+        Sale sale = new Sale(Helper.IdGenerator.uuid(), customer, game, LocalDate.now(), finalPrice);
+        int pointsEarned = pointsEarned(finalPrice);
+        String reason = "Sale " + sale.getId();
+
+        try {
+            flushPending(customer, pointsUsed);
+            inTransaction(customer, pointsEarned, reason, () -> {
+                reserve(game);
+                require(saleRepo.save(sale) != null, "sale insert failed");
+                changePoints(customer, pointsUsed, pointsEarned, reason);
+                return sale;
+            });
+        } catch (SQLException | RuntimeException e) {
+            System.err.println("Error processing sale: " + e.getMessage());
+            rollbackState(customer, game, true);
+            return null;
+        }
+
+        evictBalance(customer);
+        customer.addLoyaltyPoints(pointsEarned - pointsUsed);
+        return sale;
+    }
+
+    /** Returns the rental and grants the on-time bonus; returns false if nothing was written. **/
+    public boolean returnRental(Customer customer, Rental rental) {
+        boolean onTime = isOnTime(rental);
+        Game game = rental.getGame();
+        String reason = "On-time return " + rental.getRentalId();
+
+        try {
+            inTransaction(customer, onTime ? ON_TIME_RETURN_BONUS : 0, reason, () -> {
+                rental.setReturned(true);
+                require(rentalRepo.update(rental), "rental update failed");
+                require(gameRepo.release(game.getId()), "game availability update failed");
+                game.setAvailable(true);
+                if (onTime && accruals == null) {
+                    require(customerRepo.addPoints(customer.getId(), ON_TIME_RETURN_BONUS, reason),
+                            "loyalty update failed");
+                }
+                return rental;
+            });
+        } catch (SQLException | RuntimeException e) {
+            System.err.println("Error processing return: " + e.getMessage());
+            rental.setReturned(false);
+            rollbackState(customer, game, false);
+            return false;
+        }
+
+        evictBalance(customer);
+        if (onTime) {
+            customer.addLoyaltyPoints(ON_TIME_RETURN_BONUS);
+        }
+        return true;
+    }
+
+    /**
+     * Flips the game to unavailable with a compare-and-set on its version. If another till changed the row
+     * since it was loaded, the game is reloaded and the reservation retried while it is still available.
+     */
+    private void reserve(Game game) throws SQLException {
+        int version = game.getVersion();
+        for (int attempt = 1; attempt <= MAX_RESERVATION_ATTEMPTS; attempt++) {
+            Reservation result = gameRepo.tryReserve(game.getId(), version);
+            if (result == Reservation.RESERVED) {
+                game.setAvailable(false);
+                return;
+            }
+            if (result == Reservation.UNAVAILABLE) {
+                throw new SQLException("\"" + game.getTitle() + "\" is no longer available");
+            }
+            Game current = gameRepo.findById(game.getId());
+            if (current == null || !current.isAvailable()) {
+                throw new SQLException("\"" + game.getTitle() + "\" is no longer available");
+            }
+            version = current.getVersion();
+        }
+        throw new SQLException("\"" + game.getTitle() + "\" is being updated by another till, try again");
+    }
+
+    private static void require(boolean condition, String message) throws SQLException {
+        if (!condition) {
+            throw new SQLException(message);
+        }
+    }
+
+    /** The caches were written through before the rollback, so drop the entries touched by the transaction. **/
+    private void rollbackState(Customer customer, Game game, boolean wasAvailable) {
+        game.setAvailable(wasAvailable);
+        gameRepo.invalidate(game.getId());
+        customerRepo.invalidate(customer.getId());
+    }
+
+    /**
+     * The repository evicts the customer when the points change, but before the commit: a till reading the
+     * customer in between may have cached the old balance, so it is evicted again once committed.
+     */
+    private void evictBalance(Customer customer) {
+        customerRepo.invalidate(customer.getId());
+    }
+
+    /**
+     * Redeems the points used and credits the points earned as deltas on the stored balance, so the customer
+     * copy held by this till may be stale; the redemption fails if the stored balance is too low.
+     */
+    private void changePoints(Customer customer, int pointsUsed, int pointsEarned, String reason) throws SQLException {
+        if (pointsUsed > 0) {
+            require(customerRepo.redeemPoints(customer.getId(), pointsUsed, reason), "not enough loyalty points");
+        }
+        if (pointsEarned > 0 && accruals == null) {
+            require(customerRepo.addPoints(customer.getId(), pointsEarned, reason), "loyalty update failed");
+        }
+    }
+
+    /** Before a redemption, applies the customer's buffered points so the stored balance covers them. **/
+    private void flushPending(Customer customer, int pointsUsed) throws SQLException {
+        if (accruals != null && pointsUsed > 0) {
+            require(accruals.flushPending(customer.getId()), "loyalty points could not be flushed");
+        }
+    }
+
+    /** Runs the checkout transaction; with the buffer, the points earned are journaled just before it commits. **/
+    private <T> T inTransaction(Customer customer, int pointsEarned, String reason, TransactionWork<T> work)
+            throws SQLException {
+        if (accruals == null) {
+            return Repositories.inTransaction(work);
+        }
+        List<PointsAccrual> earned = pointsEarned > 0
+                ? List.of(new PointsAccrual(customer.getId(), pointsEarned, reason))
+                : List.of();
+        return accruals.inTransaction(earned, work);
+    }
+}
@@ -0,0 +1,214 @@
+package fr.efrei.service;
+
+import fr.efrei.domain.Customer;
+import fr.efrei.domain.Employee;
+import fr.efrei.domain.Game;
+import fr.efrei.domain.GamePlatform;
+import fr.efrei.domain.GameType;
+import fr.efrei.domain.Rental;
+import fr.efrei.domain.RentalSummary;
+import fr.efrei.domain.Sale;
+import fr.efrei.domain.SalesSummary;
+import fr.efrei.factory.CustomerFactory;
+import fr.efrei.repository.ICustomerRepository;
+import fr.efrei.repository.IEmployeeRepository;
+import fr.efrei.repository.IGameRepository;
+import fr.efrei.repository.IRentalRepository;
+import fr.efrei.repository.ISaleRepository;
+import fr.efrei.repository.Repositories;
+import fr.efrei.util.Helper;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The operations of a store counter without any presentation: lookups by id or phone number, input checks and
+ * pricing, then the checkout itself through CheckoutService. Used by the server and batch modes, which only
+ * differ in how they read requests and report results. Nothing here waits or prompts.
+ */
+public class CounterService {
+    private static CounterService instance;
+
+    /** Why an operation was refused; the message is meant for the employee. **/
+    public static class OperationException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public enum Reason { INVALID, NOT_FOUND, CONFLICT }
+
+        private final Reason reason;
+
+        public OperationException(Reason reason, String message) {
+            super(message);
+            this.reason = reason;
+        }
+
+        public Reason getReason() { return reason; }
+    }
+
+    /** A completed rental or sale, with what it cost and the customer's balance afterwards. **/
+    public record Checkout<T>(T item, Customer customer, double price, int pointsUsed, int pointsEarned) {}
+
+    public record Return(Rental rental, boolean onTime, int bonusPoints) {}
+
+    public record Revenue(SalesSummary sales, RentalSummary rentals, Map<GamePlatform, Double> byPlatform) {}
+
+    private final IEmployeeRepository employeeRepo;
+    private final ICustomerRepository customerRepo;
+    private final IGameRepository gameRepo;
+    private final IRentalRepository rentalRepo;
+    private final ISaleRepository saleRepo;
+    private final CheckoutService checkout;
+    private final LoyaltyAccrualBuffer accruals;
+
+    private CounterService() {
+        this.employeeRepo = Repositories.employees();
+        this.customerRepo = Repositories.customers();
+        this.gameRepo = Repositories.games();
+        this.rentalRepo = Repositories.rentals();
+        this.saleRepo = Repositories.sales();
+        this.checkout = CheckoutService.getInstance();
+        this.accruals = LoyaltyAccrualBuffer.isEnabled() ? LoyaltyAccrualBuffer.getInstance() : null;
+    }
+
+    public static synchronized CounterService getInstance() {
+        if (instance == null) {
+            instance = new CounterService();
+        }
+        return instance;
+    }
+
+    /** Returns the employee, or null if the credentials do not match. **/
+    public Employee login(String email, String password) {
+        return employeeRepo.authenticate(email, password);
+    }
+
+    /**
+     * The customers returned here include the points still waiting in the LoyaltyAccrualBuffer, so the balance
+     * checked before a redemption is the one the checkout will see once it has flushed them.
+     */
+    public Customer findCustomer(String id) {
+        return withPendingPoints(require(customerRepo.findById(id), "Customer not found"));
+    }
+
+    public Customer findCustomerByPhone(String phone) {
+        return withPendingPoints(require(customerRepo.findByContact(phone), "Customer not found"));
+    }
+
+    public Customer addCustomer(String name, String phone, String password) {
+        if (customerRepo.findByContact(phone) != null) {
+            throw conflict("A customer with this phone number already exists");
+        }
+        Customer customer = customerRepo.save(CustomerFactory.create(Helper.IdGenerator.uuid(), name, phone, password));
+        if (customer == null) {
+            throw conflict("Failed to create customer");
+        }
+        return customer;
+    }
+
+    public List<Game> availableGames(GamePlatform platform, GameType type, double maxPrice, int limit) {
+        return gameRepo.findAvailable(platform, type, maxPrice, limit);
+    }
+
+    /** Rents the game for 1, 7 or 30 days, using pointsUsed loyalty points (a multiple of 100) as a discount. **/
+    public Checkout<Rental> rent(Customer customer, String gameId, int days, int pointsUsed) {
+        if (days != 1 && days != 7 && days != 30) {
+            throw invalid("A rental lasts 1, 7 or 30 days");
+        }
+        Game game = availableGame(gameId, GameType.RENTAL);
+        checkPoints(customer, pointsUsed);
+        double price = CheckoutService.discountedPrice(CheckoutService.rentalPrice(game, days), pointsUsed);
+
+        Rental rental = checkout.rent(customer, game, game.getPlatform(), days, price, pointsUsed);
+        if (rental == null) {
+            throw conflict("Failed to create rental");
+        }
+        return new Checkout<>(rental, customer, price, pointsUsed, CheckoutService.pointsEarned(price));
+    }
+
+    public Checkout<Sale> buy(Customer customer, String gameId, int pointsUsed) {
+        Game game = availableGame(gameId, GameType.SALE);
+        checkPoints(customer, pointsUsed);
+        double price = CheckoutService.discountedPrice(game.getPrice(), pointsUsed);
+
+        Sale sale = checkout.buy(customer, game, price, pointsUsed);
+        if (sale == null) {
+            throw conflict("Failed to process sale");
+        }
+        return new Checkout<>(sale, customer, price, pointsUsed, CheckoutService.pointsEarned(price));
+    }
+
+    public Return returnRental(String rentalId) {
+        Rental rental = require(rentalRepo.findById(rentalId), "Rental not found");
+        return returnRental(rental.getCustomer(), rental);
+    }
+
+    /** Returns the customer's active rental of the game. **/
+    public Return returnGame(Customer customer, String gameId) {
+        for (Rental rental : rentalRepo.findActiveByCustomer(customer.getId())) {
+            if (rental.getGame().getId().equals(gameId)) {
+                return returnRental(customer, rental);
+            }
+        }
+        throw new OperationException(OperationException.Reason.NOT_FOUND, "No active rental of this game");
+    }
+
+    public Revenue revenue() {
+        return new Revenue(saleRepo.getSummary(), rentalRepo.getSummary(), saleRepo.getRevenueByPlatform());
+    }
+
+    private Return returnRental(Customer customer, Rental rental) {
+        if (rental.isReturned()) {
+            throw conflict("Rental already returned");
+        }
+        boolean onTime = CheckoutService.isOnTime(rental);
+        if (!checkout.returnRental(customer, rental)) {
+            throw conflict("Failed to process return");
+        }
+        return new Return(rental, onTime, onTime ? CheckoutService.ON_TIME_RETURN_BONUS : 0);
+    }
+
+    /** Adds the buffered points to the customer, a copy owned by the caller. **/
+    private Customer withPendingPoints(Customer customer) {
+        if (accruals != null) {
+            int points = accruals.pendingPoints(customer.getId());
+            if (points > 0) {
+                customer.addLoyaltyPoints(points);
+            }
+        }
+        return customer;
+    }
+
+    private Game availableGame(String id, GameType type) {
+        Game game = require(gameRepo.findById(id), "Game not found");
+        if (game.getType() != type) {
+            throw invalid("\"" + game.getTitle() + "\" is not for " + (type == GameType.RENTAL ? "rent" : "sale"));
+        }
+        if (!game.isAvailable()) {
+            throw conflict("\"" + game.getTitle() + "\" is not available");
+        }
+        return game;
+    }
+
+    private static void checkPoints(Customer customer, int pointsUsed) {
+        if (pointsUsed < 0 || pointsUsed % 100 != 0
+                || pointsUsed > CheckoutService.redeemablePoints(customer.getLoyaltyPoints())) {
+            throw invalid("Points must be a multiple of 100 within the customer's balance ("
+                    + customer.getLoyaltyPoints() + ")");
+        }
+    }
+
+    private static <T> T require(T value, String message) {
+        if (value == null) {
+            throw new OperationException(OperationException.Reason.NOT_FOUND, message);
+        }
+        return value;
+    }
+
+    private static OperationException invalid(String message) {
+        return new OperationException(OperationException.Reason.INVALID, message);
+    }
+
+    private static OperationException conflict(String message) {
+        return new OperationException(OperationException.Reason.CONFLICT, message);
+    }
+}
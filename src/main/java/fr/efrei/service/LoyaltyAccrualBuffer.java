@@ -0,0 +1,549 @@
+package fr.efrei.service;
+
+import fr.efrei.domain.PointsAccrual;
+import fr.efrei.repository.ICustomerRepository;
+import fr.efrei.repository.Repositories;
+import fr.efrei.util.Config;
+import fr.efrei.util.DatabaseConnection.TransactionWork;
+import fr.efrei.util.IdStrategy;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Write-behind buffer for the loyalty points earned at the tills; redemptions are never buffered.
+ * An accrual is appended to a local journal, then kept in memory with the other accruals of its customer until
+ * a background flush applies them all as one batch: a single UPDATE per customer, whatever the number of
+ * accruals, and one ledger row per accrual. Flushes run every LOYALTY_FLUSH_INTERVAL_MS, or sooner once
+ * LOYALTY_FLUSH_MAX_PENDING accruals are waiting. Each batch has its own journal file, named after the batch id
+ * and deleted once the batch is committed; files left by a crash are applied again at startup, which the batch
+ * id makes safe. Until its batch is flushed, an accrual is missing from the stored balance.
+ * Points earned at checkout are journaled inside the checkout transaction, just before it commits (see
+ * inTransaction), so a crash once a checkout has committed cannot lose them.
+ * The journal is fsynced as a group every LOYALTY_JOURNAL_SYNC_INTERVAL_MS and whenever a batch is cut, not once
+ * per accrual: a process crash loses nothing, but an OS crash or power loss can lose the accruals acknowledged
+ * during the last interval. A batch that still fails after LOYALTY_BATCH_MAX_ATTEMPTS flushes is set aside as
+ * BATCH_ID.failed so the batches after it go on; renaming it back to .journal replays it at the next startup.
+ */
+public class LoyaltyAccrualBuffer {
+    private static final String JOURNAL_SUFFIX = ".journal";
+    private static final String FAILED_SUFFIX = ".failed";
+    // Prefix of the journal line cancelling the accrual journaled by a checkout that rolled back
+    private static final String CANCELLED = "-\t";
+
+    private static LoyaltyAccrualBuffer instance;
+
+    /** A batch cut from the buffer, with the journal file holding exactly its accruals. **/
+    private static final class Batch {
+        private final String id;
+        private final Path journal;
+        private final List<PointsAccrual> accruals;
+        private int attempts;
+
+        Batch(String id, Path journal, List<PointsAccrual> accruals) {
+            this.id = id;
+            this.journal = journal;
+            this.accruals = accruals;
+        }
+    }
+
+    /** Accruals of the customers hashed to this stripe, by customer id. **/
+    private static final class Stripe {
+        private final Map<String, List<PointsAccrual>> byCustomer = new HashMap<>();
+    }
+
+    private final ICustomerRepository customerRepo;
+    private final Path directory;
+    private final boolean syncJournal;
+    private final int maxPending;
+    private final int maxAttempts;
+    private final Stripe[] stripes;
+
+    // Accruals hold the read lock while they are journaled and buffered; cutting a batch takes the write lock
+    private final ReentrantReadWriteLock cutLock = new ReentrantReadWriteLock();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final Object journalLock = new Object();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    // Set by each append, cleared by the group sync that makes it durable
+    private final AtomicBoolean unsynced = new AtomicBoolean();
+    // Batches cut but not committed yet, oldest first; each flush tries them all in that order
+    private final Deque<Batch> unapplied = new ConcurrentLinkedDeque<>();
+    private final ScheduledExecutorService flusher;
+    private final ScheduledExecutorService syncer;
+
+    private String batchId;
+    private Path segment;
+    private FileChannel journal;
+    private boolean closed;
+
+    private LoyaltyAccrualBuffer() throws IOException {
+        this.customerRepo = Repositories.customers();
+        this.directory = Paths.get(Config.get("LOYALTY_JOURNAL_DIR", "loyalty-journal"));
+        this.syncJournal = Config.getBoolean("LOYALTY_JOURNAL_SYNC", true);
+        this.maxPending = Math.max(1, Config.getInt("LOYALTY_FLUSH_MAX_PENDING", 1_000));
+        this.maxAttempts = Math.max(1, Config.getInt("LOYALTY_BATCH_MAX_ATTEMPTS", 30));
+        this.stripes = new Stripe[Math.max(1, Config.getInt("LOYALTY_BUFFER_STRIPES", 16))];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe();
+        }
+
+        Files.createDirectories(directory);
+        recover();
+        openSegment();
+
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "loyalty-accrual-flusher");
+            t.setDaemon(true);
+            return t;
+        });
+        long interval = Math.max(10L, Config.getLong("LOYALTY_FLUSH_INTERVAL_MS", 1_000));
+        flusher.scheduleWithFixedDelay(this::scheduledFlush, interval, interval, TimeUnit.MILLISECONDS);
+
+        if (syncJournal) {
+            this.syncer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "loyalty-journal-sync");
+                t.setDaemon(true);
+                return t;
+            });
+            long syncInterval = Math.max(1L, Config.getLong("LOYALTY_JOURNAL_SYNC_INTERVAL_MS", 100));
+            syncer.scheduleWithFixedDelay(this::sync, syncInterval, syncInterval, TimeUnit.MILLISECONDS);
+        } else {
+            this.syncer = null;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close, "loyalty-accrual-close"));
+
+        // Applies what a previous run left in the journal before any new accrual
+        flush();
+    }
+
+    /** Returns the buffer, or null if the journal directory cannot be used. **/
+    public static synchronized LoyaltyAccrualBuffer getInstance() {
+        if (instance == null) {
+            try {
+                instance = new LoyaltyAccrualBuffer();
+            } catch (IOException e) {
+                System.err.println("Error opening the loyalty journal: " + e.getMessage());
+            }
+        }
+        return instance;
+    }
+
+    /** Whether earned points go through the buffer (LOYALTY_BUFFER_ENABLED) or are written in the checkout. **/
+    public static boolean isEnabled() {
+        return Config.getBoolean("LOYALTY_BUFFER_ENABLED", false);
+    }
+
+    /**
+     * Records points earned by the customer. Returns once the accrual is written to the journal, which the next
+     * group sync makes durable; if it cannot be journaled, or the buffer is closed, the points are written to the database directly instead.
+     * Returns false only if that direct write failed.
+     */
+    public boolean accrue(String customerId, int points, String reason) {
+        if (points <= 0) {
+            throw new IllegalArgumentException("Accrued points must be positive");
+        }
+        PointsAccrual accrual = new PointsAccrual(customerId, points, reason);
+
+        cutLock.readLock().lock();
+        try {
+            if (closed || !journal(accrual)) {
+                return customerRepo.addPoints(customerId, points, reason);
+            }
+            buffer(List.of(accrual));
+        } finally {
+            cutLock.readLock().unlock();
+        }
+        requestFlushIfFull();
+        return true;
+    }
+
+    /**
+     * Runs the checkout work in a transaction and journals the points it earns as the last step before the
+     * commit. They are buffered once the transaction has committed; if it rolls back, they are cancelled in the
+     * journal and replay skips them. No batch is cut while the transaction runs, so an accrual and its
+     * cancellation are always in the same journal file. Points that cannot be journaled, or earned once the
+     * buffer is closed, are written in the transaction itself.
+     * A crash during the commit itself may still credit the points at replay, since the journal cannot tell
+     * whether that commit went through. Must not be called inside a transaction, nor with a flush to wait for.
+     */
+    public <T> T inTransaction(List<PointsAccrual> earned, TransactionWork<T> work) throws SQLException {
+        for (PointsAccrual accrual : earned) {
+            if (accrual.getPoints() <= 0) {
+                throw new IllegalArgumentException("Accrued points must be positive");
+            }
+        }
+        List<PointsAccrual> journaled = new ArrayList<>();
+
+        T result;
+        cutLock.readLock().lock();
+        try {
+            result = Repositories.inTransaction(() -> {
+                T value = work.execute();
+                for (PointsAccrual accrual : earned) {
+                    if (!closed && journal(accrual)) {
+                        journaled.add(accrual);
+                    } else if (!customerRepo.addPoints(accrual.getCustomerId(), accrual.getPoints(), accrual.getReason())) {
+                        throw new SQLException("loyalty update failed");
+                    }
+                }
+                return value;
+            });
+            buffer(journaled);
+        } catch (SQLException | RuntimeException e) {
+            cancel(journaled);
+            throw e;
+        } finally {
+            cutLock.readLock().unlock();
+        }
+        requestFlushIfFull();
+        return result;
+    }
+
+    /**
+     * Points of the customer waiting in the buffer, not yet in the stored balance. Reads under the read lock, so
+     * an accrual being cut is seen either in its stripe or in its batch, never in neither.
+     */
+    public int pendingPoints(String customerId) {
+        int points = 0;
+        cutLock.readLock().lock();
+        try {
+            Stripe stripe = stripeFor(customerId);
+            synchronized (stripe) {
+                for (PointsAccrual accrual : stripe.byCustomer.getOrDefault(customerId, List.of())) {
+                    points += accrual.getPoints();
+                }
+            }
+            for (Batch batch : unapplied) {
+                for (PointsAccrual accrual : batch.accruals) {
+                    if (accrual.getCustomerId().equals(customerId)) {
+                        points += accrual.getPoints();
+                    }
+                }
+            }
+        } finally {
+            cutLock.readLock().unlock();
+        }
+        return points;
+    }
+
+    /**
+     * Flushes now if the customer has points waiting, so a redemption sees the whole balance.
+     * Returns false if they could not be applied.
+     */
+    public boolean flushPending(String customerId) {
+        return pendingPoints(customerId) == 0 || flush();
+    }
+
+    /**
+     * Applies every accrual buffered so far. Returns false if a batch could not be applied; it stays in the
+     * journal and is retried at the next flush, after which the newer batches are still applied. Must not be
+     * called inside a transaction, which the batch would join.
+     */
+    public boolean flush() {
+        flushLock.lock();
+        try {
+            flushRequested.set(false);
+            try {
+                cut();
+            } catch (IOException e) {
+                System.err.println("Error rotating the loyalty journal: " + e.getMessage());
+            }
+
+            boolean applied = true;
+            for (Iterator<Batch> it = unapplied.iterator(); it.hasNext(); ) {
+                Batch batch = it.next();
+                if (customerRepo.addPointsBatch(batch.id, batch.accruals)) {
+                    it.remove();
+                    try {
+                        Files.deleteIfExists(batch.journal);
+                    } catch (IOException e) {
+                        // Harmless: the batch id is recorded, so replaying the file changes nothing
+                        System.err.println("Error deleting loyalty journal " + batch.journal + ": " + e.getMessage());
+                    }
+                } else {
+                    applied = false;
+                    if (++batch.attempts >= maxAttempts && setAside(batch)) {
+                        it.remove();
+                    }
+                }
+            }
+            return applied;
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /** Flushes what is buffered and stops buffering: later accruals are written directly. **/
+    public void close() {
+        cutLock.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        } finally {
+            cutLock.writeLock().unlock();
+        }
+        flusher.shutdown();
+        if (syncer != null) {
+            syncer.shutdown();
+        }
+        flush();
+    }
+
+    /** Makes every accrual appended since the last sync durable, with one fsync for all of them. **/
+    private void sync() {
+        cutLock.readLock().lock();
+        try {
+            if (journal != null && unsynced.getAndSet(false)) {
+                journal.force(false);
+            }
+        } catch (IOException e) {
+            unsynced.set(true);
+            System.err.println("Error syncing the loyalty journal: " + e.getMessage());
+        } finally {
+            cutLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Renames the journal of a batch that keeps failing to BATCH_ID.failed, out of the retries and the replay
+     * at startup. Returns false if it could not be renamed, in which case the batch is kept and retried.
+     */
+    private boolean setAside(Batch batch) {
+        Path failed = batch.journal.resolveSibling(batch.id + FAILED_SUFFIX);
+        try {
+            Files.move(batch.journal, failed, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            System.err.println("Error setting aside loyalty journal " + batch.journal + ": " + e.getMessage());
+            return false;
+        }
+        System.err.println("✗ Loyalty batch " + batch.id + " (" + batch.accruals.size() + " accruals) failed "
+                + batch.attempts + " times, set aside as " + failed);
+        return true;
+    }
+
+    private void scheduledFlush() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            System.err.println("Error flushing loyalty points: " + e.getMessage());
+        }
+    }
+
+    private Stripe stripeFor(String customerId) {
+        return stripes[Math.floorMod(customerId.hashCode(), stripes.length)];
+    }
+
+    /**
+     * Takes everything out of the stripes as one batch, queued for the flush, and starts a new journal file for
+     * the next one. The journal is synced and rotated before the stripes are cleared, so if that fails the
+     * accruals stay buffered in the current file; the stripes are cleared and the batch queued in the same
+     * critical section, so pendingPoints never misses it.
+     */
+    private void cut() throws IOException {
+        cutLock.writeLock().lock();
+        try {
+            if (journal == null) {
+                return;
+            }
+            // Accruals are only added to the stripes under the read lock, so this copy stays complete
+            List<PointsAccrual> accruals = new ArrayList<>();
+            for (Stripe stripe : stripes) {
+                synchronized (stripe) {
+                    stripe.byCustomer.values().forEach(accruals::addAll);
+                }
+            }
+            if (accruals.isEmpty() && !closed) {
+                return;
+            }
+
+            Batch batch = new Batch(batchId, segment, accruals);
+            if (syncJournal && !accruals.isEmpty()) {
+                journal.force(false);
+                unsynced.set(false);
+            }
+            if (closed) {
+                journal.close();
+                journal = null;
+            } else {
+                openSegment();
+            }
+            if (accruals.isEmpty()) {
+                Files.deleteIfExists(batch.journal);
+                return;
+            }
+
+            for (Stripe stripe : stripes) {
+                synchronized (stripe) {
+                    stripe.byCustomer.clear();
+                }
+            }
+            unapplied.addLast(batch);
+            pending.addAndGet(-accruals.size());
+        } finally {
+            cutLock.writeLock().unlock();
+        }
+    }
+
+    /** Starts a new journal file; its time-ordered name is the id of the batch it will hold. **/
+    private void openSegment() throws IOException {
+        String id = IdStrategy.timeOrderedUuid().toString();
+        Path path = directory.resolve(id + JOURNAL_SUFFIX);
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.APPEND);
+        FileChannel previous = journal;
+        journal = channel;
+        batchId = id;
+        segment = path;
+        if (previous != null) {
+            try {
+                previous.close();
+            } catch (IOException e) {
+                // Its lines were synced by the cut, and the file now belongs to the batch being cut
+                System.err.println("Error closing the loyalty journal: " + e.getMessage());
+            }
+        }
+    }
+
+    /** Appends the accrual to the journal; returns false, after logging why, if it could not be written. **/
+    private boolean journal(PointsAccrual accrual) {
+        try {
+            append(line(accrual));
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error writing the loyalty journal, points written directly: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /** Makes journaled accruals visible to the flush and to pendingPoints. Called under the read lock. **/
+    private void buffer(List<PointsAccrual> accruals) {
+        for (PointsAccrual accrual : accruals) {
+            Stripe stripe = stripeFor(accrual.getCustomerId());
+            synchronized (stripe) {
+                stripe.byCustomer.computeIfAbsent(accrual.getCustomerId(), id -> new ArrayList<>()).add(accrual);
+            }
+        }
+        pending.addAndGet(accruals.size());
+    }
+
+    private void requestFlushIfFull() {
+        if (pending.get() >= maxPending && flushRequested.compareAndSet(false, true)) {
+            flusher.execute(this::scheduledFlush);
+        }
+    }
+
+    /**
+     * Journals the cancellation of accruals whose checkout rolled back, synced at once since rollbacks are rare.
+     * Called under the read lock, so they are still in the current journal file.
+     */
+    private void cancel(List<PointsAccrual> accruals) {
+        if (accruals.isEmpty()) {
+            return;
+        }
+        try {
+            for (PointsAccrual accrual : accruals) {
+                append(CANCELLED + line(accrual));
+            }
+            if (syncJournal) {
+                journal.force(false);
+            }
+        } catch (IOException e) {
+            System.err.println("✗ Error cancelling loyalty accruals " + accruals + " in the journal, a replay would credit them: "
+                    + e.getMessage());
+        }
+    }
+
+    /** One line per accrual: customer id, points and reason, separated by tabs. **/
+    private static String line(PointsAccrual accrual) {
+        return accrual.getCustomerId() + '\t' + accrual.getPoints() + '\t'
+                + accrual.getReason().replaceAll("[\\t\\r\\n]", " ") + '\n';
+    }
+
+    private void append(String line) throws IOException {
+        ByteBuffer bytes = ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8));
+        synchronized (journalLock) {
+            while (bytes.hasRemaining()) {
+                journal.write(bytes);
+            }
+        }
+        unsynced.set(true);
+    }
+
+    /** Queues the journal files left by a previous run, oldest first, to be applied by the first flush. **/
+    private void recover() throws IOException {
+        Map<String, Path> files = new TreeMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + JOURNAL_SUFFIX)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                files.put(name.substring(0, name.length() - JOURNAL_SUFFIX.length()), path);
+            }
+        }
+
+        for (Map.Entry<String, Path> file : files.entrySet()) {
+            List<PointsAccrual> accruals = read(file.getValue());
+            if (accruals.isEmpty()) {
+                Files.deleteIfExists(file.getValue());
+            } else {
+                System.out.println("Replaying loyalty journal " + file.getValue() + " (" + accruals.size() + " accruals)");
+                unapplied.addLast(new Batch(file.getKey(), file.getValue(), accruals));
+            }
+        }
+    }
+
+    /**
+     * A line cut short by a crash was never acknowledged, so it is dropped, as is an accrual cancelled further
+     * down the file.
+     */
+    private static List<PointsAccrual> read(Path path) throws IOException {
+        String content = Files.readString(path, StandardCharsets.UTF_8);
+        int end = content.lastIndexOf('\n') + 1;
+        List<String> lines = new ArrayList<>();
+        for (String line : content.substring(0, end).split("\n")) {
+            if (line.startsWith(CANCELLED)) {
+                lines.remove(line.substring(CANCELLED.length()));
+            } else {
+                lines.add(line);
+            }
+        }
+
+        List<PointsAccrual> accruals = new ArrayList<>();
+        for (String line : lines) {
+            String[] fields = line.split("\t", 3);
+            if (fields.length != 3) {
+                continue;
+            }
+            try {
+                accruals.add(new PointsAccrual(fields[0], Integer.parseInt(fields[1]), fields[2]));
+            } catch (NumberFormatException e) {
+                System.err.println("Skipping malformed line in loyalty journal " + path + ": " + line);
+            }
+        }
+        return accruals;
+    }
+}
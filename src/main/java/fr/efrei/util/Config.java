@@ -0,0 +1,49 @@
+package fr.efrei.util;
+
+import io.github.cdimascio.dotenv.Dotenv;
+
+/**
+ * Settings read from JVM system properties (-DKEY=value) first, then from the .env file and the environment,
+ * falling back to defaults when absent.
+ */
+public final class Config {
+    private static final Dotenv dotenv = Dotenv.configure()
+            .directory("./")
+            .ignoreIfMissing()
+            .load();
+
+    private Config() {}
+
+    public static String get(String key, String defaultValue) {
+        String value = System.getProperty(key);
+        return value != null ? value : dotenv.get(key, defaultValue);
+    }
+
+    public static int getInt(String key, int defaultValue) {
+        String value = get(key, null);
+        if (value == null || value.isBlank()) return defaultValue;
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid value for " + key + ": " + value + ", using " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    public static long getLong(String key, long defaultValue) {
+        String value = get(key, null);
+        if (value == null || value.isBlank()) return defaultValue;
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid value for " + key + ": " + value + ", using " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    public static boolean getBoolean(String key, boolean defaultValue) {
+        String value = get(key, null);
+        if (value == null || value.isBlank()) return defaultValue;
+        return Boolean.parseBoolean(value.trim());
+    }
+}
@@ -0,0 +1,628 @@
+package fr.efrei.util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded JDBC connection pool.
+ * Connections handed out are proxies: calling close() gives the physical connection back to the pool.
+ * Each physical connection also keeps its most recently used PreparedStatements, keyed by SQL, so repositories
+ * calling prepareStatement(sql) with the same query reuse the already prepared statement.
+ */
+public class ConnectionPool {
+    private static final int LEAK_SITE_FRAMES = 3;
+
+    private final String url;
+    private final String username;
+    private final String password;
+    private final int minSize;
+    private final int maxSize;
+    private final long borrowTimeoutMillis;
+    private final long idleTimeoutMillis;
+    private final long leakThresholdMillis;
+    private final int validationTimeoutSeconds;
+    private final int statementCacheSize;
+
+    private final LinkedBlockingDeque<PhysicalConnection> idle = new LinkedBlockingDeque<>();
+    private final Map<PhysicalConnection, Lease> leased = new ConcurrentHashMap<>();
+    private final Semaphore permits;
+    private final AtomicInteger totalConnections = new AtomicInteger();
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean shutdown;
+
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong createdCount = new AtomicLong();
+    private final AtomicLong evictedCount = new AtomicLong();
+    private final AtomicLong invalidCount = new AtomicLong();
+    private final AtomicLong timeoutCount = new AtomicLong();
+    private final AtomicLong leakCount = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong statementCacheHits = new AtomicLong();
+    private final AtomicLong statementCacheMisses = new AtomicLong();
+
+    private ConnectionPool(Builder builder) {
+        this.url = builder.url;
+        this.username = builder.username;
+        this.password = builder.password;
+        this.minSize = builder.minSize;
+        this.maxSize = builder.maxSize;
+        this.borrowTimeoutMillis = builder.borrowTimeoutMillis;
+        this.idleTimeoutMillis = builder.idleTimeoutMillis;
+        this.leakThresholdMillis = builder.leakThresholdMillis;
+        this.validationTimeoutSeconds = builder.validationTimeoutSeconds;
+        this.statementCacheSize = builder.statementCacheSize;
+        this.permits = new Semaphore(maxSize, true);
+
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "connection-pool-housekeeper");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1000L, Math.min(idleTimeoutMillis, leakThresholdMillis > 0 ? leakThresholdMillis : idleTimeoutMillis) / 2);
+        housekeeper.scheduleWithFixedDelay(this::housekeep, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /** Opens the minimum number of connections so the first requests do not pay the connect cost. **/
+    void warmUp() throws SQLException {
+        while (totalConnections.get() < minSize) {
+            idle.offerLast(createPhysical());
+        }
+    }
+
+    /** Borrows a connection, waiting at most the configured borrow timeout. Close it to give it back. **/
+    public Connection getConnection() throws SQLException {
+        if (shutdown) {
+            throw new SQLException("Connection pool is shut down");
+        }
+
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                timeoutCount.incrementAndGet();
+                throw new SQLException("Timeout: no connection available after " + borrowTimeoutMillis + " ms ("
+                        + getStats() + ")");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection", e);
+        }
+
+        try {
+            PhysicalConnection physical = takeValidIdle();
+            if (physical == null) {
+                physical = createPhysical();
+            }
+            long waitNanos = System.nanoTime() - start;
+            totalWaitNanos.addAndGet(waitNanos);
+            QueryMetrics.recordConnectionWait(waitNanos);
+            borrowCount.incrementAndGet();
+            return lease(physical);
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private PhysicalConnection takeValidIdle() {
+        PhysicalConnection physical;
+        while ((physical = idle.pollFirst()) != null) {
+            if (isValid(physical.connection)) {
+                return physical;
+            }
+            invalidCount.incrementAndGet();
+            destroy(physical);
+        }
+        return null;
+    }
+
+    private boolean isValid(Connection connection) {
+        try {
+            return !connection.isClosed() && connection.isValid(validationTimeoutSeconds);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private PhysicalConnection createPhysical() throws SQLException {
+        Connection connection = DriverManager.getConnection(url, username, password);
+        totalConnections.incrementAndGet();
+        createdCount.incrementAndGet();
+        return new PhysicalConnection(connection);
+    }
+
+    private Connection lease(PhysicalConnection physical) {
+        Lease lease = new Lease(physical, leakThresholdMillis > 0 ? new Throwable("Connection borrowed here") : null);
+        leased.put(physical, lease);
+        return (Connection) Proxy.newProxyInstance(
+                ConnectionPool.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                lease);
+    }
+
+    private void release(Lease lease) {
+        PhysicalConnection physical = lease.physical;
+        leased.remove(physical);
+        try {
+            if (shutdown || physical.connection.isClosed()) {
+                destroy(physical);
+                return;
+            }
+            physical.releaseStatements();
+            if (!physical.connection.getAutoCommit()) {
+                physical.connection.rollback();
+                physical.connection.setAutoCommit(true);
+            }
+            physical.lastUsed = System.currentTimeMillis();
+            idle.offerFirst(physical);
+        } catch (SQLException e) {
+            destroy(physical);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void destroy(PhysicalConnection physical) {
+        totalConnections.decrementAndGet();
+        try {
+            physical.connection.close();
+        } catch (SQLException ignored) {
+            // the connection is being discarded anyway
+        }
+    }
+
+    private void housekeep() {
+        long now = System.currentTimeMillis();
+
+        Iterator<PhysicalConnection> it = idle.descendingIterator();
+        while (it.hasNext() && totalConnections.get() > minSize) {
+            PhysicalConnection physical = it.next();
+            if (now - physical.lastUsed > idleTimeoutMillis && idle.remove(physical)) {
+                evictedCount.incrementAndGet();
+                destroy(physical);
+            }
+        }
+
+        if (leakThresholdMillis > 0) {
+            for (Lease lease : leased.values()) {
+                if (!lease.reported && now - lease.borrowedAt > leakThresholdMillis) {
+                    lease.reported = true;
+                    leakCount.incrementAndGet();
+                    System.err.println("✗ Possible connection leak: connection held for " + (now - lease.borrowedAt)
+                            + " ms, borrowed at " + borrowSite(lease.origin));
+                }
+            }
+        }
+
+        try {
+            warmUp();
+        } catch (SQLException e) {
+            System.err.println("✗ Unable to refill connection pool: " + e.getMessage());
+        }
+    }
+
+    /** The first calls outside the pool and the JDK in the borrowing stack, e.g. "CustomerRepository.findById:87 <- ...". **/
+    private static String borrowSite(Throwable origin) {
+        StringBuilder site = new StringBuilder();
+        int frames = 0;
+        for (StackTraceElement frame : origin.getStackTrace()) {
+            String className = frame.getClassName();
+            if (className.startsWith("fr.efrei.util.") || className.startsWith("java.")
+                    || className.startsWith("jdk.") || className.startsWith("com.sun.proxy.")) {
+                continue;
+            }
+            if (frames > 0) {
+                site.append(" <- ");
+            }
+            site.append(className.substring(className.lastIndexOf('.') + 1)).append('.')
+                    .append(frame.getMethodName()).append(':').append(frame.getLineNumber());
+            if (++frames == LEAK_SITE_FRAMES) {
+                break;
+            }
+        }
+        return frames == 0 ? "unknown" : site.toString();
+    }
+
+    public void shutdown() {
+        shutdown = true;
+        housekeeper.shutdownNow();
+        PhysicalConnection physical;
+        while ((physical = idle.pollFirst()) != null) {
+            destroy(physical);
+        }
+    }
+
+    public PoolStats getStats() {
+        long borrows = borrowCount.get();
+        return new PoolStats(
+                totalConnections.get(),
+                idle.size(),
+                leased.size(),
+                permits.getQueueLength(),
+                borrows,
+                createdCount.get(),
+                evictedCount.get(),
+                invalidCount.get(),
+                timeoutCount.get(),
+                leakCount.get(),
+                borrows == 0 ? 0.0 : totalWaitNanos.get() / 1_000_000.0 / borrows,
+                statementCacheHits.get(),
+                statementCacheMisses.get());
+    }
+
+    private final class PhysicalConnection {
+        private final Connection connection;
+        private volatile long lastUsed = System.currentTimeMillis();
+        private final LinkedHashMap<String, CachedStatement> statements = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+                if (size() <= statementCacheSize) {
+                    return false;
+                }
+                CachedStatement cached = eldest.getValue();
+                if (cached.inUse) {
+                    // still held, e.g. by an open ResultSetStream: closed at its checkin instead
+                    cached.evicted = true;
+                    evictedInUse.add(cached);
+                } else {
+                    cached.discard();
+                }
+                return true;
+            }
+        };
+        private final List<CachedStatement> evictedInUse = new ArrayList<>();
+
+        private PhysicalConnection(Connection connection) {
+            this.connection = connection;
+        }
+
+        /** Only called by the thread holding the lease. **/
+        private PreparedStatement prepareCached(String sql, Connection owner) throws SQLException {
+            CachedStatement cached = statements.get(sql);
+            if (cached != null && !cached.inUse) {
+                statementCacheHits.incrementAndGet();
+                return cached.checkout(owner);
+            }
+            statementCacheMisses.incrementAndGet();
+            PreparedStatement stmt = connection.prepareStatement(sql);
+            if (cached != null) {
+                // same SQL already open in this lease (nested use): hand out a plain, uncached statement
+                return stmt;
+            }
+            try {
+                cached = new CachedStatement(this, sql, stmt);
+            } catch (SQLException e) {
+                stmt.close();
+                throw e;
+            }
+            statements.put(sql, cached);
+            return cached.checkout(owner);
+        }
+
+        private void releaseStatements() {
+            for (CachedStatement cached : statements.values().toArray(new CachedStatement[0])) {
+                cached.checkin();
+            }
+            for (CachedStatement cached : evictedInUse.toArray(new CachedStatement[0])) {
+                cached.checkin();
+            }
+        }
+    }
+
+    /**
+     * A statement kept open across leases; close() only resets it and puts it back in the cache.
+     * Settings a caller changed (fetch size, max rows, query timeout...) are put back to the driver's defaults
+     * at checkin, so the next caller does not inherit them.
+     */
+    private static final class CachedStatement implements InvocationHandler {
+        private static final Set<String> SETTINGS = Set.of("setFetchSize", "setFetchDirection", "setMaxRows",
+                "setLargeMaxRows", "setMaxFieldSize", "setQueryTimeout", "setEscapeProcessing", "setPoolable");
+
+        private final PhysicalConnection physical;
+        private final String sql;
+        private final PreparedStatement delegate;
+        private final PreparedStatement proxy;
+        private final int defaultFetchSize;
+        private final int defaultFetchDirection;
+        private final int defaultMaxRows;
+        private final int defaultMaxFieldSize;
+        private final int defaultQueryTimeout;
+        private Connection owner;
+        private boolean inUse;
+        private boolean settingsChanged;
+        // Dropped from the cache while in use; closed instead of reset at checkin
+        private boolean evicted;
+        // Result sets handed out during this checkout; a caller that forgot one must not leak it to the next
+        private final List<ResultSet> results = new ArrayList<>();
+
+        private CachedStatement(PhysicalConnection physical, String sql, PreparedStatement delegate) throws SQLException {
+            this.physical = physical;
+            this.sql = sql;
+            this.delegate = delegate;
+            this.defaultFetchSize = delegate.getFetchSize();
+            this.defaultFetchDirection = delegate.getFetchDirection();
+            this.defaultMaxRows = delegate.getMaxRows();
+            this.defaultMaxFieldSize = delegate.getMaxFieldSize();
+            this.defaultQueryTimeout = delegate.getQueryTimeout();
+            this.proxy = (PreparedStatement) Proxy.newProxyInstance(
+                    ConnectionPool.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class},
+                    this);
+        }
+
+        private PreparedStatement checkout(Connection owner) {
+            this.owner = owner;
+            this.inUse = true;
+            return proxy;
+        }
+
+        private void checkin() {
+            if (!inUse) return;
+            inUse = false;
+            owner = null;
+            if (evicted) {
+                physical.evictedInUse.remove(this);
+                discard();
+                return;
+            }
+            try {
+                closeResults();
+                delegate.clearParameters();
+                delegate.clearBatch();
+                if (settingsChanged) {
+                    resetSettings();
+                }
+            } catch (SQLException e) {
+                physical.statements.remove(sql);
+                discard();
+            }
+        }
+
+        private void resetSettings() throws SQLException {
+            // max rows first: some drivers refuse a fetch size above the current max rows
+            delegate.setMaxRows(defaultMaxRows);
+            delegate.setFetchSize(defaultFetchSize);
+            delegate.setFetchDirection(defaultFetchDirection);
+            delegate.setMaxFieldSize(defaultMaxFieldSize);
+            delegate.setQueryTimeout(defaultQueryTimeout);
+            delegate.setEscapeProcessing(true);
+            delegate.setPoolable(true);
+            settingsChanged = false;
+        }
+
+        private void closeResults() throws SQLException {
+            try {
+                for (ResultSet rs : results) {
+                    rs.close();
+                }
+            } finally {
+                results.clear();
+            }
+        }
+
+        private void discard() {
+            inUse = false;
+            results.clear();
+            try {
+                delegate.close();
+            } catch (SQLException ignored) {
+                // the statement is being dropped anyway
+            }
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    checkin();
+                    return null;
+                case "isClosed":
+                    return !inUse;
+                case "getConnection":
+                    return owner;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    break;
+            }
+            if (!inUse) {
+                throw new SQLException("Statement is closed");
+            }
+            if (SETTINGS.contains(method.getName())) {
+                settingsChanged = true;
+            }
+            try {
+                Object result = method.invoke(delegate, args);
+                if (result instanceof ResultSet rs) {
+                    results.add(rs);
+                }
+                return result;
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    /** One borrowing of a physical connection; the proxy stops working once it is closed. **/
+    private final class Lease implements InvocationHandler {
+        private final PhysicalConnection physical;
+        private final Throwable origin;
+        private final long borrowedAt = System.currentTimeMillis();
+        private volatile boolean reported;
+        private boolean closed;
+
+        private Lease(PhysicalConnection physical, Throwable origin) {
+            this.physical = physical;
+            this.origin = origin;
+        }
+
+        @Override
+        public synchronized Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        release(this);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || physical.connection.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + physical.connection + "]";
+                default:
+                    break;
+            }
+            if (closed) {
+                throw new SQLException("Connection has already been returned to the pool");
+            }
+            if (statementCacheSize > 0 && "prepareStatement".equals(method.getName()) && args.length == 1) {
+                return physical.prepareCached((String) args[0], (Connection) proxy);
+            }
+            try {
+                return method.invoke(physical.connection, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    public static final class PoolStats {
+        private final int total;
+        private final int idle;
+        private final int active;
+        private final int waiting;
+        private final long borrowCount;
+        private final long createdCount;
+        private final long evictedCount;
+        private final long invalidCount;
+        private final long timeoutCount;
+        private final long leakCount;
+        private final double averageWaitMillis;
+        private final long statementCacheHits;
+        private final long statementCacheMisses;
+
+        private PoolStats(int total, int idle, int active, int waiting, long borrowCount, long createdCount,
+                          long evictedCount, long invalidCount, long timeoutCount, long leakCount,
+                          double averageWaitMillis, long statementCacheHits, long statementCacheMisses) {
+            this.total = total;
+            this.idle = idle;
+            this.active = active;
+            this.waiting = waiting;
+            this.borrowCount = borrowCount;
+            this.createdCount = createdCount;
+            this.evictedCount = evictedCount;
+            this.invalidCount = invalidCount;
+            this.timeoutCount = timeoutCount;
+            this.leakCount = leakCount;
+            this.averageWaitMillis = averageWaitMillis;
+            this.statementCacheHits = statementCacheHits;
+            this.statementCacheMisses = statementCacheMisses;
+        }
+
+        public int getTotal() { return total; }
+        public int getIdle() { return idle; }
+        public int getActive() { return active; }
+        public int getWaiting() { return waiting; }
+        public long getBorrowCount() { return borrowCount; }
+        public long getCreatedCount() { return createdCount; }
+        public long getEvictedCount() { return evictedCount; }
+        public long getInvalidCount() { return invalidCount; }
+        public long getTimeoutCount() { return timeoutCount; }
+        public long getLeakCount() { return leakCount; }
+        public double getAverageWaitMillis() { return averageWaitMillis; }
+        public long getStatementCacheHits() { return statementCacheHits; }
+        public long getStatementCacheMisses() { return statementCacheMisses; }
+
+        public double getStatementCacheHitRate() {
+            long total = statementCacheHits + statementCacheMisses;
+            return total == 0 ? 0.0 : (double) statementCacheHits / total;
+        }
+
+        @Override
+        public String toString() {
+            return "PoolStats{" +
+                    "total=" + total +
+                    ", idle=" + idle +
+                    ", active=" + active +
+                    ", waiting=" + waiting +
+                    ", borrows=" + borrowCount +
+                    ", created=" + createdCount +
+                    ", evicted=" + evictedCount +
+                    ", invalid=" + invalidCount +
+                    ", timeouts=" + timeoutCount +
+                    ", leaks=" + leakCount +
+                    ", avgWaitMs=" + String.format("%.3f", averageWaitMillis) +
+                    ", stmtCacheHitRate=" + String.format("%.1f%%", getStatementCacheHitRate() * 100) +
+                    '}';
+        }
+    }
+
+    public static class Builder {
+        private String url;
+        private String username;
+        private String password;
+        private int minSize = 2;
+        private int maxSize = 10;
+        private long borrowTimeoutMillis = 5_000;
+        private long idleTimeoutMillis = 300_000;
+        private long leakThresholdMillis = 0;
+        private int validationTimeoutSeconds = 2;
+        private int statementCacheSize = 32;
+
+        public Builder setUrl(String url) { this.url = url; return this; }
+        public Builder setUsername(String username) { this.username = username; return this; }
+        public Builder setPassword(String password) { this.password = password; return this; }
+        public Builder setMinSize(int minSize) { this.minSize = minSize; return this; }
+        public Builder setMaxSize(int maxSize) { this.maxSize = maxSize; return this; }
+        public Builder setBorrowTimeoutMillis(long borrowTimeoutMillis) { this.borrowTimeoutMillis = borrowTimeoutMillis; return this; }
+        public Builder setIdleTimeoutMillis(long idleTimeoutMillis) { this.idleTimeoutMillis = idleTimeoutMillis; return this; }
+        /** Reports connections held longer than this; 0 (the default) turns off leak tracing and its per-borrow stack capture. **/
+        public Builder setLeakThresholdMillis(long leakThresholdMillis) { this.leakThresholdMillis = leakThresholdMillis; return this; }
+        public Builder setValidationTimeoutSeconds(int validationTimeoutSeconds) { this.validationTimeoutSeconds = validationTimeoutSeconds; return this; }
+        /** Number of PreparedStatements kept open per connection, 0 to disable the cache. **/
+        public Builder setStatementCacheSize(int statementCacheSize) { this.statementCacheSize = statementCacheSize; return this; }
+
+        public ConnectionPool build() throws SQLException {
+            if (url == null || url.isBlank()) {
+                throw new IllegalArgumentException("url cannot be blank");
+            }
+            if (minSize < 0 || maxSize < 1 || minSize > maxSize) {
+                throw new IllegalArgumentException("Invalid pool size: min=" + minSize + ", max=" + maxSize);
+            }
+            ConnectionPool pool = new ConnectionPool(this);
+            try {
+                pool.warmUp();
+            } catch (SQLException e) {
+                pool.shutdown();
+                throw e;
+            }
+            return pool;
+        }
+    }
+}
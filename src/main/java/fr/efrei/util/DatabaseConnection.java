@@ -1,37 +1,56 @@
 package fr.efrei.util;
 
-import io.github.cdimascio.dotenv.Dotenv;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 
 public class DatabaseConnection {
-    private static DatabaseConnection instance;
-    private Connection connection;
+    private static volatile DatabaseConnection instance;
+    private final ConnectionPool pool;
+    private final ThreadLocal<Connection> transaction = new ThreadLocal<>();
+
+    @FunctionalInterface
+    public interface TransactionWork<T> {
+        T execute() throws SQLException;
+    }
 
     private DatabaseConnection() {
         try {
-            Dotenv dotenv = Dotenv.configure()
-                    .directory("./")
-                    .load();
-
-            String host = dotenv.get("DB_HOST");
-            String port = dotenv.get("DB_PORT");
-            String dbName = dotenv.get("DB_NAME");
-            String username = dotenv.get("DB_USERNAME");
-            String password = dotenv.get("DB_PASSWORD");
+            String host = Config.get("DB_HOST", null);
+            String port = Config.get("DB_PORT", null);
+            String dbName = Config.get("DB_NAME", null);
+            String username = Config.get("DB_USERNAME", null);
+            String password = Config.get("DB_PASSWORD", null);
+            // DB_URL replaces host/port/name with a complete JDBC URL (e.g. an embedded H2 database for benchmarks)
+            String url = Config.get("DB_URL", null);
 
-            if (host == null || port == null || dbName == null || username == null || password == null) {
+            if ((url == null && (host == null || port == null || dbName == null)) || username == null || password == null) {
                 throw new IllegalStateException(
                     "Fichier .env incomplet ! Variables requises: DB_HOST, DB_PORT, DB_NAME, DB_USERNAME, DB_PASSWORD"
                 );
             }
 
-            String url = "jdbc:mysql://" + host + ":" + port + "/" + dbName
-                    + "?useSSL=false&serverTimezone=UTC&allowPublicKeyRetrieval=true";
+            if (url == null) {
+                url = "jdbc:mysql://" + host + ":" + port + "/" + dbName
+                        + "?useSSL=false&serverTimezone=UTC&allowPublicKeyRetrieval=true"
+                        + "&rewriteBatchedStatements=" + Config.getBoolean("DB_REWRITE_BATCHED_STATEMENTS", true)
+                        + "&useServerPrepStmts=" + Config.getBoolean("DB_SERVER_PREPARED_STATEMENTS", true)
+                        + "&cachePrepStmts=true&prepStmtCacheSize=250&prepStmtCacheSqlLimit=2048";
+                Class.forName("com.mysql.cj.jdbc.Driver");
+            }
 
-            Class.forName("com.mysql.cj.jdbc.Driver");
-            this.connection = DriverManager.getConnection(url, username, password);
+            this.pool = new ConnectionPool.Builder()
+                    .setUrl(url)
+                    .setUsername(username)
+                    .setPassword(password)
+                    .setMinSize(Config.getInt("DB_POOL_MIN_SIZE", 2))
+                    .setMaxSize(Config.getInt("DB_POOL_MAX_SIZE", 10))
+                    .setBorrowTimeoutMillis(Config.getLong("DB_POOL_BORROW_TIMEOUT_MS", 5000))
+                    .setIdleTimeoutMillis(Config.getLong("DB_POOL_IDLE_TIMEOUT_MS", 300000))
+                    .setLeakThresholdMillis(Config.getLong("DB_POOL_LEAK_THRESHOLD_MS", 0))
+                    .setStatementCacheSize(Config.getInt("DB_STATEMENT_CACHE_SIZE", 32))
+                    .build();
 
             System.out.println("✓ Connexion à la base de données réussie !");
         } catch (Exception e) {
@@ -47,31 +66,102 @@ public class DatabaseConnection {
     }
 
     public static DatabaseConnection getInstance() {
-        if (instance == null) {
-            instance = new DatabaseConnection();
-        } else {
+        DatabaseConnection result = instance;
+        if (result == null) {
+            synchronized (DatabaseConnection.class) {
+                result = instance;
+                if (result == null) {
+                    result = new DatabaseConnection();
+                    instance = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Borrows a connection from the pool. Callers must close it (try-with-resources) to give it back.
+     * Inside inTransaction() the transaction's connection is returned instead, and closing it does nothing.
+     */
+    public Connection getConnection() throws SQLException {
+        Connection current = transaction.get();
+        Connection connection = current != null ? nonClosing(current) : pool.getConnection();
+        return QueryInspector.isEnabled() ? QueryInspector.getInstance().wrap(connection) : connection;
+    }
+
+    /**
+     * Runs the work in a single transaction: every repository call made by this thread during the work
+     * uses the same connection, committed at the end or rolled back if the work throws.
+     * Nested calls join the transaction already in progress.
+     */
+    public <T> T inTransaction(TransactionWork<T> work) throws SQLException {
+        if (transaction.get() != null) {
+            return work.execute();
+        }
+
+        try (Connection conn = pool.getConnection()) {
+            conn.setAutoCommit(false);
+            transaction.set(conn);
+            Exception failure = null;
             try {
-                if (instance.connection.isClosed()) {
-                    instance = new DatabaseConnection();
+                T result = work.execute();
+                conn.commit();
+                return result;
+            } catch (SQLException | RuntimeException e) {
+                try {
+                    conn.rollback();
+                } catch (SQLException rollbackFailure) {
+                    e.addSuppressed(rollbackFailure);
+                }
+                failure = e;
+                throw e;
+            } finally {
+                transaction.remove();
+                try {
+                    conn.setAutoCommit(true);
+                } catch (SQLException resetFailure) {
+                    // keep the work's (or the rollback's) error; the pool discards the connection if it is broken
+                    if (failure != null) {
+                        failure.addSuppressed(resetFailure);
+                    } else {
+                        throw resetFailure;
+                    }
                 }
-            } catch (SQLException e) {
-                instance = new DatabaseConnection();
             }
         }
-        return instance;
     }
 
-    public Connection getConnection() {
-        return connection;
+    /** True while this thread is inside inTransaction(). **/
+    public boolean isInTransaction() {
+        return transaction.get() != null;
+    }
+
+    private static Connection nonClosing(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(
+                DatabaseConnection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    if ("close".equals(method.getName())) {
+                        return null;
+                    }
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+
+    public ConnectionPool.PoolStats getPoolStats() {
+        return pool.getStats();
     }
 
     public void closeConnection() {
-        try {
-            if (connection != null && !connection.isClosed()) {
-                connection.close();
+        synchronized (DatabaseConnection.class) {
+            pool.shutdown();
+            if (instance == this) {
+                instance = null;
             }
-        } catch (SQLException e) {
-            System.err.println("✗ Erreur lors de la fermeture de la connexion.");
         }
     }
 }
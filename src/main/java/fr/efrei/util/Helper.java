@@ -4,18 +4,20 @@ import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.util.Scanner;
-import java.util.UUID;
 
 public final class Helper {
 
 
     public final class IdGenerator {
         private IdGenerator() {}
-        public static String uuid() { return UUID.randomUUID().toString(); }
+        /** A new entity id from the configured IdStrategy (time-ordered UUIDv7 by default). **/
+        public static String uuid() { return IdStrategy.configured().newId(); }
     }
 
 
     private static final Scanner scanner = new Scanner(System.in);
+    // Console pacing only: CONSOLE_PAUSES=false skips it, e.g. when a script is piped into the console app
+    private static final boolean PAUSES = Config.getBoolean("CONSOLE_PAUSES", true);
 
     private Helper() {}
 
@@ -69,8 +71,11 @@ public final class Helper {
         System.out.println(message);
     }
 
-    /**Pause l'exécution pendant le nombre de millisecondes indiqué.**/
+    /**Pause l'exécution pendant le nombre de millisecondes indiqué, sauf si CONSOLE_PAUSES=false.**/
     public static void pauseMillis(long millis) {
+        if (!PAUSES) {
+            return;
+        }
         try {
             Thread.sleep(millis);
         } catch (InterruptedException e) {
@@ -0,0 +1,62 @@
+package fr.efrei.util;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * How new entity ids are generated, selected with ID_STRATEGY: "uuid7" (the default) or "uuid4".
+ * Both produce canonical UUID strings, so either works with VARCHAR(36) and BINARY(16) id columns.
+ */
+public enum IdStrategy {
+    /** Random UUIDs (version 4): inserts land anywhere in the primary key index. **/
+    RANDOM {
+        @Override
+        public String newId() {
+            return UUID.randomUUID().toString();
+        }
+    },
+
+    /**
+     * Time-ordered UUIDs (version 7, RFC 9562): a 48-bit millisecond timestamp, then a 12-bit counter that keeps
+     * ids generated by this JVM strictly increasing, then 62 random bits. New rows are appended to the end of the
+     * primary key index instead of splitting random pages. The random bits make ids unique, not unguessable.
+     */
+    TIME_ORDERED {
+        @Override
+        public String newId() {
+            return timeOrderedUuid().toString();
+        }
+    };
+
+    private static final IdStrategy CONFIGURED = fromName(Config.get("ID_STRATEGY", "uuid7"));
+
+    // Last (timestamp << 12 | counter) handed out; the counter overflowing moves the timestamp one millisecond ahead
+    private static final AtomicLong lastTimeAndCounter = new AtomicLong();
+
+    public abstract String newId();
+
+    public static IdStrategy configured() {
+        return CONFIGURED;
+    }
+
+    static IdStrategy fromName(String name) {
+        switch (name.trim().toLowerCase()) {
+            case "uuid4":
+                return RANDOM;
+            case "uuid7":
+                return TIME_ORDERED;
+            default:
+                System.err.println("Unknown ID_STRATEGY " + name + ", using uuid7");
+                return TIME_ORDERED;
+        }
+    }
+
+    public static UUID timeOrderedUuid() {
+        long now = System.currentTimeMillis() << 12;
+        long timeAndCounter = lastTimeAndCounter.updateAndGet(last -> Math.max(now, last + 1));
+        long mostSigBits = (timeAndCounter >>> 12) << 16 | 0x7000L | (timeAndCounter & 0xFFF);
+        long leastSigBits = ThreadLocalRandom.current().nextLong() & 0x3FFFFFFFFFFFFFFFL | 0x8000000000000000L;
+        return new UUID(mostSigBits, leastSigBits);
+    }
+}
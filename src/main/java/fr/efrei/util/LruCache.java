@@ -0,0 +1,167 @@
+package fr.efrei.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Thread-safe, size-bounded cache evicting the least recently used entry, with an optional time-to-live.
+ */
+public class LruCache<K, V> {
+    private final int maxSize;
+    private final long ttlMillis;
+    private final LinkedHashMap<K, Entry<V>> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+    // Bumped by every removal, so a value loaded before one is not cached after it
+    private long removals;
+
+    /** @param ttlMillis time-to-live of an entry, 0 or less to keep entries until evicted **/
+    public LruCache(int maxSize, long ttlMillis) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be positive");
+        }
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlMillis;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                if (size() > LruCache.this.maxSize) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public synchronized V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        if (entry.isExpired()) {
+            entries.remove(key);
+            expirations.incrementAndGet();
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry.value;
+    }
+
+    public synchronized void put(K key, V value) {
+        long expiresAt = ttlMillis > 0 ? System.currentTimeMillis() + ttlMillis : Long.MAX_VALUE;
+        entries.put(key, new Entry<>(value, expiresAt));
+    }
+
+    /** To pass to putIfNotRemovedSince, taken before loading the value to cache. **/
+    public synchronized long removalStamp() {
+        return removals;
+    }
+
+    /**
+     * Caches the value unless something was removed since the stamp was taken: the value may have been
+     * loaded before a change that removed the entry, and would then be cached stale.
+     */
+    public synchronized boolean putIfNotRemovedSince(K key, V value, long stamp) {
+        if (removals != stamp) {
+            return false;
+        }
+        put(key, value);
+        return true;
+    }
+
+    public synchronized V remove(K key) {
+        removals++;
+        Entry<V> entry = entries.remove(key);
+        return entry == null ? null : entry.value;
+    }
+
+    /** Removes every entry whose value matches the predicate. **/
+    public synchronized void removeIf(Predicate<V> predicate) {
+        removals++;
+        Iterator<Entry<V>> it = entries.values().iterator();
+        while (it.hasNext()) {
+            if (predicate.test(it.next().value)) {
+                it.remove();
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        removals++;
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public CacheStats getStats() {
+        return new CacheStats(size(), maxSize, hits.get(), misses.get(), evictions.get(), expirations.get());
+    }
+
+    private static final class Entry<V> {
+        private final V value;
+        private final long expiresAt;
+
+        private Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired() {
+            return System.currentTimeMillis() > expiresAt;
+        }
+    }
+
+    public static final class CacheStats {
+        private final int size;
+        private final int maxSize;
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final long expirations;
+
+        private CacheStats(int size, int maxSize, long hits, long misses, long evictions, long expirations) {
+            this.size = size;
+            this.maxSize = maxSize;
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.expirations = expirations;
+        }
+
+        public int getSize() { return size; }
+        public int getMaxSize() { return maxSize; }
+        public long getHits() { return hits; }
+        public long getMisses() { return misses; }
+        public long getEvictions() { return evictions; }
+        public long getExpirations() { return expirations; }
+
+        public double getHitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0.0 : (double) hits / total;
+        }
+
+        @Override
+        public String toString() {
+            return "CacheStats{" +
+                    "size=" + size +
+                    "/" + maxSize +
+                    ", hits=" + hits +
+                    ", misses=" + misses +
+                    ", hitRate=" + String.format("%.1f%%", getHitRate() * 100) +
+                    ", evictions=" + evictions +
+                    ", expirations=" + expirations +
+                    '}';
+        }
+    }
+}
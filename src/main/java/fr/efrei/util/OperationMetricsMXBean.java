@@ -0,0 +1,16 @@
+package fr.efrei.util;
+
+/** JMX view of the metrics of one repository operation, durations in milliseconds. **/
+public interface OperationMetricsMXBean {
+    long getCalls();
+    long getErrors();
+    long getRows();
+    double getMeanMillis();
+    double getP50Millis();
+    double getP95Millis();
+    double getP99Millis();
+    double getMaxMillis();
+    double getTotalMillis();
+    double getConnectionWaitMillis();
+    double getMaxConnectionWaitMillis();
+}
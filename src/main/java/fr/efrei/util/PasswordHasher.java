@@ -0,0 +1,181 @@
+package fr.efrei.util;
+
+import javax.crypto.Mac;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * Password hashing with PBKDF2 (HMAC-SHA512) and a random salt per password, stored with its cost as
+ * "pbkdf2-sha512$iterations$salt$hash". PASSWORD_HASH_ITERATIONS (default 210000) applies to new hashes; a
+ * password stored with fewer iterations, or still in plain text, is rehashed at its next successful login.
+ * PasswordHashBenchmark measures the cost of each setting against the login latency budget.
+ * A stored value is only taken for a hash if it has that whole format, with the salt and hash lengths written
+ * here; anything else is plain text. Hashes are always compared in constant time, and a plain text password
+ * is only checked after a derivation at the configured cost, so it takes as long as a hashed one. A successful verification is remembered for
+ * PASSWORD_CACHE_TTL_MS (15 minutes), so logging in again on the same till skips the derivation; the cache only
+ * holds a digest of the password keyed with a secret of this process. An empty password is stored as is and
+ * never matches.
+ */
+public final class PasswordHasher {
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA512";
+    private static final String PREFIX = "pbkdf2-sha512$";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+    private static final int HASH_BYTES = HASH_BITS / 8;
+    private static final int MIN_ITERATIONS = 1_000;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final int ITERATIONS = Math.max(MIN_ITERATIONS, Config.getInt("PASSWORD_HASH_ITERATIONS", 210_000));
+    private static final LruCache<String, byte[]> VERIFIED = new LruCache<>(
+            Config.getInt("PASSWORD_CACHE_MAX_SIZE", 1_000), Config.getLong("PASSWORD_CACHE_TTL_MS", 900_000));
+    private static final byte[] CACHE_KEY = new byte[32];
+
+    static {
+        RANDOM.nextBytes(CACHE_KEY);
+    }
+
+    /** The parts of a stored hash. **/
+    private record Encoded(int iterations, byte[] salt, byte[] hash) {}
+
+    /** Verified when the account does not exist or its password is in plain text, so both take as long as a hash. **/
+    private static final class Dummy {
+        static final String HASH = hash("unknown account", ITERATIONS);
+    }
+
+    private PasswordHasher() {}
+
+    public static String hash(String password) {
+        return hash(password, ITERATIONS);
+    }
+
+    /** Hashes with the given cost instead of PASSWORD_HASH_ITERATIONS, e.g. to compare settings. **/
+    public static String hash(String password, int iterations) {
+        if (password == null || password.isEmpty()) {
+            return "";
+        }
+        if (iterations < MIN_ITERATIONS) {
+            throw new IllegalArgumentException("At least " + MIN_ITERATIONS + " iterations are required");
+        }
+        byte[] salt = new byte[SALT_BYTES];
+        RANDOM.nextBytes(salt);
+        Base64.Encoder base64 = Base64.getEncoder().withoutPadding();
+        return PREFIX + iterations + "$" + base64.encodeToString(salt) + "$"
+                + base64.encodeToString(derive(password, salt, iterations));
+    }
+
+    /** True if the stored value is a well-formed hash: the prefix alone is not enough. **/
+    public static boolean isHashed(String stored) {
+        return decode(stored) != null;
+    }
+
+    /** The value to store for a password that may already be hashed, e.g. on an entity loaded from the database. **/
+    public static String hashIfPlain(String password) {
+        return isHashed(password) ? password : hash(password);
+    }
+
+    /** True if the stored value is in plain text or hashed with fewer iterations than configured. **/
+    public static boolean needsRehash(String stored) {
+        if (stored == null || stored.isEmpty()) {
+            return false;
+        }
+        Encoded encoded = decode(stored);
+        return encoded == null || encoded.iterations() < ITERATIONS;
+    }
+
+    /**
+     * Checks the password against the stored value, a hash or, for rows written before hashing, the plain text.
+     * Pass a null stored value for an unknown account: the work of a real verification is still done.
+     */
+    public static boolean verify(String password, String stored) {
+        if (stored == null) {
+            verify(password == null ? "" : password, Dummy.HASH);
+            return false;
+        }
+        if (password == null || password.isEmpty() || stored.isEmpty()) {
+            return false;
+        }
+        Encoded encoded = decode(stored);
+        if (encoded == null) {
+            verify(password, Dummy.HASH);
+            return MessageDigest.isEqual(sha256(password), sha256(stored));
+        }
+
+        byte[] digest = cacheDigest(password);
+        byte[] remembered = VERIFIED.get(stored);
+        if (remembered != null && MessageDigest.isEqual(remembered, digest)) {
+            return true;
+        }
+
+        boolean matches = MessageDigest.isEqual(derive(password, encoded.salt(), encoded.iterations()), encoded.hash());
+        if (matches) {
+            VERIFIED.put(stored, digest);
+        }
+        return matches;
+    }
+
+    public static LruCache.CacheStats getCacheStats() {
+        return VERIFIED.getStats();
+    }
+
+    /** Forgets every remembered login, e.g. so a benchmark measures the full derivation. **/
+    public static void clearCache() {
+        VERIFIED.clear();
+    }
+
+    /** The parts of a hash written by this class, or null if the value is anything else. **/
+    private static Encoded decode(String stored) {
+        if (stored == null || !stored.startsWith(PREFIX)) {
+            return null;
+        }
+        String[] parts = stored.substring(PREFIX.length()).split("\\$", -1);
+        if (parts.length != 3 || !parts[0].matches("[1-9][0-9]{3,9}")) {
+            return null;
+        }
+        try {
+            int iterations = Integer.parseInt(parts[0]);
+            byte[] salt = Base64.getDecoder().decode(parts[1]);
+            byte[] hash = Base64.getDecoder().decode(parts[2]);
+            if (iterations < MIN_ITERATIONS || salt.length != SALT_BYTES || hash.length != HASH_BYTES) {
+                return null;
+            }
+            return new Encoded(iterations, salt, hash);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static byte[] derive(String password, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(ALGORITHM + " is not available", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    private static byte[] cacheDigest(String password) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(CACHE_KEY, "HmacSHA256"));
+            return mac.doFinal(password.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 is not available", e);
+        }
+    }
+
+    private static byte[] sha256(String value) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package fr.efrei.util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Slow-query log and N+1 detector. Every statement run on a connection from DatabaseConnection is recorded
+ * against the logical operation in progress on the thread: a repository call made through Repositories, or
+ * any scope opened with {@link #open(String)}. When the operation ends it is reported if it ran more than
+ * QUERY_LOG_MAX_STATEMENTS statements, repeated one statement shape more than QUERY_LOG_MAX_REPEATS times or
+ * took longer than QUERY_LOG_SLOW_OPERATION_MS. Statements slower than QUERY_LOG_SLOW_STATEMENT_MS are
+ * reported on their own.
+ * Like QueryMetrics, findings are published over JMX (fr.efrei:type=QueryInspector) and formatted by report(),
+ * which METRICS_REPORT_ON_EXIT=true prints when the application exits; the last 100 are kept.
+ * Off unless QUERY_LOG_ENABLED=true; when off, connections and repositories are not wrapped at all.
+ */
+public class QueryInspector implements QueryInspectorMXBean {
+    private static final boolean ENABLED = Config.getBoolean("QUERY_LOG_ENABLED", false);
+    private static final int RECENT_FINDINGS = 100;
+
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+    private static final Pattern IN_LIST = Pattern.compile("\\(\\s*\\?(?:\\s*,\\s*\\?)+\\s*\\)");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private static final QueryInspector instance = new QueryInspector();
+
+    private static final ThreadLocal<Trace> CURRENT = new ThreadLocal<>();
+
+    private final int maxStatements;
+    private final int maxRepeats;
+    private final long slowOperationNanos;
+    private final long slowStatementNanos;
+
+    private final Deque<String> recentFindings = new ArrayDeque<>();
+    private final AtomicLong flaggedOperations = new AtomicLong();
+    private final AtomicLong slowStatements = new AtomicLong();
+
+    private QueryInspector() {
+        this.maxStatements = Config.getInt("QUERY_LOG_MAX_STATEMENTS", 20);
+        this.maxRepeats = Config.getInt("QUERY_LOG_MAX_REPEATS", 5);
+        this.slowOperationNanos = Config.getLong("QUERY_LOG_SLOW_OPERATION_MS", 500) * 1_000_000;
+        this.slowStatementNanos = Config.getLong("QUERY_LOG_SLOW_STATEMENT_MS", 200) * 1_000_000;
+        if (ENABLED) {
+            QueryMetrics.register(this, "fr.efrei:type=QueryInspector");
+            if (Config.getBoolean("METRICS_REPORT_ON_EXIT", false)) {
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> System.out.println(report()), "query-log-report"));
+            }
+        }
+    }
+
+    public static QueryInspector getInstance() {
+        return instance;
+    }
+
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * Starts a logical operation on this thread; statements run until the scope is closed count towards it.
+     * Scopes opened inside another one join it, so the outermost scope is the one reported.
+     */
+    public static Scope open(String name) {
+        Trace trace = CURRENT.get();
+        if (trace == null) {
+            trace = new Trace(name);
+            CURRENT.set(trace);
+        }
+        trace.depth++;
+        return new Scope(trace);
+    }
+
+    /** Wraps target so each call through the interface is a logical operation named "TargetClass.method". **/
+    public <T> T scoped(Class<T> type, T target) {
+        String prefix = target.getClass().getSimpleName() + ".";
+        InvocationHandler handler = (proxy, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) {
+                return method.invoke(target, args);
+            }
+            Scope scope = open(prefix + method.getName());
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            } finally {
+                scope.close();
+            }
+        };
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+
+    /** Wraps a connection so the statements it creates are timed and recorded. **/
+    public Connection wrap(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(
+                QueryInspector.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    Object result;
+                    try {
+                        result = method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                    if (result instanceof Statement statement && Statement.class.isAssignableFrom(method.getReturnType())) {
+                        String sql = args != null && args.length > 0 && args[0] instanceof String text ? text : null;
+                        return wrap(statement, method.getReturnType(), sql == null ? null : shapeOf(sql));
+                    }
+                    return result;
+                });
+    }
+
+    private Object wrap(Statement statement, Class<?> type, String preparedShape) {
+        return Proxy.newProxyInstance(
+                QueryInspector.class.getClassLoader(),
+                new Class<?>[]{type},
+                (proxy, method, args) -> {
+                    if (!method.getName().startsWith("execute")) {
+                        try {
+                            return method.invoke(statement, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    }
+
+                    String shape = args != null && args.length > 0 && args[0] instanceof String text ? shapeOf(text) : preparedShape;
+                    long start = System.nanoTime();
+                    try {
+                        return method.invoke(statement, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    } finally {
+                        record(shape == null ? "<batch>" : shape, System.nanoTime() - start);
+                    }
+                });
+    }
+
+    private void record(String shape, long nanos) {
+        Trace trace = CURRENT.get();
+        if (nanos > slowStatementNanos) {
+            slowStatements.incrementAndGet();
+            addFinding(String.format(Locale.ROOT, "Slow statement (%.1f ms) in %s: %s",
+                    nanos / 1e6, trace == null ? "no operation" : trace.name, shape));
+        }
+        if (trace != null) {
+            trace.add(shape, nanos);
+        }
+    }
+
+    private void finish(Trace trace) {
+        long elapsed = System.nanoTime() - trace.start;
+        ShapeStats worst = trace.mostRepeated();
+        boolean tooMany = trace.statements > maxStatements;
+        boolean repeated = worst != null && worst.count > maxRepeats;
+        boolean slow = elapsed > slowOperationNanos;
+        if (!tooMany && !repeated && !slow) {
+            return;
+        }
+
+        flaggedOperations.incrementAndGet();
+        String problem = repeated ? "N+1 suspected in " : tooMany ? "Too many statements in " : "Slow operation ";
+        StringBuilder finding = new StringBuilder(String.format(Locale.ROOT, "%s%s: %d statements in %.1f ms (%.1f ms in SQL)",
+                problem, trace.name, trace.statements, elapsed / 1e6, trace.statementNanos / 1e6));
+        if (worst != null && worst.count > 1) {
+            finding.append(String.format(Locale.ROOT, "; most repeated, %d times (%.1f ms): %s",
+                    worst.count, worst.nanos / 1e6, worst.shape));
+        } else if (worst != null) {
+            ShapeStats slowest = trace.slowest();
+            finding.append(String.format(Locale.ROOT, "; slowest (%.1f ms): %s", slowest.nanos / 1e6, slowest.shape));
+        }
+        addFinding(finding.toString());
+    }
+
+    private void addFinding(String finding) {
+        synchronized (recentFindings) {
+            if (recentFindings.size() == RECENT_FINDINGS) {
+                recentFindings.removeFirst();
+            }
+            recentFindings.addLast(finding);
+        }
+    }
+
+    @Override
+    public List<String> getRecentFindings() {
+        synchronized (recentFindings) {
+            return new ArrayList<>(recentFindings);
+        }
+    }
+
+    @Override
+    public long getFlaggedOperations() {
+        return flaggedOperations.get();
+    }
+
+    @Override
+    public long getSlowStatements() {
+        return slowStatements.get();
+    }
+
+    /** The counters, then the recent findings, oldest first. **/
+    @Override
+    public String report() {
+        StringBuilder report = new StringBuilder(String.format(Locale.ROOT,
+                "Query log: %d flagged operations, %d slow statements%n", getFlaggedOperations(), getSlowStatements()));
+        for (String finding : getRecentFindings()) {
+            report.append("  ").append(finding).append(System.lineSeparator());
+        }
+        return report.toString();
+    }
+
+    @Override
+    public void reset() {
+        synchronized (recentFindings) {
+            recentFindings.clear();
+        }
+        flaggedOperations.set(0);
+        slowStatements.set(0);
+    }
+
+    /** SQL with literals replaced by ?, IN lists collapsed and whitespace normalised. **/
+    static String shapeOf(String sql) {
+        String shape = STRING_LITERAL.matcher(sql).replaceAll("?");
+        shape = NUMBER_LITERAL.matcher(shape).replaceAll("?");
+        shape = IN_LIST.matcher(shape).replaceAll("(?, ...)");
+        return WHITESPACE.matcher(shape).replaceAll(" ").trim();
+    }
+
+    public static final class Scope implements AutoCloseable {
+        private final Trace trace;
+
+        private Scope(Trace trace) {
+            this.trace = trace;
+        }
+
+        @Override
+        public void close() {
+            if (--trace.depth == 0) {
+                CURRENT.remove();
+                instance.finish(trace);
+            }
+        }
+    }
+
+    private static final class Trace {
+        private final String name;
+        private final long start = System.nanoTime();
+        private final Map<String, ShapeStats> shapes = new HashMap<>();
+        private int depth;
+        private int statements;
+        private long statementNanos;
+
+        private Trace(String name) {
+            this.name = name;
+        }
+
+        private void add(String shape, long nanos) {
+            statements++;
+            statementNanos += nanos;
+            ShapeStats stats = shapes.computeIfAbsent(shape, ShapeStats::new);
+            stats.count++;
+            stats.nanos += nanos;
+        }
+
+        private ShapeStats slowest() {
+            ShapeStats slowest = null;
+            for (ShapeStats stats : shapes.values()) {
+                if (slowest == null || stats.nanos > slowest.nanos) {
+                    slowest = stats;
+                }
+            }
+            return slowest;
+        }
+
+        private ShapeStats mostRepeated() {
+            ShapeStats worst = null;
+            for (ShapeStats stats : shapes.values()) {
+                if (worst == null || stats.count > worst.count) {
+                    worst = stats;
+                }
+            }
+            return worst;
+        }
+    }
+
+    private static final class ShapeStats {
+        private final String shape;
+        private int count;
+        private long nanos;
+
+        private ShapeStats(String shape) {
+            this.shape = shape;
+        }
+    }
+}
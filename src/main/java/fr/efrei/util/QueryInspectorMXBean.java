@@ -0,0 +1,16 @@
+package fr.efrei.util;
+
+import java.util.List;
+
+/** JMX view of {@link QueryInspector}. **/
+public interface QueryInspectorMXBean {
+    long getFlaggedOperations();
+
+    long getSlowStatements();
+
+    List<String> getRecentFindings();
+
+    String report();
+
+    void reset();
+}
@@ -0,0 +1,206 @@
+package fr.efrei.util;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToIntFunction;
+
+/**
+ * Per-operation metrics of repository calls: latency percentiles, calls, rows returned, errors and time spent
+ * waiting for a pooled connection. Each operation is published over JMX as
+ * fr.efrei:type=QueryMetrics,operation=&lt;Repository.method&gt;, and report() formats them all as a table.
+ */
+public class QueryMetrics implements QueryMetricsMXBean {
+    private static QueryMetrics instance;
+
+    // Call in progress on this thread, so repositories and the pool can attach errors and waits to it
+    private static final ThreadLocal<Sample> CURRENT = new ThreadLocal<>();
+
+    private final Map<String, Operation> operations = new ConcurrentHashMap<>();
+
+    private QueryMetrics() {
+        register(this, "fr.efrei:type=QueryMetrics");
+        if (Config.getBoolean("METRICS_REPORT_ON_EXIT", false)) {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> System.out.println(report()), "query-metrics-report"));
+        }
+    }
+
+    public static synchronized QueryMetrics getInstance() {
+        if (instance == null) {
+            instance = new QueryMetrics();
+        }
+        return instance;
+    }
+
+    /** Whether repositories should be instrumented (METRICS_ENABLED, on by default). **/
+    public static boolean isEnabled() {
+        return Config.getBoolean("METRICS_ENABLED", true);
+    }
+
+    /**
+     * Wraps target so every call through the interface is timed under "TargetClass.method".
+     * rowCounter turns a returned value into the number of rows it holds.
+     */
+    public <T> T instrument(Class<T> type, T target, ToIntFunction<Object> rowCounter) {
+        String prefix = target.getClass().getSimpleName() + ".";
+        Map<Method, Operation> byMethod = new ConcurrentHashMap<>();
+
+        InvocationHandler handler = (proxy, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) {
+                return method.invoke(target, args);
+            }
+
+            Operation operation = byMethod.computeIfAbsent(method, m -> operation(prefix + m.getName()));
+            Sample sample = new Sample();
+            Sample outer = CURRENT.get();
+            CURRENT.set(sample);
+            long start = System.nanoTime();
+            try {
+                Object result = method.invoke(target, args);
+                sample.rows = rowCounter.applyAsInt(result);
+                return result;
+            } catch (InvocationTargetException e) {
+                sample.failed = true;
+                throw e.getCause();
+            } finally {
+                operation.record(System.nanoTime() - start, sample);
+                if (outer == null) {
+                    CURRENT.remove();
+                } else {
+                    CURRENT.set(outer);
+                }
+            }
+        };
+
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+
+    /** Counts the call in progress on this thread as failed; repositories call it where they catch SQLException. **/
+    public static void recordError() {
+        Sample sample = CURRENT.get();
+        if (sample != null) {
+            sample.failed = true;
+        }
+    }
+
+    static void recordConnectionWait(long nanos) {
+        Sample sample = CURRENT.get();
+        if (sample != null) {
+            sample.waitNanos += nanos;
+        }
+    }
+
+    public Operation getOperation(String name) {
+        return operations.get(name);
+    }
+
+    private Operation operation(String name) {
+        return operations.computeIfAbsent(name, key -> {
+            Operation operation = new Operation(key);
+            register(operation, "fr.efrei:type=QueryMetrics,operation=" + key);
+            return operation;
+        });
+    }
+
+    static void register(Object bean, String name) {
+        try {
+            ObjectName objectName = new ObjectName(name);
+            if (!ManagementFactory.getPlatformMBeanServer().isRegistered(objectName)) {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(bean, objectName);
+            }
+        } catch (JMException e) {
+            System.err.println("Error registering metrics MBean " + name + ": " + e.getMessage());
+        }
+    }
+
+    /** All operations, the most expensive in total time first. **/
+    @Override
+    public String report() {
+        List<Operation> sorted = new ArrayList<>(operations.values());
+        sorted.sort(Comparator.comparingLong((Operation operation) -> operation.latency.getTotalNanos()).reversed());
+
+        StringBuilder report = new StringBuilder(String.format(Locale.ROOT,
+                "%-42s %8s %7s %9s %9s %9s %9s %9s %9s %10s %9s%n",
+                "Operation", "Calls", "Errors", "Rows", "Mean ms", "p50 ms", "p95 ms", "p99 ms", "Max ms", "Total ms", "Wait ms"));
+        for (Operation operation : sorted) {
+            report.append(String.format(Locale.ROOT,
+                    "%-42s %8d %7d %9d %9.3f %9.3f %9.3f %9.3f %9.3f %10.1f %9.1f%n",
+                    operation.name, operation.getCalls(), operation.getErrors(), operation.getRows(),
+                    operation.getMeanMillis(), operation.getP50Millis(), operation.getP95Millis(),
+                    operation.getP99Millis(), operation.getMaxMillis(), operation.getTotalMillis(),
+                    operation.getConnectionWaitMillis()));
+        }
+        return report.toString();
+    }
+
+    @Override
+    public void reset() {
+        operations.values().forEach(Operation::reset);
+    }
+
+    public static final class Operation implements OperationMetricsMXBean {
+        private final String name;
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder waitNanos = new LongAdder();
+        private final AtomicLong maxWaitNanos = new AtomicLong();
+
+        private Operation(String name) {
+            this.name = name;
+        }
+
+        private void record(long nanos, Sample sample) {
+            latency.record(nanos);
+            rows.add(sample.rows);
+            if (sample.failed) {
+                errors.increment();
+            }
+            if (sample.waitNanos > 0) {
+                waitNanos.add(sample.waitNanos);
+                maxWaitNanos.accumulateAndGet(sample.waitNanos, Math::max);
+            }
+        }
+
+        private void reset() {
+            latency.reset();
+            errors.reset();
+            rows.reset();
+            waitNanos.reset();
+            maxWaitNanos.set(0);
+        }
+
+        public String getName() { return name; }
+        public LatencyHistogram getLatency() { return latency; }
+
+        @Override public long getCalls() { return latency.getCount(); }
+        @Override public long getErrors() { return errors.sum(); }
+        @Override public long getRows() { return rows.sum(); }
+        @Override public double getMeanMillis() { return latency.getMeanNanos() / 1e6; }
+        @Override public double getP50Millis() { return latency.getValueAtPercentile(50) / 1e6; }
+        @Override public double getP95Millis() { return latency.getValueAtPercentile(95) / 1e6; }
+        @Override public double getP99Millis() { return latency.getValueAtPercentile(99) / 1e6; }
+        @Override public double getMaxMillis() { return latency.getMaxNanos() / 1e6; }
+        @Override public double getTotalMillis() { return latency.getTotalNanos() / 1e6; }
+        @Override public double getConnectionWaitMillis() { return waitNanos.sum() / 1e6; }
+        @Override public double getMaxConnectionWaitMillis() { return maxWaitNanos.get() / 1e6; }
+    }
+
+    private static final class Sample {
+        private int rows;
+        private boolean failed;
+        private long waitNanos;
+    }
+}
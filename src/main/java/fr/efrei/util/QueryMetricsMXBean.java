@@ -0,0 +1,8 @@
+package fr.efrei.util;
+
+/** JMX view of {@link QueryMetrics}. **/
+public interface QueryMetricsMXBean {
+    String report();
+
+    void reset();
+}
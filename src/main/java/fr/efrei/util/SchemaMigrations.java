@@ -0,0 +1,248 @@
+package fr.efrei.util;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Versioned schema changes applied on top of database_setup.sql, recorded in the schema_version table.
+ * migrate() runs the pending ones in version order at startup, holding a MySQL named lock (GET_LOCK) so tills
+ * starting together run them one at a time; the others wait, then find them recorded. Each migration is a single
+ * statement, and MySQL commits DDL immediately, so its version is recorded only once the statement succeeded.
+ * A crash in between leaves the change made but not recorded: every migration is therefore either idempotent
+ * or carries a check telling whether its change is already in the schema, in which case it is only recorded.
+ * The same check covers changes database_setup.sql already makes. Migrations are never edited once released;
+ * a change to the schema is a new version at the end of the list.
+ */
+public final class SchemaMigrations {
+    /** Tells whether the change is already in the schema, e.g. made by database_setup.sql or before a crash. **/
+    @FunctionalInterface
+    private interface Check {
+        boolean isPresent(Connection conn) throws SQLException;
+    }
+
+    private record Migration(int version, String description, String sql, Check present) {
+        Migration(int version, String description, String sql) {
+            this(version, description, sql, conn -> false);
+        }
+    }
+
+    // Id columns of new tables match the existing ones, VARCHAR(36) or BINARY(16) after the binary id migration
+    private static final String ID_TYPE =
+            "binary".equalsIgnoreCase(Config.get("ID_STORAGE", "varchar").trim()) ? "BINARY(16)" : "VARCHAR(36)";
+
+    private static final List<Migration> MIGRATIONS = List.of(
+        // findActiveByCustomer filters on both columns; is_returned alone matches most of the table
+        new Migration(1, "Index des locations en cours par client",
+                "CREATE INDEX idx_rental_customer_active ON rentals(customer_id, is_returned)",
+                conn -> hasIndex(conn, "rentals", "idx_rental_customer_active")),
+        new Migration(2, "Suppression de l'index peu sélectif sur is_returned",
+                "DROP INDEX idx_rental_active ON rentals",
+                conn -> !hasIndex(conn, "rentals", "idx_rental_active")),
+        // Prefix of idx_rental_customer_active (version 1), which also serves the foreign key
+        new Migration(3, "Suppression de l'index redondant sur rentals(customer_id)",
+                "DROP INDEX idx_rental_customer ON rentals",
+                conn -> !hasIndex(conn, "rentals", "idx_rental_customer")),
+        // findByPlatformAndType filters on platform and type; availability is then read from the index too
+        new Migration(4, "Index du catalogue par plateforme, type et disponibilité",
+                "CREATE INDEX idx_game_platform_type ON games(platform, type, is_available)",
+                conn -> hasIndex(conn, "games", "idx_game_platform_type")),
+        new Migration(5, "Suppression de l'index games(platform, is_available), remplacé par la version 4",
+                "DROP INDEX idx_game_platform ON games",
+                conn -> !hasIndex(conn, "games", "idx_game_platform")),
+        // Covers the revenue totals by month and overall, which only read these two columns
+        new Migration(6, "Index couvrant des ventes par date et prix",
+                "CREATE INDEX idx_sale_date_price ON sales(sale_date, price)",
+                conn -> hasIndex(conn, "sales", "idx_sale_date_price")),
+        // Already created by database_setup.sql on databases set up after it was added
+        new Migration(7, "Journal des points de fidélité",
+                "CREATE TABLE IF NOT EXISTS loyalty_ledger (" +
+                "id BIGINT AUTO_INCREMENT PRIMARY KEY, " +
+                "customer_id " + ID_TYPE + " NOT NULL, " +
+                "delta INT NOT NULL, " +
+                "reason VARCHAR(100) NOT NULL, " +
+                "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+                "INDEX idx_ledger_customer (customer_id, created_at), " +
+                "CONSTRAINT fk_ledger_customer FOREIGN KEY (customer_id) REFERENCES customers(id) ON DELETE CASCADE" +
+                ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci",
+                conn -> hasTable(conn, "loyalty_ledger")),
+        // Batch ids are journal segment names, not entity ids, so they stay VARCHAR in binary id mode
+        new Migration(8, "Lots de points de fidélité appliqués",
+                "CREATE TABLE IF NOT EXISTS loyalty_batches (" +
+                "id VARCHAR(36) PRIMARY KEY, " +
+                "applied_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
+                ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci",
+                conn -> hasTable(conn, "loyalty_batches")),
+        // Optimistic reservation of games; MySQL has no ADD COLUMN IF NOT EXISTS, so the column is looked up first
+        new Migration(9, "Version des jeux pour la réservation optimiste",
+                "ALTER TABLE games ADD COLUMN version INT NOT NULL DEFAULT 0",
+                conn -> hasColumn(conn, "games", "version")),
+        // Keyset pagination: each index matches the ORDER BY of a findPage, id last to break ties, so page N
+        // is read from the index like page 1 instead of sorting the table
+        new Migration(10, "Index de pagination des clients par nom",
+                "CREATE INDEX idx_customer_name ON customers(name, id)",
+                conn -> hasIndex(conn, "customers", "idx_customer_name")),
+        new Migration(11, "Index de pagination des locations par date",
+                "CREATE INDEX idx_rental_date ON rentals(rental_date, id)",
+                conn -> hasIndex(conn, "rentals", "idx_rental_date")),
+        new Migration(12, "Index de pagination des locations d'un client par date",
+                "CREATE INDEX idx_rental_customer_date ON rentals(customer_id, rental_date, id)",
+                conn -> hasIndex(conn, "rentals", "idx_rental_customer_date")),
+        new Migration(13, "Index de pagination des ventes par date",
+                "CREATE INDEX idx_sale_date ON sales(sale_date, id)",
+                conn -> hasIndex(conn, "sales", "idx_sale_date"))
+    );
+
+    private static final String CREATE_VERSION_TABLE = "CREATE TABLE IF NOT EXISTS schema_version (" +
+            "version INT PRIMARY KEY, " +
+            "description VARCHAR(255) NOT NULL, " +
+            "applied_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP)";
+    private static final int LOCK_TIMEOUT_SECONDS = 60;
+
+    private SchemaMigrations() {}
+
+    /**
+     * Applies the pending migrations in order and returns the number applied, or -1 if one failed.
+     * Nothing after a failed migration is attempted; it is retried at the next startup.
+     */
+    public static int migrate() {
+        try (Connection conn = DatabaseConnection.getInstance().getConnection()) {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute(CREATE_VERSION_TABLE);
+            }
+
+            String lock = lock(conn);
+            try {
+                return applyPending(conn);
+            } finally {
+                unlock(conn, lock);
+            }
+        } catch (SQLException e) {
+            System.err.println("✗ Erreur lors des migrations du schéma : " + e.getMessage());
+            return -1;
+        }
+    }
+
+    private static int applyPending(Connection conn) throws SQLException {
+        Set<Integer> applied = appliedVersions(conn);
+        int count = 0;
+        for (Migration migration : MIGRATIONS) {
+            if (applied.contains(migration.version())) {
+                continue;
+            }
+            try (Statement stmt = conn.createStatement()) {
+                if (migration.present().isPresent(conn)) {
+                    record(conn, migration);
+                    System.out.println("✓ Migration " + migration.version() + " déjà présente : "
+                            + migration.description());
+                    continue;
+                }
+                stmt.execute(migration.sql());
+                record(conn, migration);
+            } catch (SQLException e) {
+                System.err.println("✗ Échec de la migration " + migration.version() + " (" + migration.description()
+                        + ") : " + e.getMessage());
+                return -1;
+            }
+            System.out.println("✓ Migration " + migration.version() + " appliquée : " + migration.description());
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Takes the MySQL named lock of this database's migrations, waiting for another till that holds it.
+     * Returns its name, or null on databases without named locks (the embedded ones used by the tests and
+     * benchmarks, which a single process migrates).
+     */
+    private static String lock(Connection conn) throws SQLException {
+        if (!"MySQL".equalsIgnoreCase(conn.getMetaData().getDatabaseProductName())) {
+            return null;
+        }
+        String name = conn.getCatalog() + ".schema_migrations";
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT GET_LOCK(?, ?)")) {
+            stmt.setString(1, name);
+            stmt.setInt(2, LOCK_TIMEOUT_SECONDS);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next() || rs.getInt(1) != 1) {
+                    throw new SQLException("verrou des migrations non obtenu après " + LOCK_TIMEOUT_SECONDS + " s");
+                }
+            }
+        }
+        return name;
+    }
+
+    private static void unlock(Connection conn, String name) throws SQLException {
+        if (name == null) {
+            return;
+        }
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            stmt.setString(1, name);
+            stmt.executeQuery().close();
+        }
+    }
+
+    private static Set<Integer> appliedVersions(Connection conn) throws SQLException {
+        Set<Integer> versions = new HashSet<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT version FROM schema_version")) {
+            while (rs.next()) {
+                versions.add(rs.getInt(1));
+            }
+        }
+        return versions;
+    }
+
+    private static boolean hasColumn(Connection conn, String table, String column) throws SQLException {
+        // Identifiers are stored lower case by MySQL on Linux, upper case by some other databases
+        for (String name : new String[]{table, table.toUpperCase()}) {
+            try (ResultSet rs = conn.getMetaData().getColumns(conn.getCatalog(), null, name, null)) {
+                while (rs.next()) {
+                    if (column.equalsIgnoreCase(rs.getString("COLUMN_NAME"))) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasTable(Connection conn, String table) throws SQLException {
+        for (String name : new String[]{table, table.toUpperCase()}) {
+            try (ResultSet rs = conn.getMetaData().getTables(conn.getCatalog(), null, name, null)) {
+                if (rs.next()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasIndex(Connection conn, String table, String index) throws SQLException {
+        for (String name : new String[]{table, table.toUpperCase()}) {
+            try (ResultSet rs = conn.getMetaData().getIndexInfo(conn.getCatalog(), null, name, false, true)) {
+                while (rs.next()) {
+                    if (index.equalsIgnoreCase(rs.getString("INDEX_NAME"))) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /** Records the migration as applied, once its change is in the schema. **/
+    private static void record(Connection conn, Migration migration) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "INSERT INTO schema_version (version, description) VALUES (?, ?)")) {
+            stmt.setInt(1, migration.version());
+            stmt.setString(2, migration.description());
+            stmt.executeUpdate();
+        }
+    }
+}
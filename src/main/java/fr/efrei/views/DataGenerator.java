@@ -0,0 +1,546 @@
+package fr.efrei.views;
+
+import fr.efrei.domain.Customer;
+import fr.efrei.domain.Game;
+import fr.efrei.domain.GamePlatform;
+import fr.efrei.domain.GameType;
+import fr.efrei.domain.Rental;
+import fr.efrei.domain.Sale;
+import fr.efrei.repository.BatchResult;
+import fr.efrei.repository.CustomerRepository;
+import fr.efrei.repository.GameRepository;
+import fr.efrei.repository.IdColumns;
+import fr.efrei.repository.RentalRepository;
+import fr.efrei.repository.SaleRepository;
+import fr.efrei.service.CheckoutService;
+import fr.efrei.util.DatabaseConnection;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Generates synthetic customers, games, rentals and sales for load testing.
+ * Game popularity and customer activity follow Zipf distributions, and dates follow a seasonal curve
+ * (end-of-year and summer peaks, busier weekends). Rows go to the database through the repositories'
+ * batched saveAll, or with --csv to one CSV file per table plus a load_data.sql script for LOAD DATA.
+ * The same options and seed always produce the same dataset.
+ */
+public class DataGenerator {
+    private static final String USAGE = "Usage: DataGenerator [--customers N] [--games N] [--rentals N] [--sales N]"
+            + " [--game-skew S] [--customer-skew S] [--from yyyy-MM-dd] [--to yyyy-MM-dd] [--seed N] [--csv DIR]";
+
+    private static final String[] FIRST_NAMES = {"Thabo", "Emma", "Lucas", "Amara", "Sipho", "Chloe", "Hugo", "Naledi",
+            "Léa", "Kagiso", "Noah", "Zanele", "Louis", "Aisha", "Jules", "Lerato", "Inès", "Mandla", "Jade", "Pieter"};
+    private static final String[] LAST_NAMES = {"Nkosi", "Martin", "Dlamini", "Bernard", "van der Merwe", "Dubois",
+            "Mokoena", "Petit", "Botha", "Moreau", "Khumalo", "Laurent", "Naidoo", "Simon", "Pillay", "Michel"};
+    private static final String[] TITLE_WORDS = {"Shadow", "Legends", "Galaxy", "Racer", "Kingdom", "Storm", "Quest",
+            "Odyssey", "Strike", "Frontier", "Dragon", "Horizon", "Empire", "Rogue", "Titan", "Echo"};
+    private static final String[] GENRES = {"Action", "Adventure", "RPG", "Sports", "Racing", "Strategy", "Shooter",
+            "Simulation", "Puzzle", "Fighting", "Platformer", "Horror"};
+
+    /** Rental durations offered at the till, with the same discounts as GameRentalApp. **/
+    private static final int[] RENTAL_DAYS = {1, 7, 30};
+    private static final double[] RENTAL_DAYS_WEIGHTS = {0.5, 0.35, 0.15};
+    private static final double[] RENTAL_DISCOUNTS = {1.0, 0.85, 0.70};
+    private static final double ON_TIME_RATE = 0.9;
+    private static final double RENTAL_GAME_RATE = 0.6;
+
+    private static final int CHUNK_SIZE = 10_000;
+
+    // High bits of the generated ids, so each table gets its own deterministic UUID range
+    private static final long CUSTOMER_ID_BITS = 0x0c0570e2_00000000L;
+    private static final long GAME_ID_BITS = 0x06a3e000_00000000L;
+    private static final long RENTAL_ID_BITS = 0x0e27a100_00000000L;
+    private static final long SALE_ID_BITS = 0x05a1e000_00000000L;
+
+    private final int customerCount;
+    private final int gameCount;
+    private final int rentalCount;
+    private final int saleCount;
+    private final LocalDate from;
+    private final LocalDate to;
+    private final long seed;
+
+    private final List<Game> games = new ArrayList<>();
+    private int[] rentalGames;
+    private int[] saleGames;
+    private WeightedSampler rentalGamePopularity;
+    private WeightedSampler saleGamePopularity;
+    private final WeightedSampler customerActivity;
+    private final WeightedSampler seasonalDays;
+    private final WeightedSampler rentalDays = new WeightedSampler(RENTAL_DAYS_WEIGHTS);
+
+    private DataGenerator(Map<String, String> options) {
+        this.customerCount = intOption(options, "customers", 10_000);
+        this.gameCount = intOption(options, "games", 1_000);
+        this.rentalCount = intOption(options, "rentals", 100_000);
+        this.saleCount = intOption(options, "sales", 50_000);
+        this.to = dateOption(options, "to", LocalDate.now());
+        this.from = dateOption(options, "from", to.minusYears(2));
+        this.seed = Long.parseLong(options.getOrDefault("seed", "42"));
+
+        if (customerCount < 1 || gameCount < 2 || rentalCount < 0 || saleCount < 0 || !from.isBefore(to)) {
+            throw new IllegalArgumentException("Need at least 1 customer, 2 games, non-negative counts and --from before --to");
+        }
+
+        this.customerActivity = WeightedSampler.zipf(customerCount, doubleOption(options, "customer-skew", 0.6));
+        this.seasonalDays = seasonalDays(from, to);
+        createGames(doubleOption(options, "game-skew", 1.0));
+    }
+
+    public static void main(String[] args) {
+        Map<String, String> options;
+        DataGenerator generator;
+        try {
+            options = parseOptions(args);
+            generator = new DataGenerator(options);
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(1);
+            return;
+        }
+
+        long start = System.nanoTime();
+        String csvDir = options.get("csv");
+        try (Sink sink = csvDir != null ? new CsvSink(Path.of(csvDir)) : new RepositorySink()) {
+            generator.generate(sink);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error generating data: " + e.getMessage());
+            System.exit(1);
+        }
+        System.out.printf("Done in %.1f s%n", (System.nanoTime() - start) / 1e9);
+
+        if (csvDir == null) {
+            DatabaseConnection.getInstance().closeConnection();
+        }
+    }
+
+    private void generate(Sink sink) throws IOException {
+        // First pass over the history: loyalty points and games still out are needed before
+        // customers and games are written, and rentals reference both.
+        int[] points = new int[customerCount];
+        boolean[] rentedOut = new boolean[gameCount];
+        generateHistory(new History() {
+            public void rental(int customer, int game, Rental rental, double price, boolean onTime) {
+                points[customer] += CheckoutService.pointsEarned(price) + (onTime ? CheckoutService.ON_TIME_RETURN_BONUS : 0);
+                if (!rental.isReturned()) {
+                    rentedOut[game] = true;
+                }
+            }
+
+            public void sale(int customer, Sale sale) {
+                points[customer] += CheckoutService.pointsEarned(sale.getPrice());
+            }
+        });
+
+        System.out.println("Writing " + customerCount + " customers...");
+        for (int i = 0; i < customerCount; i++) {
+            sink.customer(createCustomer(i, points[i]));
+        }
+
+        System.out.println("Writing " + gameCount + " games...");
+        for (int i = 0; i < gameCount; i++) {
+            Game game = games.get(i);
+            game.setAvailable(!rentedOut[i]);
+            sink.game(game);
+        }
+        sink.flush();
+
+        System.out.println("Writing " + rentalCount + " rentals and " + saleCount + " sales...");
+        generateHistory(new History() {
+            public void rental(int customer, int game, Rental rental, double price, boolean onTime) {
+                sink.rental(rental);
+            }
+
+            public void sale(int customer, Sale sale) {
+                sink.sale(sale);
+            }
+        });
+        sink.flush();
+    }
+
+    private void generateHistory(History history) {
+        Random random = new Random(seed + 1);
+
+        for (int i = 0; i < rentalCount; i++) {
+            int customer = customerActivity.sample(random);
+            int gameIndex = rentalGames[rentalGamePopularity.sample(random)];
+            Game game = games.get(gameIndex);
+            int duration = rentalDays.sample(random);
+            LocalDate rentalDate = from.plusDays(seasonalDays.sample(random));
+            LocalDate dueDate = rentalDate.plusDays(RENTAL_DAYS[duration]);
+            boolean returned = !dueDate.isAfter(to);
+            boolean onTime = returned && random.nextDouble() < ON_TIME_RATE;
+            double price = game.getPrice() * RENTAL_DAYS[duration] * RENTAL_DISCOUNTS[duration];
+
+            history.rental(customer, gameIndex, new Rental.Builder()
+                    .setRentalId(new UUID(RENTAL_ID_BITS, i).toString())
+                    .setCustomer(customerRef(customer))
+                    .setGame(game)
+                    .setPlatform(game.getPlatform())
+                    .setRentalDate(rentalDate)
+                    .setReturnDate(dueDate)
+                    .setReturned(returned)
+                    .build(), price, onTime);
+        }
+
+        for (int i = 0; i < saleCount; i++) {
+            int customer = customerActivity.sample(random);
+            Game game = games.get(saleGames[saleGamePopularity.sample(random)]);
+            LocalDate saleDate = from.plusDays(seasonalDays.sample(random));
+            history.sale(customer, new Sale(new UUID(SALE_ID_BITS, i).toString(), customerRef(customer), game, saleDate, game.getPrice()));
+        }
+    }
+
+    /** Builds the catalog, then shuffles each type so popular titles are spread across platforms. **/
+    private void createGames(double skew) {
+        Random random = new Random(seed);
+        GamePlatform[] platforms = Arrays.stream(GamePlatform.values())
+                .filter(platform -> platform != GamePlatform.PC_ANY) // matches any PC, not a stored platform
+                .toArray(GamePlatform[]::new);
+
+        List<Integer> rental = new ArrayList<>();
+        List<Integer> sale = new ArrayList<>();
+        for (int i = 0; i < gameCount; i++) {
+            // Keep at least one game of each type
+            boolean isRental = i == 0 || (i != 1 && random.nextDouble() < RENTAL_GAME_RATE);
+            double price = isRental
+                    ? 1.99 + random.nextInt(6)
+                    : 9.99 + 5 * random.nextInt(13);
+            String title = TITLE_WORDS[random.nextInt(TITLE_WORDS.length)] + " "
+                    + TITLE_WORDS[random.nextInt(TITLE_WORDS.length)] + " " + (i / TITLE_WORDS.length + 1);
+
+            games.add(new Game.Builder()
+                    .setId(new UUID(GAME_ID_BITS, i).toString())
+                    .setTitle(title)
+                    .setGenre(GENRES[random.nextInt(GENRES.length)])
+                    .setPlatform(platforms[random.nextInt(platforms.length)])
+                    .setAvailable(true)
+                    .setType(isRental ? GameType.RENTAL : GameType.SALE)
+                    .setPrice(price)
+                    .build());
+            (isRental ? rental : sale).add(i);
+        }
+
+        rentalGames = shuffle(rental, random);
+        saleGames = shuffle(sale, random);
+        rentalGamePopularity = WeightedSampler.zipf(rentalGames.length, skew);
+        saleGamePopularity = WeightedSampler.zipf(saleGames.length, skew);
+    }
+
+    private Customer createCustomer(int index, int loyaltyPoints) {
+        Random random = new Random(seed ^ index);
+        return new Customer.Builder()
+                .setId(new UUID(CUSTOMER_ID_BITS, index).toString())
+                .setName(FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " " + LAST_NAMES[random.nextInt(LAST_NAMES.length)])
+                .setContactNumber(String.format("0%09d", index))
+                .setPassword("")
+                .setLoyaltyPoints(loyaltyPoints)
+                .build();
+    }
+
+    /** Rentals and sales only need the customer id. **/
+    private static Customer customerRef(int index) {
+        return new Customer.Builder().setId(new UUID(CUSTOMER_ID_BITS, index).toString()).build();
+    }
+
+    private static int[] shuffle(List<Integer> values, Random random) {
+        int[] array = values.stream().mapToInt(Integer::intValue).toArray();
+        for (int i = array.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = array[i];
+            array[i] = array[j];
+            array[j] = swap;
+        }
+        return array;
+    }
+
+    /** One weight per day: December and November peaks, a summer bump, and busier weekends. **/
+    private static WeightedSampler seasonalDays(LocalDate from, LocalDate to) {
+        double[] weights = new double[(int) ChronoUnit.DAYS.between(from, to)];
+        for (int day = 0; day < weights.length; day++) {
+            LocalDate date = from.plusDays(day);
+            double weight = switch (date.getMonth()) {
+                case DECEMBER -> 1.8;
+                case NOVEMBER -> 1.3;
+                case JULY, AUGUST -> 1.25;
+                case FEBRUARY, MARCH -> 0.85;
+                default -> 1.0;
+            };
+            if (date.getDayOfWeek() == DayOfWeek.SATURDAY || date.getDayOfWeek() == DayOfWeek.SUNDAY) {
+                weight *= 1.4;
+            }
+            weights[day] = weight;
+        }
+        return new WeightedSampler(weights);
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--") || i + 1 == args.length) {
+                throw new IllegalArgumentException("Unexpected argument: " + args[i]);
+            }
+            options.put(args[i].substring(2), args[++i]);
+        }
+        return options;
+    }
+
+    private static int intOption(Map<String, String> options, String name, int defaultValue) {
+        String value = options.get(name);
+        try {
+            return value == null ? defaultValue : Integer.parseInt(value.replace("_", ""));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("--" + name + " must be a number: " + value);
+        }
+    }
+
+    private static double doubleOption(Map<String, String> options, String name, double defaultValue) {
+        String value = options.get(name);
+        try {
+            return value == null ? defaultValue : Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("--" + name + " must be a number: " + value);
+        }
+    }
+
+    private static LocalDate dateOption(Map<String, String> options, String name, LocalDate defaultValue) {
+        String value = options.get(name);
+        return value == null ? defaultValue : LocalDate.parse(value);
+    }
+
+    /** Samples an index in proportion to its weight, by binary search over the cumulative weights. **/
+    private static final class WeightedSampler {
+        private final double[] cumulative;
+
+        WeightedSampler(double[] weights) {
+            cumulative = new double[weights.length];
+            double total = 0;
+            for (int i = 0; i < weights.length; i++) {
+                total += weights[i];
+                cumulative[i] = total;
+            }
+        }
+
+        /** Rank k (0-based) gets a weight of 1 / (k + 1)^skew; skew 0 is uniform. **/
+        static WeightedSampler zipf(int size, double skew) {
+            double[] weights = new double[size];
+            for (int k = 0; k < size; k++) {
+                weights[k] = 1.0 / Math.pow(k + 1, skew);
+            }
+            return new WeightedSampler(weights);
+        }
+
+        int sample(Random random) {
+            double target = random.nextDouble() * cumulative[cumulative.length - 1];
+            int index = Arrays.binarySearch(cumulative, target);
+            return Math.min(index >= 0 ? index : -index - 1, cumulative.length - 1);
+        }
+    }
+
+    private interface History {
+        void rental(int customer, int game, Rental rental, double price, boolean onTime);
+        void sale(int customer, Sale sale);
+    }
+
+    /** Destination of the generated rows, written customers and games first. **/
+    private interface Sink extends AutoCloseable {
+        void customer(Customer customer);
+        void game(Game game);
+        void rental(Rental rental);
+        void sale(Sale sale);
+        void flush() throws IOException;
+        void close() throws IOException;
+    }
+
+    /** Inserts through the repositories' batched saveAll, CHUNK_SIZE rows at a time. **/
+    private static final class RepositorySink implements Sink {
+        private final List<Customer> customers = new ArrayList<>();
+        private final List<Game> games = new ArrayList<>();
+        private final List<Rental> rentals = new ArrayList<>();
+        private final List<Sale> sales = new ArrayList<>();
+        private long saved;
+        private long failed;
+
+        public void customer(Customer customer) {
+            customers.add(customer);
+            if (customers.size() == CHUNK_SIZE) flushCustomers();
+        }
+
+        public void game(Game game) {
+            flushCustomers();
+            games.add(game);
+            if (games.size() == CHUNK_SIZE) flushGames();
+        }
+
+        public void rental(Rental rental) {
+            rentals.add(rental);
+            if (rentals.size() == CHUNK_SIZE) flushRentals();
+        }
+
+        public void sale(Sale sale) {
+            flushRentals();
+            sales.add(sale);
+            if (sales.size() == CHUNK_SIZE) flushSales();
+        }
+
+        public void flush() {
+            flushCustomers();
+            flushGames();
+            flushRentals();
+            flushSales();
+        }
+
+        private void flushCustomers() {
+            if (!customers.isEmpty()) record(CustomerRepository.getInstance().saveAll(customers), customers);
+        }
+
+        private void flushGames() {
+            if (!games.isEmpty()) record(GameRepository.getInstance().saveAll(games), games);
+        }
+
+        private void flushRentals() {
+            if (!rentals.isEmpty()) record(RentalRepository.getInstance().saveAll(rentals), rentals);
+        }
+
+        private void flushSales() {
+            if (!sales.isEmpty()) record(SaleRepository.getInstance().saveAll(sales), sales);
+        }
+
+        private void record(BatchResult<?> result, List<?> chunk) {
+            saved += result.getSavedCount();
+            failed += result.getFailedCount();
+            if (!result.isSuccessful()) {
+                System.err.println(result.getFailedCount() + " rows rejected, first: " + result.getFailures().get(0).getReason());
+            }
+            chunk.clear();
+        }
+
+        public void close() {
+            flush();
+            System.out.println(saved + " rows saved, " + failed + " rejected");
+        }
+    }
+
+    /** Writes one CSV file per table and a load_data.sql script that loads them with LOAD DATA LOCAL INFILE. **/
+    private static final class CsvSink implements Sink {
+        private final Path directory;
+        private final BufferedWriter customers;
+        private final BufferedWriter games;
+        private final BufferedWriter rentals;
+        private final BufferedWriter sales;
+
+        CsvSink(Path directory) throws IOException {
+            this.directory = Files.createDirectories(directory);
+            this.customers = open("customers.csv", "id,name,contact_number,password,loyalty_points");
+            this.games = open("games.csv", "id,title,genre,platform,is_available,type,price,version");
+            this.rentals = open("rentals.csv", "id,customer_id,game_id,platform,rental_date,return_date,is_returned");
+            this.sales = open("sales.csv", "id,customer_id,game_id,sale_date,price");
+        }
+
+        private BufferedWriter open(String file, String header) throws IOException {
+            BufferedWriter writer = Files.newBufferedWriter(directory.resolve(file), StandardCharsets.UTF_8);
+            writer.write(header);
+            writer.write('\n');
+            return writer;
+        }
+
+        public void customer(Customer customer) {
+            write(customers, customer.getId(), customer.getName(), customer.getContactNumber(), customer.getPassword(),
+                    customer.getLoyaltyPoints());
+        }
+
+        public void game(Game game) {
+            write(games, game.getId(), game.getTitle(), game.getGenre(), game.getPlatform().name(),
+                    game.isAvailable() ? 1 : 0, game.getType().name(), price(game.getPrice()), game.getVersion());
+        }
+
+        public void rental(Rental rental) {
+            write(rentals, rental.getRentalId(), rental.getCustomer().getId(), rental.getGame().getId(),
+                    rental.getPlatform().name(), rental.getRentalDate(), rental.getReturnDate(), rental.isReturned() ? 1 : 0);
+        }
+
+        public void sale(Sale sale) {
+            write(sales, sale.getId(), sale.getCustomer().getId(), sale.getGame().getId(), sale.getDate(), price(sale.getPrice()));
+        }
+
+        private static String price(double price) {
+            return String.format(Locale.ROOT, "%.2f", price);
+        }
+
+        private static void write(BufferedWriter writer, Object... values) {
+            try {
+                for (int i = 0; i < values.length; i++) {
+                    if (i > 0) writer.write(',');
+                    String value = String.valueOf(values[i]);
+                    if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0) {
+                        value = '"' + value.replace("\"", "\"\"") + '"';
+                    }
+                    writer.write(value);
+                }
+                writer.write('\n');
+            } catch (IOException e) {
+                throw new IllegalStateException("CSV write failed: " + e.getMessage(), e);
+            }
+        }
+
+        public void flush() throws IOException {
+            customers.flush();
+            games.flush();
+            rentals.flush();
+            sales.flush();
+        }
+
+        public void close() throws IOException {
+            customers.close();
+            games.close();
+            rentals.close();
+            sales.close();
+
+            // Checks are turned off for the load only: the generator already guarantees keys and references
+            String script = "-- mysql --local-infile=1 CapeTownGaming < load_data.sql (run from this folder)\n"
+                    + "SET foreign_key_checks = 0;\n"
+                    + "SET unique_checks = 0;\n"
+                    + loadData("customers", "id, name, contact_number, password, loyalty_points", "id")
+                    + loadData("games", "id, title, genre, platform, is_available, type, price, version", "id")
+                    + loadData("rentals", "id, customer_id, game_id, platform, rental_date, return_date, is_returned",
+                            "id", "customer_id", "game_id")
+                    + loadData("sales", "id, customer_id, game_id, sale_date, price", "id", "customer_id", "game_id")
+                    + "SET unique_checks = 1;\n"
+                    + "SET foreign_key_checks = 1;\n";
+            Files.writeString(directory.resolve("load_data.sql"), script, StandardCharsets.UTF_8);
+            System.out.println("CSV files and load_data.sql written to " + directory.toAbsolutePath());
+        }
+
+        /** With ID_STORAGE=binary, the UUID text of each id column is read into a variable and stored as 16 bytes. **/
+        private static String loadData(String table, String columns, String... idColumns) {
+            String assignments = "";
+            if (IdColumns.isBinary()) {
+                for (String column : idColumns) {
+                    columns = columns.replaceFirst("\\b" + column + "\\b", "@" + column);
+                    assignments += (assignments.isEmpty() ? "\n    SET " : ", ")
+                            + column + " = UNHEX(REPLACE(@" + column + ", '-', ''))";
+                }
+            }
+            return "LOAD DATA LOCAL INFILE '" + table + ".csv' INTO TABLE " + table + " CHARACTER SET utf8mb4\n"
+                    + "    FIELDS TERMINATED BY ',' OPTIONALLY ENCLOSED BY '\"' LINES TERMINATED BY '\\n'\n"
+                    + "    IGNORE 1 LINES (" + columns + ")" + assignments + ";\n";
+        }
+    }
+}
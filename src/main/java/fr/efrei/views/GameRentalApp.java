@@ -6,35 +6,43 @@ import fr.efrei.domain.Game;
 import fr.efrei.domain.GamePlatform;
 import fr.efrei.domain.GameType;
 import fr.efrei.domain.Rental;
+import fr.efrei.domain.RentalSummary;
 import fr.efrei.domain.Sale;
+import fr.efrei.domain.SalesSummary;
 import fr.efrei.factory.CustomerFactory;
-import fr.efrei.repository.CustomerRepository;
-import fr.efrei.repository.EmployeeRepository;
-import fr.efrei.repository.GameRepository;
-import fr.efrei.repository.RentalRepository;
-import fr.efrei.repository.SaleRepository;
+import fr.efrei.repository.ICustomerRepository;
+import fr.efrei.repository.IEmployeeRepository;
+import fr.efrei.repository.IGameRepository;
+import fr.efrei.repository.IRentalRepository;
+import fr.efrei.repository.ISaleRepository;
+import fr.efrei.repository.Page;
+import fr.efrei.repository.Repositories;
+import fr.efrei.service.CheckoutService;
+import fr.efrei.service.LoyaltyAccrualBuffer;
+import fr.efrei.util.Config;
 import fr.efrei.util.DatabaseConnection;
 import fr.efrei.util.Helper;
+import fr.efrei.util.SchemaMigrations;
 
-import java.time.LocalDate;
 import java.util.List;
-import java.util.UUID;
+import java.util.Map;
 
 import static fr.efrei.util.Helper.pause;
 
 public class GameRentalApp {
+    private static final int PAGE_SIZE = 20;
+    private static final int MAX_LISTED_GAMES = 100;
 
     public static void main(String[] args) {
         System.out.println("=== CapeTown Gaming - Employee System ===");
 
-        //Singleton instances
-        DatabaseConnection.getInstance();
+        LoyaltyAccrualBuffer accrualBuffer = startUp();
 
-        EmployeeRepository employeeRepo = EmployeeRepository.getInstance();
-        CustomerRepository customerRepo = CustomerRepository.getInstance();
-        GameRepository gameRepo = GameRepository.getInstance();
-        RentalRepository rentalRepo = RentalRepository.getInstance();
-        SaleRepository saleRepo = SaleRepository.getInstance();
+        IEmployeeRepository employeeRepo = Repositories.employees();
+        ICustomerRepository customerRepo = Repositories.customers();
+        IGameRepository gameRepo = Repositories.games();
+        IRentalRepository rentalRepo = Repositories.rentals();
+        ISaleRepository saleRepo = Repositories.sales();
 
         // Employee login
         Employee employee = employeeLogin(employeeRepo);
@@ -70,7 +78,7 @@ public class GameRentalApp {
                 case 1:
                     Customer customer = selectOrAddCustomer(customerRepo);
                     if (customer != null) {
-                        handleCustomerSession(customer, customerRepo, gameRepo, rentalRepo, saleRepo);
+                        handleCustomerSession(customer, gameRepo, rentalRepo);
                     }
                     break;
                 case 2:
@@ -86,18 +94,36 @@ public class GameRentalApp {
             pause(1);
         }
 
+        if (accrualBuffer != null) {
+            accrualBuffer.close();
+        }
         System.out.println("Thank you for using CapeTown Gaming System!");
     }
 
-    private static Employee employeeLogin(EmployeeRepository employeeRepo) {
+    /**
+     * Connects to the database and applies the pending migrations, then opens the loyalty buffer if enabled,
+     * which applies the points a previous run left in its journal. Returns the buffer, or null.
+     */
+    static LoyaltyAccrualBuffer startUp() {
+        //Singleton instances
+        if (!Repositories.isInMemory()) {
+            DatabaseConnection.getInstance();
+            if (Config.getBoolean("DB_MIGRATE_ON_STARTUP", true)) {
+                SchemaMigrations.migrate();
+            }
+        }
+        return LoyaltyAccrualBuffer.isEnabled() ? LoyaltyAccrualBuffer.getInstance() : null;
+    }
+
+    private static Employee employeeLogin(IEmployeeRepository employeeRepo) {
         System.out.println("\n=== EMPLOYEE LOGIN ===");
 
         for (int attempts = 0; attempts < 3; attempts++) {
             String email = Helper.read("Email");
             String password = Helper.read("Password");
 
-            Employee employee = employeeRepo.findByEmail(email);
-            if (employee != null && employee.getPassword().equals(password)) {
+            Employee employee = employeeRepo.authenticate(email, password);
+            if (employee != null) {
                 return employee;
             }
 
@@ -107,7 +133,7 @@ public class GameRentalApp {
         return null;
     }
 
-    private static Customer selectOrAddCustomer(CustomerRepository customerRepo) {
+    private static Customer selectOrAddCustomer(ICustomerRepository customerRepo) {
         System.out.println("\n=== CUSTOMER SELECTION ===");
         System.out.println("1) Search existing customer (by phone)");
         System.out.println("2) Add new customer");
@@ -146,7 +172,7 @@ public class GameRentalApp {
                 return null;
             }
 
-            Customer customer = CustomerFactory.create(UUID.randomUUID().toString(), name, phone, password);
+            Customer customer = CustomerFactory.create(Helper.IdGenerator.uuid(), name, phone, password);
             customer = customerRepo.save(customer);
 
             if (customer != null) {
@@ -162,9 +188,8 @@ public class GameRentalApp {
         return null;
     }
 
-    private static void handleCustomerSession(Customer customer, CustomerRepository customerRepo,
-                                              GameRepository gameRepo, RentalRepository rentalRepo,
-                                              SaleRepository saleRepo) {
+    private static void handleCustomerSession(Customer customer, IGameRepository gameRepo,
+                                              IRentalRepository rentalRepo) {
         while (true) {
             Helper.line();
             System.out.println("\n=== CUSTOMER: " + customer.getName() + " ===");
@@ -188,13 +213,13 @@ public class GameRentalApp {
 
             switch (ch) {
                 case 1:
-                    rentGame(customer, customerRepo, gameRepo, rentalRepo);
+                    rentGame(customer, gameRepo);
                     break;
                 case 2:
-                    buyGame(customer, customerRepo, gameRepo, saleRepo);
+                    buyGame(customer, gameRepo);
                     break;
                 case 3:
-                    returnGame(customer, customerRepo, gameRepo, rentalRepo);
+                    returnGame(customer, rentalRepo);
                     break;
                 case 4:
                     viewCustomerRentals(customer, rentalRepo);
@@ -207,8 +232,7 @@ public class GameRentalApp {
         pause(1);
     }
 
-    private static void rentGame(Customer customer, CustomerRepository customerRepo,
-                                GameRepository gameRepo, RentalRepository rentalRepo) {
+    private static void rentGame(Customer customer, IGameRepository gameRepo) {
         System.out.println("\n=== RENT A GAME ===");
 
         // Choose platform
@@ -216,8 +240,7 @@ public class GameRentalApp {
         if (platform == null) return;
 
         // Show available games for rental
-        List<Game> games = gameRepo.findByPlatformAndType(platform, GameType.RENTAL);
-        games = games.stream().filter(Game::isAvailable).toList();
+        List<Game> games = gameRepo.findAvailable(platform, GameType.RENTAL, Double.MAX_VALUE, MAX_LISTED_GAMES);
 
         if (games.isEmpty()) {
             Helper.error("No games available for this platform");
@@ -250,9 +273,9 @@ public class GameRentalApp {
 
         // Choose rental duration
         System.out.println("\nRental duration:");
-        System.out.println("1) 1 day - $" + selectedGame.getPrice());
-        System.out.println("2) 1 week - $" + (selectedGame.getPrice() * 7 * 0.85)); // 15% discount
-        System.out.println("3) 1 month - $" + (selectedGame.getPrice() * 30 * 0.70)); // 30% discount
+        System.out.println("1) 1 day - $" + CheckoutService.rentalPrice(selectedGame, 1));
+        System.out.println("2) 1 week - $" + CheckoutService.rentalPrice(selectedGame, 7)); // 15% discount
+        System.out.println("3) 1 month - $" + CheckoutService.rentalPrice(selectedGame, 30)); // 30% discount
 
         String durationChoice = Helper.read("Your choice");
         if (!Helper.isNumber(durationChoice)) {
@@ -261,24 +284,24 @@ public class GameRentalApp {
             return;
         }
 
-        int days = 1;
-        double price = selectedGame.getPrice();
-
+        int days;
         switch (Integer.parseInt(durationChoice)) {
-            case 1: days = 1; price = selectedGame.getPrice(); break;
-            case 2: days = 7; price = selectedGame.getPrice() * 7 * 0.85; break;
-            case 3: days = 30; price = selectedGame.getPrice() * 30 * 0.70; break;
+            case 1: days = 1; break;
+            case 2: days = 7; break;
+            case 3: days = 30; break;
             default:
                 Helper.error("Invalid choice");
                 pause(1);
                 return;
         }
+        double price = CheckoutService.rentalPrice(selectedGame, days);
 
         // Ask about loyalty points
         double finalPrice = price;
+        int pointsUsed = 0;
         if (customer.getLoyaltyPoints() >= 100) {
-            int pointsToUse = (customer.getLoyaltyPoints() / 100) * 100; // Use multiples of 100
-            double discount = pointsToUse / 100.0; // 100 points = $10 discount
+            int pointsToUse = CheckoutService.redeemablePoints(customer.getLoyaltyPoints()); // Use multiples of 100
+            double discount = pointsToUse / 100.0; // 100 points = $1 discount
 
             System.out.println("\nYou have " + customer.getLoyaltyPoints() + " loyalty points");
             System.out.println("You can use up to " + pointsToUse + " points for $" + discount + " discount");
@@ -286,9 +309,8 @@ public class GameRentalApp {
 
             String usePoints = Helper.read("Use loyalty points? (yes/no)");
             if ("yes".equalsIgnoreCase(usePoints)) {
-                finalPrice -= discount;
-                if (finalPrice < 0) finalPrice = 0;
-                customer.useLoyaltyPoints(pointsToUse);
+                finalPrice = CheckoutService.discountedPrice(finalPrice, pointsToUse);
+                pointsUsed = pointsToUse;
                 System.out.println("✓ Applied $" + discount + " discount!");
                 pause(1);
             }
@@ -303,46 +325,25 @@ public class GameRentalApp {
             return;
         }
 
-        // Create rental
-        LocalDate returnDate = LocalDate.now().plusDays(days);
-        Rental rental = new Rental.Builder()
-            .setRentalId(UUID.randomUUID().toString())
-            .setCustomer(customer)
-            .setGame(selectedGame)
-            .setPlatform(platform)
-            .setRentalDate(LocalDate.now())
-            .setReturnDate(returnDate)
-            .setReturned(false)
-            .build();
-
-        rental = rentalRepo.save(rental);
+        // Rental, game availability and loyalty points are written in one transaction
+        Rental rental = CheckoutService.getInstance().rent(customer, selectedGame, platform, days, finalPrice, pointsUsed);
         if (rental != null) {
-            selectedGame.setAvailable(false);
-            gameRepo.update(selectedGame);
-
-            // Add loyalty points (10% of price)
-            int pointsEarned = (int)(finalPrice * 10);
-            customer.addLoyaltyPoints(pointsEarned);
-            customerRepo.updateLoyaltyPoints(customer.getId(), customer.getLoyaltyPoints());
-
             System.out.println("✓ Rental successful!");
-            System.out.println("Return date: " + returnDate);
-            System.out.println("Earned " + pointsEarned + " loyalty points!");
+            System.out.println("Return date: " + rental.getReturnDate());
+            System.out.println("Earned " + CheckoutService.pointsEarned(finalPrice) + " loyalty points!");
         } else {
             Helper.error("Failed to create rental");
         }
         pause(1);
     }
 
-    private static void buyGame(Customer customer, CustomerRepository customerRepo,
-                               GameRepository gameRepo, SaleRepository saleRepo) {
+    private static void buyGame(Customer customer, IGameRepository gameRepo) {
         System.out.println("\n=== BUY A GAME ===");
 
         GamePlatform platform = choosePlatform();
         if (platform == null) return;
 
-        List<Game> games = gameRepo.findByPlatformAndType(platform, GameType.SALE);
-        games = games.stream().filter(Game::isAvailable).toList();
+        List<Game> games = gameRepo.findAvailable(platform, GameType.SALE, Double.MAX_VALUE, MAX_LISTED_GAMES);
 
         if (games.isEmpty()) {
             Helper.error("No games available for sale on this platform");
@@ -374,10 +375,11 @@ public class GameRentalApp {
 
         Game selectedGame = games.get(gameIdx);
         double finalPrice = selectedGame.getPrice();
+        int pointsUsed = 0;
 
         // Ask about loyalty points
         if (customer.getLoyaltyPoints() >= 100) {
-            int pointsToUse = (customer.getLoyaltyPoints() / 100) * 100;
+            int pointsToUse = CheckoutService.redeemablePoints(customer.getLoyaltyPoints());
             double discount = pointsToUse / 100.0;
 
             System.out.println("\nYou have " + customer.getLoyaltyPoints() + " loyalty points");
@@ -385,9 +387,8 @@ public class GameRentalApp {
 
             String usePoints = Helper.read("Use loyalty points? (yes/no)");
             if ("yes".equalsIgnoreCase(usePoints)) {
-                finalPrice -= discount;
-                if (finalPrice < 0) finalPrice = 0;
-                customer.useLoyaltyPoints(pointsToUse);
+                finalPrice = CheckoutService.discountedPrice(finalPrice, pointsToUse);
+                pointsUsed = pointsToUse;
                 System.out.println("✓ Applied $" + discount + " discount!");
                 pause(1);
             }
@@ -402,26 +403,10 @@ public class GameRentalApp {
             return;
         }
 
-        Sale sale = new Sale(
-            UUID.randomUUID().toString(),
-            customer,
-            selectedGame,
-            LocalDate.now(),
-            finalPrice
-        );
-
-        sale = saleRepo.save(sale);
+        Sale sale = CheckoutService.getInstance().buy(customer, selectedGame, finalPrice, pointsUsed);
         if (sale != null) {
-            selectedGame.setAvailable(false);
-            gameRepo.update(selectedGame);
-
-            // Add loyalty points (10% of price)
-            int pointsEarned = (int)(finalPrice * 10);
-            customer.addLoyaltyPoints(pointsEarned);
-            customerRepo.updateLoyaltyPoints(customer.getId(), customer.getLoyaltyPoints());
-
             System.out.println("✓ Purchase successful!");
-            System.out.println("Earned " + pointsEarned + " loyalty points!");
+            System.out.println("Earned " + CheckoutService.pointsEarned(finalPrice) + " loyalty points!");
             pause(1);
         } else {
             Helper.error("Failed to process sale");
@@ -429,8 +414,7 @@ public class GameRentalApp {
         }
     }
 
-    private static void returnGame(Customer customer, CustomerRepository customerRepo,
-                                  GameRepository gameRepo, RentalRepository rentalRepo) {
+    private static void returnGame(Customer customer, IRentalRepository rentalRepo) {
         System.out.println("\n=== RETURN A GAME ===");
 
         List<Rental> activeRentals = rentalRepo.findActiveByCustomer(customer.getId());
@@ -465,19 +449,12 @@ public class GameRentalApp {
         }
 
         Rental rental = activeRentals.get(idx);
-        rental.setReturned(true);
-
-        if (rentalRepo.update(rental)) {
-            Game game = rental.getGame();
-            game.setAvailable(true);
-            gameRepo.update(game);
 
+        if (CheckoutService.getInstance().returnRental(customer, rental)) {
             // Bonus points for returning on time
-            if (!LocalDate.now().isAfter(rental.getReturnDate())) {
-                customer.addLoyaltyPoints(50);
-                customerRepo.updateLoyaltyPoints(customer.getId(), customer.getLoyaltyPoints());
+            if (CheckoutService.isOnTime(rental)) {
                 System.out.println("✓ Game returned successfully!");
-                System.out.println("Bonus: +50 loyalty points for returning on time!");
+                System.out.println("Bonus: +" + CheckoutService.ON_TIME_RETURN_BONUS + " loyalty points for returning on time!");
                 pause(1);
             } else {
                 System.out.println("✓ Game returned (late)");
@@ -489,58 +466,73 @@ public class GameRentalApp {
         }
     }
 
-    private static void viewCustomerRentals(Customer customer, RentalRepository rentalRepo) {
+    private static void viewCustomerRentals(Customer customer, IRentalRepository rentalRepo) {
         System.out.println("\n=== CUSTOMER RENTALS ===");
 
-        List<Rental> rentals = rentalRepo.findByCustomer(customer.getId());
+        Page<Rental> page = rentalRepo.findPageByCustomer(customer.getId(), null, PAGE_SIZE);
 
-        if (rentals.isEmpty()) {
+        if (page.isEmpty()) {
             System.out.println("No rental history");
             pause(1);
             return;
         }
 
         System.out.println("\nRental History:");
-        for (Rental r : rentals) {
-            String status = r.isReturned() ? "Returned" : "Active";
-            System.out.println("- " + r.getGame().getTitle() +
-                             " | Rented: " + r.getRentalDate() +
-                             " | Due: " + r.getReturnDate() +
-                             " | Status: " + status);
+        while (true) {
+            for (Rental r : page.getItems()) {
+                String status = r.isReturned() ? "Returned" : "Active";
+                System.out.println("- " + r.getGame().getTitle() +
+                                 " | Rented: " + r.getRentalDate() +
+                                 " | Due: " + r.getReturnDate() +
+                                 " | Status: " + status);
+            }
+            if (!page.hasNext() || !"yes".equalsIgnoreCase(Helper.read("Show more? (yes/no)"))) break;
+            page = rentalRepo.findPageByCustomer(customer.getId(), page.getNextCursor(), PAGE_SIZE);
         }
         pause(2);
     }
 
-    private static void viewAllCustomers(CustomerRepository customerRepo) {
+    private static void viewAllCustomers(ICustomerRepository customerRepo) {
         System.out.println("\n=== ALL CUSTOMERS ===");
 
-        List<Customer> customers = customerRepo.findAll();
+        Page<Customer> page = customerRepo.findPage(null, PAGE_SIZE);
 
-        if (customers.isEmpty()) {
+        if (page.isEmpty()) {
             System.out.println("No customers in database");
             return;
         }
 
-        System.out.println("\nTotal customers: " + customers.size());
-        for (Customer c : customers) {
-            System.out.println("- " + c.getName() +
-                             " | Phone: " + c.getContactNumber() +
-                             " | Loyalty Points: " + c.getLoyaltyPoints());
+        while (true) {
+            for (Customer c : page.getItems()) {
+                System.out.println("- " + c.getName() +
+                                 " | Phone: " + c.getContactNumber() +
+                                 " | Loyalty Points: " + c.getLoyaltyPoints());
+            }
+            if (!page.hasNext() || !"yes".equalsIgnoreCase(Helper.read("Show more? (yes/no)"))) break;
+            page = customerRepo.findPage(page.getNextCursor(), PAGE_SIZE);
         }
         pause(1);
     }
 
-    private static void viewRevenue(SaleRepository saleRepo, RentalRepository rentalRepo) {
+    private static void viewRevenue(ISaleRepository saleRepo, IRentalRepository rentalRepo) {
         System.out.println("\n=== SHOP REVENUE ===");
 
-        double salesRevenue = saleRepo.getTotalRevenue();
-        int totalSales = saleRepo.findAll().size();
-        int totalRentals = rentalRepo.findAll().size();
+        SalesSummary sales = saleRepo.getSummary();
+        RentalSummary rentals = rentalRepo.getSummary();
 
-        System.out.println("\nSales Revenue: $" + String.format("%.2f", salesRevenue));
-        System.out.println("Total Sales: " + totalSales);
-        System.out.println("Total Rentals: " + totalRentals);
-        System.out.println("Total Transactions: " + (totalSales + totalRentals));
+        System.out.println("\nSales Revenue: $" + String.format("%.2f", sales.getTotalRevenue()));
+        System.out.println("Average Sale: $" + String.format("%.2f", sales.getAveragePrice()));
+        System.out.println("Total Sales: " + sales.getTotalSales());
+        System.out.println("Total Rentals: " + rentals.getTotalRentals()
+                + " (active: " + rentals.getActiveRentals() + ", overdue: " + rentals.getOverdueRentals() + ")");
+        System.out.println("Total Transactions: " + (sales.getTotalSales() + rentals.getTotalRentals()));
+
+        Map<GamePlatform, Double> revenueByPlatform = saleRepo.getRevenueByPlatform();
+        if (!revenueByPlatform.isEmpty()) {
+            System.out.println("\nRevenue by platform:");
+            revenueByPlatform.forEach((platform, revenue) ->
+                    System.out.println("- " + platform + ": $" + String.format("%.2f", revenue)));
+        }
         pause(1);
     }
 
@@ -0,0 +1,290 @@
+package fr.efrei.views;
+
+import fr.efrei.domain.Customer;
+import fr.efrei.domain.Employee;
+import fr.efrei.repository.Repositories;
+import fr.efrei.service.CounterService;
+import fr.efrei.service.LoyaltyAccrualBuffer;
+import fr.efrei.util.DatabaseConnection;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Batch mode: runs the counter operations listed in a command file, with no prompts or pauses, then prints how
+ * many of each ran, how many failed and how long they took. One command per line; words containing spaces go
+ * in double quotes and lines starting with # are ignored.
+ * <pre>
+ * login EMAIL PASSWORD
+ * customer PHONE                     selects the customer the next commands apply to
+ * add-customer NAME PHONE PASSWORD   adds the customer and selects it
+ * rent GAME_ID DAYS [POINTS]         DAYS is 1, 7 or 30
+ * buy GAME_ID [POINTS]
+ * return GAME_ID                     returns the customer's active rental of the game
+ * revenue
+ * </pre>
+ * With --counters N the file is run by N counters at once, each on its own virtual thread; "${counter}" in the
+ * file is replaced by the counter's number (1 to N), e.g. to give each one its own customers.
+ * A failed command is reported with its line number and the run goes on; the exit status is 1 if any failed.
+ */
+public class GameRentalBatch {
+    private static final String USAGE = "Usage: GameRentalBatch FILE [--counters N]";
+
+    private record Command(int line, List<String> words) {}
+
+    /** Count, failures and time spent for one kind of command. **/
+    private static final class Stats {
+        private long count;
+        private long failures;
+        private long totalNanos;
+        private long maxNanos;
+
+        void add(long nanos, boolean failed) {
+            count++;
+            if (failed) {
+                failures++;
+            }
+            totalNanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+        }
+
+        void addAll(Stats other) {
+            count += other.count;
+            failures += other.failures;
+            totalNanos += other.totalNanos;
+            maxNanos = Math.max(maxNanos, other.maxNanos);
+        }
+    }
+
+    private final CounterService counter = CounterService.getInstance();
+    private final String file;
+    private final List<Command> commands;
+
+    private Employee employee;
+    private Customer customer;
+    private final Map<String, Stats> stats = new TreeMap<>();
+
+    private GameRentalBatch(String file, List<Command> commands) {
+        this.file = file;
+        this.commands = commands;
+    }
+
+    public static void main(String[] args) {
+        Path file = null;
+        int counters = 1;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if ("--counters".equals(args[i]) && i + 1 < args.length) {
+                    counters = Integer.parseInt(args[++i]);
+                } else if (file == null && !args[i].startsWith("--")) {
+                    file = Path.of(args[i]);
+                } else {
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+                }
+            }
+            if (file == null || counters < 1) {
+                throw new IllegalArgumentException("A command file and at least one counter are required");
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(1);
+            return;
+        }
+
+        String script;
+        try {
+            script = Files.readString(file, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            System.err.println("Error reading " + file + ": " + e.getMessage());
+            System.exit(1);
+            return;
+        }
+
+        LoyaltyAccrualBuffer accrualBuffer = GameRentalApp.startUp();
+        boolean succeeded = run(file.getFileName().toString(), script, counters);
+        if (accrualBuffer != null) {
+            accrualBuffer.close();
+        }
+        if (!Repositories.isInMemory()) {
+            DatabaseConnection.getInstance().closeConnection();
+        }
+        System.exit(succeeded ? 0 : 1);
+    }
+
+    /** Runs the script on each counter and prints the combined figures. Returns false if anything failed. **/
+    private static boolean run(String file, String script, int counters) {
+        List<GameRentalBatch> batches = new ArrayList<>();
+        for (int i = 1; i <= counters; i++) {
+            batches.add(new GameRentalBatch(file, parse(script.replace("${counter}", String.valueOf(i)))));
+        }
+
+        boolean aborted = false;
+        long start = System.nanoTime();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> runs = new ArrayList<>();
+            for (GameRentalBatch batch : batches) {
+                runs.add(executor.submit(batch::runCommands));
+            }
+            for (Future<?> run : runs) {
+                run.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            aborted = true;
+        } catch (ExecutionException e) {
+            System.err.println("Error running " + file + ": " + e.getCause());
+            aborted = true;
+        }
+        long elapsed = System.nanoTime() - start;
+
+        Map<String, Stats> totals = new TreeMap<>();
+        for (GameRentalBatch batch : batches) {
+            batch.stats.forEach((name, s) -> totals.computeIfAbsent(name, k -> new Stats()).addAll(s));
+        }
+        report(totals, counters, elapsed);
+        return !aborted && totals.values().stream().noneMatch(s -> s.failures > 0);
+    }
+
+    private void runCommands() {
+        for (Command command : commands) {
+            String name = command.words().get(0);
+            long start = System.nanoTime();
+            boolean failed = false;
+            try {
+                execute(name, command.words().subList(1, command.words().size()));
+            } catch (CounterService.OperationException | IllegalArgumentException | IllegalStateException e) {
+                failed = true;
+                System.err.println(file + ":" + command.line() + ": " + name + ": " + e.getMessage());
+            } catch (RuntimeException e) {
+                // Unexpected, e.g. a bug or a lost database: counted as a failure and the run goes on
+                failed = true;
+                System.err.println(file + ":" + command.line() + ": " + name + ": " + e);
+            }
+            stats.computeIfAbsent(name, k -> new Stats()).add(System.nanoTime() - start, failed);
+        }
+    }
+
+    private void execute(String name, List<String> args) {
+        if (!"login".equals(name) && employee == null) {
+            throw new IllegalStateException("Not logged in");
+        }
+        switch (name) {
+            case "login" -> {
+                arguments(args, 2, 2);
+                employee = counter.login(args.get(0), args.get(1));
+                if (employee == null) {
+                    throw new IllegalStateException("Invalid credentials");
+                }
+            }
+            case "customer" -> {
+                arguments(args, 1, 1);
+                customer = counter.findCustomerByPhone(args.get(0));
+            }
+            case "add-customer" -> {
+                arguments(args, 3, 3);
+                customer = counter.addCustomer(args.get(0), args.get(1), args.get(2));
+            }
+            case "rent" -> {
+                arguments(args, 2, 3);
+                counter.rent(requireCustomer(), args.get(0), number(args.get(1)), args.size() > 2 ? number(args.get(2)) : 0);
+            }
+            case "buy" -> {
+                arguments(args, 1, 2);
+                counter.buy(requireCustomer(), args.get(0), args.size() > 1 ? number(args.get(1)) : 0);
+            }
+            case "return" -> {
+                arguments(args, 1, 1);
+                counter.returnGame(requireCustomer(), args.get(0));
+            }
+            case "revenue" -> {
+                arguments(args, 0, 0);
+                counter.revenue();
+            }
+            default -> throw new IllegalArgumentException("Unknown command");
+        }
+    }
+
+    private Customer requireCustomer() {
+        if (customer == null) {
+            throw new IllegalStateException("No customer selected");
+        }
+        return customer;
+    }
+
+    private static void arguments(List<String> args, int min, int max) {
+        if (args.size() < min || args.size() > max) {
+            throw new IllegalArgumentException("Expected " + (min == max ? min : min + " to " + max) + " arguments");
+        }
+    }
+
+    private static int number(String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a number: " + value);
+        }
+    }
+
+    /** Splits each line into words, keeping double-quoted text together. **/
+    private static List<Command> parse(String script) {
+        List<Command> commands = new ArrayList<>();
+        String[] lines = script.split("\\R");
+        for (int i = 0; i < lines.length; i++) {
+            String line = lines[i].strip();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            List<String> words = new ArrayList<>();
+            StringBuilder word = new StringBuilder();
+            boolean quoted = false;
+            boolean inWord = false;
+            for (char c : line.toCharArray()) {
+                if (c == '"') {
+                    quoted = !quoted;
+                    inWord = true;
+                } else if (Character.isWhitespace(c) && !quoted) {
+                    if (inWord) {
+                        words.add(word.toString());
+                        word.setLength(0);
+                        inWord = false;
+                    }
+                } else {
+                    word.append(c);
+                    inWord = true;
+                }
+            }
+            if (inWord) {
+                words.add(word.toString());
+            }
+            commands.add(new Command(i + 1, words));
+        }
+        return commands;
+    }
+
+    private static void report(Map<String, Stats> totals, int counters, long elapsedNanos) {
+        long count = 0;
+        long failures = 0;
+        System.out.printf("%-14s %8s %8s %10s %10s%n", "Command", "Count", "Failed", "Mean ms", "Max ms");
+        for (Map.Entry<String, Stats> entry : totals.entrySet()) {
+            Stats s = entry.getValue();
+            System.out.printf("%-14s %8d %8d %10.3f %10.3f%n", entry.getKey(), s.count, s.failures,
+                    s.totalNanos / 1e6 / s.count, s.maxNanos / 1e6);
+            count += s.count;
+            failures += s.failures;
+        }
+        double seconds = elapsedNanos / 1e9;
+        System.out.printf("%d commands (%d failed) on %d counter(s) in %.3f s: %.1f commands/s%n",
+                count, failures, counters, seconds, count / seconds);
+    }
+}
@@ -0,0 +1,522 @@
+package fr.efrei.views;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import fr.efrei.domain.Customer;
+import fr.efrei.domain.Employee;
+import fr.efrei.domain.Game;
+import fr.efrei.domain.GamePlatform;
+import fr.efrei.domain.GameType;
+import fr.efrei.domain.Rental;
+import fr.efrei.domain.Sale;
+import fr.efrei.repository.ICustomerRepository;
+import fr.efrei.repository.IRentalRepository;
+import fr.efrei.repository.Page;
+import fr.efrei.repository.Repositories;
+import fr.efrei.service.CounterService;
+import fr.efrei.service.LoyaltyAccrualBuffer;
+import fr.efrei.util.Config;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Server mode: the employee operations of GameRentalApp over HTTP, so one JVM serves every counter of a store.
+ * Each request runs on its own virtual thread and goes through CounterService, sharing the repositories and the
+ * connection pool.
+ * Parameters are sent in the query string or as a form body (application/x-www-form-urlencoded), and
+ * responses are JSON. A counter logs in with POST /login and sends the token it gets back in an
+ * "Authorization: Bearer ..." header; sessions expire after SERVER_SESSION_TTL_MS without requests.
+ * <pre>
+ * POST /login                  email, password
+ * POST /logout
+ * GET  /customers              phone, or cursor and limit for a page by name
+ * POST /customers              name, phone, password
+ * GET  /customers/{id}
+ * GET  /customers/{id}/rentals active=true for the rentals not returned, or cursor and limit
+ * GET  /games                  platform, type (RENTAL or SALE), maxPrice, limit
+ * POST /rentals                customerId, gameId, days (1, 7 or 30), points
+ * POST /sales                  customerId, gameId, points
+ * POST /returns                rentalId
+ * GET  /revenue
+ * </pre>
+ * Listens on SERVER_HOST (127.0.0.1) and SERVER_PORT (8080).
+ */
+public class GameRentalServer {
+    private static final int MAX_BODY_BYTES = 64 * 1024;
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_LISTED_GAMES = 1_000;
+
+    /** An answer other than 200, with the message sent as {"error": ...}. **/
+    private static final class HttpError extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private final int status;
+
+        HttpError(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private record Request(HttpExchange exchange, Map<String, String> params, List<String> pathParams) {
+        String require(String name) {
+            String value = params.get(name);
+            if (value == null || value.isBlank()) {
+                throw new HttpError(400, "Missing parameter: " + name);
+            }
+            return value;
+        }
+
+        int getInt(String name, int defaultValue) {
+            String value = params.get(name);
+            try {
+                return value == null || value.isBlank() ? defaultValue : Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                throw new HttpError(400, "Not a number: " + name);
+            }
+        }
+    }
+
+    private record Response(int status, Object body) {}
+
+    @FunctionalInterface
+    private interface Endpoint {
+        Response handle(Request request);
+    }
+
+    private record Route(String method, Pattern path, boolean authenticated, Endpoint endpoint) {}
+
+    private record Session(Employee employee, long expiresAt) {}
+
+    private final CounterService counter = CounterService.getInstance();
+    private final ICustomerRepository customerRepo = Repositories.customers();
+    private final IRentalRepository rentalRepo = Repositories.rentals();
+
+    private final List<Route> routes = new ArrayList<>();
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private final SecureRandom random = new SecureRandom();
+    private final long sessionTtlMillis = Config.getLong("SERVER_SESSION_TTL_MS", 8 * 3_600_000L);
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final HttpServer server;
+
+    public GameRentalServer(InetSocketAddress address) throws IOException {
+        route("POST", "/login", false, this::login);
+        route("POST", "/logout", true, this::logout);
+        route("GET", "/customers", true, this::findCustomers);
+        route("POST", "/customers", true, this::addCustomer);
+        route("GET", "/customers/([^/]+)", true, this::getCustomer);
+        route("GET", "/customers/([^/]+)/rentals", true, this::customerRentals);
+        route("GET", "/games", true, this::availableGames);
+        route("POST", "/rentals", true, this::rent);
+        route("POST", "/sales", true, this::buy);
+        route("POST", "/returns", true, this::returnRental);
+        route("GET", "/revenue", true, this::revenue);
+
+        this.server = HttpServer.create(address, Config.getInt("SERVER_BACKLOG", 256));
+        server.createContext("/", this::dispatch);
+        server.setExecutor(executor);
+    }
+
+    public static void main(String[] args) throws IOException {
+        LoyaltyAccrualBuffer accrualBuffer = GameRentalApp.startUp();
+        InetSocketAddress address = new InetSocketAddress(
+                Config.get("SERVER_HOST", "127.0.0.1"), Config.getInt("SERVER_PORT", 8080));
+        GameRentalServer server = new GameRentalServer(address);
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop();
+            if (accrualBuffer != null) {
+                accrualBuffer.close();
+            }
+        }, "game-rental-server-stop"));
+        server.start();
+        System.out.println("✓ CapeTown Gaming server listening on http://" + address.getHostString() + ":"
+                + server.getPort());
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    /** Stops accepting requests and waits up to a second for the ones in progress. **/
+    public void stop() {
+        server.stop(1);
+        executor.close();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private void route(String method, String path, boolean authenticated, Endpoint endpoint) {
+        routes.add(new Route(method, Pattern.compile(path), authenticated, endpoint));
+    }
+
+    private void dispatch(HttpExchange exchange) throws IOException {
+        Response response;
+        try {
+            response = handle(exchange);
+        } catch (HttpError e) {
+            response = error(e.status, e.getMessage());
+        } catch (CounterService.OperationException e) {
+            response = error(status(e.getReason()), e.getMessage());
+        } catch (IllegalArgumentException e) {
+            response = error(400, e.getMessage());
+        } catch (RuntimeException e) {
+            System.err.println("Error handling " + exchange.getRequestMethod() + " " + exchange.getRequestURI()
+                    + ": " + e);
+            response = error(500, "Internal error");
+        }
+        send(exchange, response);
+    }
+
+    private Response handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        boolean pathFound = false;
+        for (Route route : routes) {
+            Matcher matcher = route.path().matcher(path);
+            if (!matcher.matches()) {
+                continue;
+            }
+            pathFound = true;
+            if (!route.method().equals(exchange.getRequestMethod())) {
+                continue;
+            }
+            if (route.authenticated()) {
+                authenticate(exchange);
+            }
+            List<String> pathParams = new ArrayList<>();
+            for (int i = 1; i <= matcher.groupCount(); i++) {
+                pathParams.add(URLDecoder.decode(matcher.group(i), StandardCharsets.UTF_8));
+            }
+            return route.endpoint().handle(new Request(exchange, readParams(exchange), pathParams));
+        }
+        throw pathFound ? new HttpError(405, "Method not allowed") : new HttpError(404, "Not found");
+    }
+
+    /** Checks the bearer token and extends the session. **/
+    private Employee authenticate(HttpExchange exchange) {
+        String header = exchange.getRequestHeaders().getFirst("Authorization");
+        String token = header != null && header.startsWith("Bearer ") ? header.substring(7).trim() : null;
+        Session session = token == null ? null : sessions.get(token);
+        long now = System.currentTimeMillis();
+        if (session == null || session.expiresAt() < now) {
+            if (token != null) {
+                sessions.remove(token);
+            }
+            throw new HttpError(401, "Not logged in");
+        }
+        sessions.put(token, new Session(session.employee(), now + sessionTtlMillis));
+        return session.employee();
+    }
+
+    private static Map<String, String> readParams(HttpExchange exchange) throws IOException {
+        Map<String, String> params = new LinkedHashMap<>();
+        parseForm(exchange.getRequestURI().getRawQuery(), params);
+        if ("POST".equals(exchange.getRequestMethod())) {
+            try (InputStream in = exchange.getRequestBody()) {
+                byte[] body = in.readNBytes(MAX_BODY_BYTES + 1);
+                if (body.length > MAX_BODY_BYTES) {
+                    throw new HttpError(413, "Request body too large");
+                }
+                parseForm(new String(body, StandardCharsets.UTF_8), params);
+            }
+        }
+        return params;
+    }
+
+    private static void parseForm(String form, Map<String, String> params) {
+        if (form == null || form.isEmpty()) {
+            return;
+        }
+        for (String pair : form.split("&")) {
+            int equals = pair.indexOf('=');
+            String name = equals < 0 ? pair : pair.substring(0, equals);
+            String value = equals < 0 ? "" : pair.substring(equals + 1);
+            params.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+    }
+
+    private static void send(HttpExchange exchange, Response response) throws IOException {
+        byte[] body = toJson(response.body()).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(response.status(), body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static int status(CounterService.OperationException.Reason reason) {
+        return switch (reason) {
+            case INVALID -> 400;
+            case NOT_FOUND -> 404;
+            case CONFLICT -> 409;
+        };
+    }
+
+    private static Response ok(Object body) {
+        return new Response(200, body);
+    }
+
+    private static Response error(int status, String message) {
+        return new Response(status, Map.of("error", message == null ? "" : message));
+    }
+
+    // --- Endpoints ---
+
+    private Response login(Request request) {
+        Employee employee = counter.login(request.require("email"), request.require("password"));
+        if (employee == null) {
+            throw new HttpError(401, "Invalid credentials");
+        }
+        long now = System.currentTimeMillis();
+        sessions.values().removeIf(session -> session.expiresAt() < now);
+
+        byte[] bytes = new byte[32];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        sessions.put(token, new Session(employee, now + sessionTtlMillis));
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("token", token);
+        body.put("employee", Map.of("id", employee.getId(), "name", employee.getName(), "email", employee.getEmail()));
+        return ok(body);
+    }
+
+    private Response logout(Request request) {
+        String header = request.exchange().getRequestHeaders().getFirst("Authorization");
+        sessions.remove(header.substring(7).trim());
+        return ok(Map.of("loggedOut", true));
+    }
+
+    private Response findCustomers(Request request) {
+        String phone = request.params().get("phone");
+        if (phone != null) {
+            return ok(json(counter.findCustomerByPhone(phone)));
+        }
+        Page<Customer> page = customerRepo.findPage(request.params().get("cursor"),
+                request.getInt("limit", DEFAULT_PAGE_SIZE));
+        return ok(json(page, page.getItems().stream().map(GameRentalServer::json).toList()));
+    }
+
+    private Response addCustomer(Request request) {
+        Customer customer = counter.addCustomer(request.require("name"), request.require("phone"),
+                request.require("password"));
+        return new Response(201, json(customer));
+    }
+
+    private Response getCustomer(Request request) {
+        return ok(json(counter.findCustomer(request.pathParams().get(0))));
+    }
+
+    private Response customerRentals(Request request) {
+        Customer customer = counter.findCustomer(request.pathParams().get(0));
+        if (Boolean.parseBoolean(request.params().get("active"))) {
+            return ok(rentalRepo.findActiveByCustomer(customer.getId()).stream().map(GameRentalServer::json).toList());
+        }
+        Page<Rental> page = rentalRepo.findPageByCustomer(customer.getId(), request.params().get("cursor"),
+                request.getInt("limit", DEFAULT_PAGE_SIZE));
+        return ok(json(page, page.getItems().stream().map(GameRentalServer::json).toList()));
+    }
+
+    private Response availableGames(Request request) {
+        GamePlatform platform = GamePlatform.valueOf(request.require("platform").toUpperCase());
+        GameType type = GameType.valueOf(request.params().getOrDefault("type", GameType.RENTAL.name()).toUpperCase());
+        String maxPrice = request.params().get("maxPrice");
+        int limit = Math.min(request.getInt("limit", 100), MAX_LISTED_GAMES);
+        List<Game> games = counter.availableGames(platform, type,
+                maxPrice == null ? Double.MAX_VALUE : Double.parseDouble(maxPrice), limit);
+        return ok(games.stream().map(GameRentalServer::json).toList());
+    }
+
+    private Response rent(Request request) {
+        Customer customer = counter.findCustomer(request.require("customerId"));
+        CounterService.Checkout<Rental> checkout = counter.rent(customer, request.require("gameId"),
+                request.getInt("days", 1), request.getInt("points", 0));
+        Map<String, Object> body = json(checkout);
+        body.put("rental", json(checkout.item()));
+        return new Response(201, body);
+    }
+
+    private Response buy(Request request) {
+        Customer customer = counter.findCustomer(request.require("customerId"));
+        CounterService.Checkout<Sale> checkout = counter.buy(customer, request.require("gameId"),
+                request.getInt("points", 0));
+        Map<String, Object> body = json(checkout);
+        body.put("sale", json(checkout.item()));
+        return new Response(201, body);
+    }
+
+    private Response returnRental(Request request) {
+        CounterService.Return result = counter.returnRental(request.require("rentalId"));
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("rental", json(result.rental()));
+        body.put("onTime", result.onTime());
+        body.put("bonusPoints", result.bonusPoints());
+        return ok(body);
+    }
+
+    private Response revenue(Request request) {
+        CounterService.Revenue revenue = counter.revenue();
+        Map<String, Object> byPlatform = new LinkedHashMap<>();
+        revenue.byPlatform().forEach((platform, amount) -> byPlatform.put(platform.name(), amount));
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("salesRevenue", revenue.sales().getTotalRevenue());
+        body.put("averageSale", revenue.sales().getAveragePrice());
+        body.put("totalSales", revenue.sales().getTotalSales());
+        body.put("totalRentals", revenue.rentals().getTotalRentals());
+        body.put("activeRentals", revenue.rentals().getActiveRentals());
+        body.put("overdueRentals", revenue.rentals().getOverdueRentals());
+        body.put("revenueByPlatform", byPlatform);
+        return ok(body);
+    }
+
+    // --- JSON ---
+
+    private static Map<String, Object> json(CounterService.Checkout<?> checkout) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("price", checkout.price());
+        json.put("pointsUsed", checkout.pointsUsed());
+        json.put("pointsEarned", checkout.pointsEarned());
+        json.put("loyaltyPoints", checkout.customer().getLoyaltyPoints());
+        return json;
+    }
+
+    private static Map<String, Object> json(Customer customer) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("id", customer.getId());
+        json.put("name", customer.getName());
+        json.put("contactNumber", customer.getContactNumber());
+        json.put("loyaltyPoints", customer.getLoyaltyPoints());
+        return json;
+    }
+
+    private static Map<String, Object> json(Game game) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("id", game.getId());
+        json.put("title", game.getTitle());
+        json.put("genre", game.getGenre());
+        json.put("platform", game.getPlatform().name());
+        json.put("type", game.getType().name());
+        json.put("price", game.getPrice());
+        json.put("available", game.isAvailable());
+        return json;
+    }
+
+    private static Map<String, Object> json(Rental rental) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("id", rental.getRentalId());
+        json.put("customerId", rental.getCustomer().getId());
+        json.put("gameId", rental.getGame().getId());
+        json.put("title", rental.getGame().getTitle());
+        json.put("platform", rental.getPlatform().name());
+        json.put("rentalDate", rental.getRentalDate().toString());
+        json.put("returnDate", rental.getReturnDate().toString());
+        json.put("returned", rental.isReturned());
+        return json;
+    }
+
+    private static Map<String, Object> json(Sale sale) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("id", sale.getId());
+        json.put("customerId", sale.getCustomer().getId());
+        json.put("gameId", sale.getGame().getId());
+        json.put("title", sale.getGame().getTitle());
+        json.put("date", sale.getDate().toString());
+        json.put("price", sale.getPrice());
+        return json;
+    }
+
+    private static Map<String, Object> json(Page<?> page, List<?> items) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("items", items);
+        json.put("nextCursor", page.getNextCursor());
+        return json;
+    }
+
+    /**
+     * Writes maps, collections, strings, numbers, booleans and null; anything else as its string form.
+     * NaN and infinities, which JSON cannot represent, are written as null.
+     */
+    private static String toJson(Object value) {
+        StringBuilder out = new StringBuilder();
+        writeJson(out, value);
+        return out.toString();
+    }
+
+    private static void writeJson(StringBuilder out, Object value) {
+        if (value == null
+                || value instanceof Double d && !Double.isFinite(d)
+                || value instanceof Float f && !Float.isFinite(f)) {
+            out.append("null");
+        } else if (value instanceof Number || value instanceof Boolean) {
+            out.append(value);
+        } else if (value instanceof Map<?, ?> map) {
+            out.append('{');
+            boolean first = true;
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                if (!first) {
+                    out.append(',');
+                }
+                first = false;
+                writeString(out, String.valueOf(entry.getKey()));
+                out.append(':');
+                writeJson(out, entry.getValue());
+            }
+            out.append('}');
+        } else if (value instanceof Collection<?> collection) {
+            out.append('[');
+            boolean first = true;
+            for (Object item : collection) {
+                if (!first) {
+                    out.append(',');
+                }
+                first = false;
+                writeJson(out, item);
+            }
+            out.append(']');
+        } else {
+            writeString(out, value.toString());
+        }
+    }
+
+    private static void writeString(StringBuilder out, String value) {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> out.append("\\\"");
+                case '\\' -> out.append("\\\\");
+                case '\n' -> out.append("\\n");
+                case '\r' -> out.append("\\r");
+                case '\t' -> out.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+                }
+            }
+        }
+        out.append('"');
+    }
+}
@@ -0,0 +1,55 @@
+package fr.efrei;
+
+import fr.efrei.util.SchemaMigrations;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * An in-memory H2 database in MySQL mode, created once per test run from database_setup.sql and brought up to
+ * date by SchemaMigrations. Must be set up before the first repository or DatabaseConnection is used, since
+ * they read the connection settings only once.
+ */
+public final class TestDatabase {
+    private static final String URL = "jdbc:h2:mem:game-rental;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+
+    private static boolean ready;
+
+    private TestDatabase() {}
+
+    public static synchronized void setUp() {
+        if (ready) {
+            return;
+        }
+        System.setProperty("DB_URL", URL);
+        System.setProperty("DB_USERNAME", "sa");
+        System.setProperty("DB_PASSWORD", "");
+        System.setProperty("REPOSITORY_BACKEND", "mysql");
+
+        try (Connection conn = DriverManager.getConnection(URL, "sa", "");
+             Statement stmt = conn.createStatement()) {
+            String script = Files.readString(Path.of("database_setup.sql"), StandardCharsets.UTF_8)
+                    .replaceAll("(?m)^--.*$", "");
+            for (String sql : script.split(";")) {
+                sql = sql.strip();
+                // The database is the H2 one; the MySQL session and inspection commands do not apply
+                if (!sql.isEmpty() && !sql.matches("(?is)(CREATE DATABASE|USE|SHOW|DESCRIBE)\\b.*")) {
+                    stmt.execute(sql);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Cannot create the test database", e);
+        }
+        SchemaMigrations.migrate();
+        ready = true;
+    }
+}
@@ -0,0 +1,100 @@
+package fr.efrei.repository;
+
+import fr.efrei.TestDatabase;
+import fr.efrei.domain.Game;
+import fr.efrei.domain.GamePlatform;
+import fr.efrei.domain.GameType;
+import fr.efrei.factory.GameFactory;
+import fr.efrei.util.DatabaseConnection;
+import fr.efrei.util.Helper;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** Through GameRepository.saveAll; the rejected rows are games whose id is already taken. **/
+class BatchWriterTest {
+    private static GameRepository games;
+
+    @BeforeAll
+    static void setUp() {
+        TestDatabase.setUp();
+        games = GameRepository.getInstance();
+    }
+
+    private static Game newGame(String id) {
+        return GameFactory.create(id, "Batch Test", "Puzzle", GamePlatform.XBOX_ONE, true, GameType.SALE, 20.0);
+    }
+
+    /** Seven new games, the third and the sixth reusing the id of an existing one. **/
+    private static List<Game> gamesWithDuplicates(String taken) {
+        List<Game> batch = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            batch.add(newGame(i == 2 || i == 5 ? taken : Helper.IdGenerator.uuid()));
+        }
+        return batch;
+    }
+
+    private static String existingGame() {
+        Game game = games.save(newGame(Helper.IdGenerator.uuid()));
+        assertNotNull(game);
+        return game.getId();
+    }
+
+    @Test
+    void failedChunksAreReplayedRowByRow() {
+        String taken = existingGame();
+        List<Game> batch = gamesWithDuplicates(taken);
+
+        BatchResult<Game> result = games.saveAll(batch, 3);
+
+        assertEquals(5, result.getSavedCount());
+        assertEquals(2, result.getFailedCount());
+        assertSame(batch.get(2), result.getFailures().get(0).getEntity());
+        assertSame(batch.get(5), result.getFailures().get(1).getEntity());
+        for (Game game : result.getSaved()) {
+            assertNotNull(games.findById(game.getId()));
+        }
+    }
+
+    @Test
+    void rowsAreWrittenInTheCallersTransaction() throws SQLException {
+        String taken = existingGame();
+        List<Game> batch = gamesWithDuplicates(taken);
+
+        BatchResult<Game> result = DatabaseConnection.getInstance()
+                .inTransaction(() -> games.saveAll(batch, 3));
+
+        // The rejected rows were only rolled back to a savepoint, so the rest still committed
+        assertEquals(5, result.getSavedCount());
+        for (Game game : result.getSaved()) {
+            assertNotNull(games.findById(game.getId()));
+        }
+    }
+
+    @Test
+    void callerRollbackUndoesTheWholeBatch() {
+        List<Game> batch = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            batch.add(newGame(Helper.IdGenerator.uuid()));
+        }
+
+        assertThrows(SQLException.class, () -> DatabaseConnection.getInstance().inTransaction(() -> {
+            assertTrue(games.saveAll(batch, 3).isSuccessful());
+            throw new SQLException("import cancelled");
+        }));
+
+        for (Game game : batch) {
+            assertNull(games.findById(game.getId()));
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package fr.efrei.repository;
+
+import fr.efrei.domain.Game;
+import fr.efrei.domain.GamePlatform;
+import fr.efrei.domain.GameType;
+import fr.efrei.factory.GameFactory;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CatalogIndexTest {
+
+    private static Game game(String id, GamePlatform platform, GameType type, boolean available, double price) {
+        return GameFactory.create(id, "Index Test", "Action", platform, available, type, price);
+    }
+
+    private static List<String> available(CatalogIndex index, GamePlatform platform, GameType type, double maxPrice) {
+        String[] out = new String[index.size()];
+        int found = index.findAvailable(platform, type, maxPrice, out);
+        return Arrays.asList(out).subList(0, found);
+    }
+
+    @Test
+    void findsOnlyAvailableGamesOfThePlatformTypeAndPrice() {
+        CatalogIndex index = new CatalogIndex(0);
+        index.put(game("a", GamePlatform.PS5, GameType.RENTAL, true, 4.99));
+        index.put(game("b", GamePlatform.PS5, GameType.RENTAL, true, 5.00));
+        index.put(game("c", GamePlatform.PS5, GameType.RENTAL, false, 1.00));
+        index.put(game("d", GamePlatform.PS5, GameType.SALE, true, 1.00));
+        index.put(game("e", GamePlatform.PS4, GameType.RENTAL, true, 1.00));
+
+        // Compared in cents, so 4.99 is not lost to rounding
+        assertEquals(List.of("a"), available(index, GamePlatform.PS5, GameType.RENTAL, 4.99));
+        assertEquals(List.of("a", "b"), available(index, GamePlatform.PS5, GameType.RENTAL, 5.00));
+        assertEquals(2, index.countAvailable(GamePlatform.PS5, GameType.RENTAL, 100));
+        assertEquals(0, index.countAvailable(GamePlatform.PC_ANY, GameType.RENTAL, 100));
+    }
+
+    @Test
+    void availabilityChangesAreSeenByTheNextQuery() {
+        CatalogIndex index = new CatalogIndex(0);
+        index.put(game("a", GamePlatform.PS5, GameType.RENTAL, true, 10));
+        index.put(game("b", GamePlatform.PS5, GameType.RENTAL, true, 10));
+
+        assertTrue(index.setAvailable("a", false));
+        assertEquals(List.of("b"), available(index, GamePlatform.PS5, GameType.RENTAL, 10));
+        assertTrue(index.setAvailable("a", true));
+        assertEquals(2, index.countAvailable(GamePlatform.PS5, GameType.RENTAL, 10));
+        assertFalse(index.setAvailable("unknown", false));
+    }
+
+    @Test
+    void putReplacesAndRemovedSlotsAreReused() {
+        CatalogIndex index = new CatalogIndex(0);
+        index.put(game("a", GamePlatform.PS5, GameType.RENTAL, true, 10));
+        index.put(game("a", GamePlatform.PS4, GameType.SALE, true, 10));
+
+        assertEquals(1, index.size());
+        assertEquals(0, index.countAvailable(GamePlatform.PS5, GameType.RENTAL, 10));
+        assertEquals(List.of("a"), available(index, GamePlatform.PS4, GameType.SALE, 10));
+
+        index.remove("a");
+        assertEquals(0, index.size());
+        assertEquals(0, index.countAvailable(GamePlatform.PS4, GameType.SALE, 10));
+        index.put(game("b", GamePlatform.PS4, GameType.SALE, true, 10));
+        assertEquals(List.of("b"), available(index, GamePlatform.PS4, GameType.SALE, 10));
+    }
+
+    @Test
+    void growsPastItsInitialCapacity() {
+        CatalogIndex index = new CatalogIndex(64);
+        for (int i = 0; i < 1_000; i++) {
+            index.put(game("g" + i, GamePlatform.XBOX_ONE, GameType.RENTAL, i % 3 != 0, i % 50));
+        }
+
+        assertEquals(1_000, index.size());
+        assertEquals(666, index.countAvailable(GamePlatform.XBOX_ONE, GameType.RENTAL, 100));
+        // Stops once the array is full
+        String[] out = new String[10];
+        assertEquals(10, index.findAvailable(GamePlatform.XBOX_ONE, GameType.RENTAL, 100, out));
+        assertEquals("g1", out[0]);
+    }
+}
@@ -0,0 +1,190 @@
+package fr.efrei.repository;
+
+import fr.efrei.TestDatabase;
+import fr.efrei.domain.Customer;
+import fr.efrei.domain.PointsAccrual;
+import fr.efrei.factory.CustomerFactory;
+import fr.efrei.util.DatabaseConnection;
+import fr.efrei.util.Helper;
+import fr.efrei.util.PasswordHasher;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CustomerRepositoryTest {
+    private static CustomerRepository customers;
+
+    @BeforeAll
+    static void setUp() {
+        TestDatabase.setUp();
+        customers = CustomerRepository.getInstance();
+    }
+
+    private static Customer newCustomer(String name) {
+        String id = Helper.IdGenerator.uuid();
+        return customers.save(CustomerFactory.create(id, name, "07" + id.hashCode(), "secret"));
+    }
+
+    /** Number of ledger rows of the customer and the sum of their deltas. **/
+    private static int[] ledger(String customerId) throws SQLException {
+        String sql = "SELECT COUNT(*), COALESCE(SUM(delta), 0) FROM loyalty_ledger WHERE customer_id = ?";
+        try (Connection conn = DatabaseConnection.getInstance().getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setObject(1, IdColumns.toColumn(customerId));
+            try (ResultSet rs = stmt.executeQuery()) {
+                rs.next();
+                return new int[] { rs.getInt(1), rs.getInt(2) };
+            }
+        }
+    }
+
+    @Test
+    void pointChangesAreRecordedAsDeltas() throws SQLException {
+        String id = newCustomer("Ledger Test").getId();
+
+        assertTrue(customers.addPoints(id, 300, "rental"));
+        assertTrue(customers.redeemPoints(id, 100, "discount"));
+        assertFalse(customers.redeemPoints(id, 500, "over the balance"));
+
+        assertEquals(200, customers.findById(id).getLoyaltyPoints());
+        assertEquals(2, ledger(id)[0]);
+        assertEquals(200, ledger(id)[1]);
+    }
+
+    @Test
+    void concurrentChangesLeaveNoStaleCachedBalance() throws Exception {
+        String id = newCustomer("Concurrent Test").getId();
+        int tills = 8;
+        int changes = 50;
+
+        ExecutorService executor = Executors.newFixedThreadPool(tills);
+        try {
+            List<Future<?>> runs = new ArrayList<>();
+            for (int t = 0; t < tills; t++) {
+                runs.add(executor.submit(() -> {
+                    for (int i = 0; i < changes; i++) {
+                        assertTrue(customers.addPoints(id, 1, "rental"));
+                        // Reads in between put the customer back in the cache
+                        customers.findById(id);
+                    }
+                }));
+            }
+            for (Future<?> run : runs) {
+                run.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(tills * changes, ledger(id)[1]);
+        assertEquals(tills * changes, customers.findById(id).getLoyaltyPoints());
+    }
+
+    @Test
+    void updateKeepsTheStoredBalance() {
+        Customer stale = newCustomer("Update Test");
+        assertTrue(customers.addPoints(stale.getId(), 50, "rental"));
+
+        Customer renamed = new Customer.Builder()
+                .setId(stale.getId())
+                .setName("Update Test Renamed")
+                .setContactNumber(stale.getContactNumber())
+                .setPassword(stale.getPassword())
+                .setLoyaltyPoints(stale.getLoyaltyPoints())
+                .build();
+        assertTrue(customers.update(renamed));
+
+        assertEquals(50, customers.findById(stale.getId()).getLoyaltyPoints());
+        assertEquals("Update Test Renamed", customers.findById(stale.getId()).getName());
+    }
+
+    @Test
+    void plainTextPasswordIsHashedAtLogin() throws SQLException {
+        String id = Helper.IdGenerator.uuid();
+        String phone = "07" + id.hashCode();
+        // Written as before hashing, bypassing save()
+        String sql = "INSERT INTO customers (id, name, contact_number, password, loyalty_points) VALUES (?, ?, ?, ?, 0)";
+        try (Connection conn = DatabaseConnection.getInstance().getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setObject(1, IdColumns.toColumn(id));
+            stmt.setString(2, "Plain Text Test");
+            stmt.setString(3, phone);
+            stmt.setString(4, "secret");
+            stmt.executeUpdate();
+        }
+
+        assertNull(customers.authenticate(phone, "wrong"));
+        assertEquals("secret", customers.findById(id).getPassword());
+
+        assertEquals(id, customers.authenticate(phone, "secret").getId());
+        String stored = customers.findById(id).getPassword();
+        assertTrue(PasswordHasher.isHashed(stored));
+        assertEquals(id, customers.authenticate(phone, "secret").getId());
+        assertEquals(stored, customers.findById(id).getPassword());
+    }
+
+    @Test
+    void replayedBatchIsAppliedOnce() throws SQLException {
+        String id = newCustomer("Batch Test").getId();
+        String batchId = Helper.IdGenerator.uuid();
+        List<PointsAccrual> accruals = List.of(new PointsAccrual(id, 10, "rental"), new PointsAccrual(id, 15, "sale"));
+
+        assertTrue(customers.addPointsBatch(batchId, accruals));
+        assertTrue(customers.addPointsBatch(batchId, accruals));
+
+        assertEquals(25, customers.findById(id).getLoyaltyPoints());
+        assertEquals(2, ledger(id)[0]);
+        assertEquals(25, ledger(id)[1]);
+    }
+
+    @Test
+    void pagesWalkEveryCustomerOnce() {
+        // Same name on purpose: the id breaks the tie, so the cursor must carry both
+        for (int i = 0; i < 7; i++) {
+            newCustomer("Keyset Twin");
+        }
+        int total = customers.findAll().size();
+
+        List<Customer> walked = new ArrayList<>();
+        String cursor = null;
+        do {
+            Page<Customer> page = customers.findPage(cursor, 3);
+            assertTrue(page.getItems().size() <= 3);
+            walked.addAll(page.getItems());
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        Set<String> ids = new HashSet<>();
+        for (int i = 0; i < walked.size(); i++) {
+            assertTrue(ids.add(walked.get(i).getId()), "customer listed twice");
+            if (i > 0) {
+                assertTrue(walked.get(i - 1).getName().compareTo(walked.get(i).getName()) <= 0);
+            }
+        }
+        assertEquals(total, walked.size());
+    }
+
+    @Test
+    void invalidCursorIsRejected() {
+        assertNull(customers.findPage(null, 1000).getNextCursor());
+        assertThrows(IllegalArgumentException.class, () -> customers.findPage("not a cursor", 3));
+        assertThrows(IllegalArgumentException.class, () -> customers.findPage(null, 0));
+    }
+}
@@ -0,0 +1,151 @@
+package fr.efrei.repository;
+
+import fr.efrei.TestDatabase;
+import fr.efrei.domain.Game;
+import fr.efrei.domain.GamePlatform;
+import fr.efrei.domain.GameType;
+import fr.efrei.factory.GameFactory;
+import fr.efrei.util.DatabaseConnection;
+import fr.efrei.util.Helper;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GameRepositoryTest {
+    private static GameRepository games;
+
+    @BeforeAll
+    static void setUp() {
+        TestDatabase.setUp();
+        games = GameRepository.getInstance();
+    }
+
+    private static Game availableGame() {
+        Game game = games.save(GameFactory.create(Helper.IdGenerator.uuid(), "Reserve Test", "Action",
+                GamePlatform.XBOX_ONE, true, GameType.RENTAL, 10.0));
+        assertNotNull(game);
+        return games.findById(game.getId());
+    }
+
+    @Test
+    void reservesOnlyOnceWithTheSameVersion() {
+        Game game = availableGame();
+
+        assertEquals(Reservation.RESERVED, games.tryReserve(game.getId(), game.getVersion()));
+        assertEquals(Reservation.UNAVAILABLE, games.tryReserve(game.getId(), game.getVersion()));
+        assertFalse(games.findById(game.getId()).isAvailable());
+    }
+
+    @Test
+    void staleVersionConflictsUntilReloaded() {
+        Game stale = availableGame();
+        assertEquals(Reservation.RESERVED, games.tryReserve(stale.getId(), stale.getVersion()));
+        assertTrue(games.release(stale.getId()));
+
+        // Available again, but the release bumped the version the stale copy was read at
+        assertEquals(Reservation.CONFLICT, games.tryReserve(stale.getId(), stale.getVersion()));
+
+        Game current = games.findById(stale.getId());
+        assertTrue(current.getVersion() > stale.getVersion());
+        assertEquals(Reservation.RESERVED, games.tryReserve(current.getId(), current.getVersion()));
+    }
+
+    @Test
+    void databaseErrorIsNotAConflict() throws SQLException {
+        Game game = availableGame();
+        try {
+            execute("ALTER TABLE games RENAME TO games_away");
+            assertEquals(Reservation.UNAVAILABLE, games.tryReserve(game.getId(), game.getVersion()));
+        } finally {
+            execute("ALTER TABLE games_away RENAME TO games");
+        }
+        assertEquals(Reservation.RESERVED, games.tryReserve(game.getId(), game.getVersion()));
+    }
+
+    private static void execute(String sql) throws SQLException {
+        try (Connection conn = DatabaseConnection.getInstance().getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.execute(sql);
+        }
+    }
+
+    @Test
+    void unknownGameIsUnavailable() {
+        assertEquals(Reservation.UNAVAILABLE, games.tryReserve(Helper.IdGenerator.uuid(), 0));
+    }
+
+    @Test
+    void updateIsSeenByTheNextRead() {
+        Game game = availableGame();
+        // Returned games are copies: changing one leaves the cached game alone
+        game.setAvailable(false);
+        assertTrue(games.findById(game.getId()).isAvailable());
+
+        assertTrue(games.update(changed(game, GamePlatform.XBOX_ONE, 99.0)));
+        Game reloaded = games.findById(game.getId());
+        assertEquals(99.0, reloaded.getPrice(), 0.001);
+        assertEquals(game.getVersion() + 1, reloaded.getVersion());
+    }
+
+    @Test
+    void platformListingFollowsUpdatesAndDeletes() {
+        Game game = availableGame();
+        assertTrue(ids(GamePlatform.XBOX_ONE).contains(game.getId()));
+        assertFalse(ids(GamePlatform.PS5).contains(game.getId()));
+
+        assertTrue(games.update(changed(game, GamePlatform.PS5, game.getPrice())));
+        assertFalse(ids(GamePlatform.XBOX_ONE).contains(game.getId()));
+        assertTrue(ids(GamePlatform.PS5).contains(game.getId()));
+
+        assertTrue(games.delete(game.getId()));
+        assertFalse(ids(GamePlatform.PS5).contains(game.getId()));
+        assertNull(games.findById(game.getId()));
+    }
+
+    @Test
+    void availabilityQueriesFollowReservationsAndReleases() {
+        Game game = availableGame();
+        int before = games.countAvailable(GamePlatform.XBOX_ONE, GameType.RENTAL, 10.0);
+        assertTrue(availableIds().contains(game.getId()));
+
+        assertEquals(Reservation.RESERVED, games.tryReserve(game.getId(), game.getVersion()));
+        assertEquals(before - 1, games.countAvailable(GamePlatform.XBOX_ONE, GameType.RENTAL, 10.0));
+        assertFalse(availableIds().contains(game.getId()));
+
+        assertTrue(games.release(game.getId()));
+        assertEquals(before, games.countAvailable(GamePlatform.XBOX_ONE, GameType.RENTAL, 10.0));
+        assertTrue(availableIds().contains(game.getId()));
+    }
+
+    private static List<String> availableIds() {
+        return games.findAvailable(GamePlatform.XBOX_ONE, GameType.RENTAL, 10.0, Integer.MAX_VALUE).stream()
+                .map(Game::getId).toList();
+    }
+
+    private static Game changed(Game game, GamePlatform platform, double price) {
+        return new Game.Builder()
+                .setId(game.getId())
+                .setTitle(game.getTitle())
+                .setGenre(game.getGenre())
+                .setPlatform(platform)
+                .setAvailable(true)
+                .setType(game.getType())
+                .setPrice(price)
+                .setVersion(game.getVersion())
+                .build();
+    }
+
+    private static List<String> ids(GamePlatform platform) {
+        return games.findByPlatformAndType(platform, GameType.RENTAL).stream().map(Game::getId).toList();
+    }
+}
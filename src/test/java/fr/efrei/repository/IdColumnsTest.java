@@ -0,0 +1,26 @@
+package fr.efrei.repository;
+
+import fr.efrei.util.IdStrategy;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class IdColumnsTest {
+
+    @Test
+    void uuidIsReadBackUnchanged() {
+        String id = IdStrategy.timeOrderedUuid().toString();
+        assertEquals(id, IdColumns.fromBytes(IdColumns.toBytes(id)));
+    }
+
+    @Test
+    void otherIdIsReadBackAsAUuidWithTheSameBytes() {
+        byte[] stored = IdColumns.toBytes("game-1");
+        String read = IdColumns.fromBytes(stored);
+
+        // A cursor carries the id as read, which must find the same row again
+        assertArrayEquals(stored, IdColumns.toBytes(read));
+        assertEquals(read, IdColumns.fromBytes(IdColumns.toBytes(read)));
+    }
+}
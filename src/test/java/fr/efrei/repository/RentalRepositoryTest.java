@@ -0,0 +1,97 @@
+package fr.efrei.repository;
+
+import fr.efrei.TestDatabase;
+import fr.efrei.domain.Customer;
+import fr.efrei.domain.Game;
+import fr.efrei.domain.GamePlatform;
+import fr.efrei.domain.GameType;
+import fr.efrei.domain.Rental;
+import fr.efrei.factory.CustomerFactory;
+import fr.efrei.factory.GameFactory;
+import fr.efrei.util.Helper;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RentalRepositoryTest {
+    private static RentalRepository rentals;
+    private static Customer customer;
+    private static Game game;
+
+    @BeforeAll
+    static void setUp() {
+        TestDatabase.setUp();
+        rentals = RentalRepository.getInstance();
+        String id = Helper.IdGenerator.uuid();
+        customer = CustomerRepository.getInstance().save(
+                CustomerFactory.create(id, "Rental Pages", "09" + id.hashCode(), "secret"));
+        game = GameRepository.getInstance().save(GameFactory.create(Helper.IdGenerator.uuid(), "Rental Pages",
+                "Action", GamePlatform.XBOX_ONE, true, GameType.RENTAL, 5.0));
+        assertNotNull(customer);
+        assertNotNull(game);
+
+        // Three rentals a day over four days, so pages end in the middle of a date
+        for (int day = 0; day < 4; day++) {
+            for (int i = 0; i < 3; i++) {
+                LocalDate date = LocalDate.of(2024, 3, 1 + day);
+                assertNotNull(rentals.save(new Rental.Builder()
+                        .setRentalId(Helper.IdGenerator.uuid())
+                        .setCustomer(customer)
+                        .setGame(game)
+                        .setPlatform(game.getPlatform())
+                        .setRentalDate(date)
+                        .setReturnDate(date.plusDays(7))
+                        .setReturned(true)
+                        .build()));
+            }
+        }
+    }
+
+    private static List<Rental> walk(String customerId, int limit) {
+        List<Rental> walked = new ArrayList<>();
+        String cursor = null;
+        do {
+            Page<Rental> page = customerId == null
+                    ? rentals.findPage(cursor, limit)
+                    : rentals.findPageByCustomer(customerId, cursor, limit);
+            walked.addAll(page.getItems());
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        return walked;
+    }
+
+    private static void assertNewestFirst(List<Rental> walked) {
+        for (int i = 1; i < walked.size(); i++) {
+            Rental previous = walked.get(i - 1);
+            Rental next = walked.get(i);
+            assertTrue(!next.getRentalDate().isAfter(previous.getRentalDate()));
+            assertTrue(!next.getRentalDate().equals(previous.getRentalDate())
+                    || next.getRentalId().compareTo(previous.getRentalId()) < 0);
+        }
+    }
+
+    @Test
+    void customerPagesWalkEveryRentalOnce() {
+        List<Rental> walked = walk(customer.getId(), 5);
+
+        assertEquals(12, walked.size());
+        assertEquals(12, walked.stream().map(Rental::getRentalId).distinct().count());
+        assertNewestFirst(walked);
+    }
+
+    @Test
+    void pagesWalkEveryRentalOnce() {
+        List<Rental> walked = walk(null, 4);
+
+        assertEquals(rentals.findAll().size(), walked.size());
+        assertEquals(walked.size(), walked.stream().map(Rental::getRentalId).distinct().count());
+        assertNewestFirst(walked);
+    }
+}
@@ -0,0 +1,158 @@
+package fr.efrei.service;
+
+import fr.efrei.TestDatabase;
+import fr.efrei.domain.Customer;
+import fr.efrei.domain.PointsAccrual;
+import fr.efrei.factory.CustomerFactory;
+import fr.efrei.repository.ICustomerRepository;
+import fr.efrei.repository.Repositories;
+import fr.efrei.util.DatabaseConnection;
+import fr.efrei.util.Helper;
+import fr.efrei.util.IdStrategy;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The buffer is a singleton that replays its journal directory when created, so the journal a crash would
+ * have left is written before the first getInstance().
+ */
+class LoyaltyAccrualBufferTest {
+    private static ICustomerRepository customers;
+    private static Path directory;
+    private static Path leftover;
+    private static String recovered;
+    private static LoyaltyAccrualBuffer buffer;
+
+    @BeforeAll
+    static void setUp() throws IOException {
+        TestDatabase.setUp();
+        customers = Repositories.customers();
+        recovered = newCustomer();
+
+        directory = Files.createTempDirectory("loyalty-journal");
+        System.setProperty("LOYALTY_JOURNAL_DIR", directory.toString());
+        System.setProperty("LOYALTY_FLUSH_INTERVAL_MS", "60000");
+        System.setProperty("LOYALTY_BUFFER_ENABLED", "true");
+
+        // Two acknowledged accruals, one of a checkout that rolled back, then a line cut short by the crash
+        leftover = directory.resolve(IdStrategy.timeOrderedUuid() + ".journal");
+        Files.writeString(leftover, recovered + "\t10\trental\n" + recovered + "\t7\trolled back\n"
+                + recovered + "\t5\tsale\n" + "-\t" + recovered + "\t7\trolled back\n" + recovered + "\t99",
+                StandardCharsets.UTF_8);
+
+        buffer = LoyaltyAccrualBuffer.getInstance();
+        assertNotNull(buffer);
+    }
+
+    @AfterAll
+    static void tearDown() {
+        buffer.close();
+    }
+
+    private static String newCustomer() {
+        String id = Helper.IdGenerator.uuid();
+        Customer customer = customers.save(CustomerFactory.create(id, "Buffer Test", "08" + id.hashCode(), "secret"));
+        return customer.getId();
+    }
+
+    private static String journalContent() throws IOException {
+        StringBuilder content = new StringBuilder();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path path : files.filter(file -> file.toString().endsWith(".journal")).toList()) {
+                content.append(Files.readString(path, StandardCharsets.UTF_8));
+            }
+        }
+        return content.toString();
+    }
+
+    private static long journals() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.toString().endsWith(".journal")).count();
+        }
+    }
+
+    @Test
+    void replaysTheJournalLeftByACrash() {
+        assertEquals(15, customers.findById(recovered).getLoyaltyPoints());
+        assertFalse(Files.exists(leftover));
+    }
+
+    @Test
+    void appliesBufferedAccrualsOnFlush() throws IOException {
+        String id = newCustomer();
+        assertTrue(buffer.accrue(id, 20, "rental"));
+        assertTrue(buffer.accrue(id, 30, "sale"));
+
+        assertEquals(0, customers.findById(id).getLoyaltyPoints());
+        assertEquals(50, buffer.pendingPoints(id));
+        assertEquals(50, CounterService.getInstance().findCustomer(id).getLoyaltyPoints());
+
+        assertTrue(buffer.flush());
+        assertEquals(50, customers.findById(id).getLoyaltyPoints());
+        assertEquals(0, buffer.pendingPoints(id));
+        // Only the segment taking the next accruals is left
+        assertEquals(1, journals());
+    }
+
+    @Test
+    void checkoutPointsAreJournaledWithTheCommit() throws Exception {
+        String id = newCustomer();
+        String reason = "Sale " + Helper.IdGenerator.uuid();
+
+        String result = buffer.inTransaction(List.of(new PointsAccrual(id, 40, reason)), () -> "committed");
+
+        assertEquals("committed", result);
+        assertTrue(journalContent().contains(id + "\t40\t" + reason + "\n"));
+        assertEquals(40, buffer.pendingPoints(id));
+        assertTrue(buffer.flush());
+        assertEquals(40, customers.findById(id).getLoyaltyPoints());
+    }
+
+    @Test
+    void checkoutFailingToCommitEarnsNothing() throws Exception {
+        String id = newCustomer();
+        String reason = "Rental " + Helper.IdGenerator.uuid();
+
+        // The work succeeds, so the points are journaled, then the commit fails: the session is killed under it
+        assertThrows(SQLException.class, () -> buffer.inTransaction(List.of(new PointsAccrual(id, 40, reason)), () -> {
+            try (Connection conn = DatabaseConnection.getInstance().getConnection();
+                 Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT SESSION_ID()")) {
+                rs.next();
+                abortSession(rs.getInt(1));
+            }
+            return "committed";
+        }));
+
+        assertEquals(0, buffer.pendingPoints(id));
+        assertTrue(journalContent().contains("-\t" + id + "\t40\t" + reason + "\n"));
+        assertTrue(buffer.flush());
+        assertEquals(0, customers.findById(id).getLoyaltyPoints());
+    }
+
+    private static void abortSession(int sessionId) throws SQLException {
+        try (Connection conn = DriverManager.getConnection(System.getProperty("DB_URL"), "sa", "");
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("CALL ABORT_SESSION(" + sessionId + ")");
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package fr.efrei.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** Each test builds its own small pool on an in-memory H2 database; none of them needs the schema. **/
+class ConnectionPoolTest {
+    private static final String URL = "jdbc:h2:mem:connection-pool;DB_CLOSE_DELAY=-1";
+
+    private static ConnectionPool.Builder pool() {
+        return new ConnectionPool.Builder()
+                .setUrl(URL)
+                .setUsername("sa")
+                .setPassword("")
+                .setMinSize(0)
+                .setMaxSize(2)
+                .setBorrowTimeoutMillis(200);
+    }
+
+    @Test
+    void preparedStatementsAreReusedPerConnection() throws SQLException {
+        ConnectionPool pool = pool().setMaxSize(1).build();
+        try {
+            for (int i = 0; i < 3; i++) {
+                try (Connection conn = pool.getConnection();
+                     PreparedStatement stmt = conn.prepareStatement("SELECT ?")) {
+                    stmt.setInt(1, i);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        assertTrue(rs.next());
+                        assertEquals(i, rs.getInt(1));
+                    }
+                }
+            }
+            assertEquals(1, pool.getStats().getStatementCacheMisses());
+            assertEquals(2, pool.getStats().getStatementCacheHits());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void resultSetLeftOpenIsClosedAtCheckin() throws SQLException {
+        ConnectionPool pool = pool().setMaxSize(1).build();
+        try (Connection conn = pool.getConnection()) {
+            PreparedStatement stmt = conn.prepareStatement("SELECT 1");
+            ResultSet forgotten = stmt.executeQuery();
+            stmt.close();
+            assertTrue(forgotten.isClosed());
+
+            try (PreparedStatement again = conn.prepareStatement("SELECT 1");
+                 ResultSet rs = again.executeQuery()) {
+                assertTrue(rs.next());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void statementSettingsAreResetAtCheckin() throws SQLException {
+        ConnectionPool pool = pool().setMaxSize(1).build();
+        try (Connection conn = pool.getConnection()) {
+            int maxRows;
+            int queryTimeout;
+            try (PreparedStatement stmt = conn.prepareStatement("SELECT 1")) {
+                maxRows = stmt.getMaxRows();
+                queryTimeout = stmt.getQueryTimeout();
+                stmt.setMaxRows(1);
+                stmt.setQueryTimeout(5);
+            }
+            try (PreparedStatement stmt = conn.prepareStatement("SELECT 1")) {
+                assertEquals(maxRows, stmt.getMaxRows());
+                assertEquals(queryTimeout, stmt.getQueryTimeout());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void statementInUseSurvivesEviction() throws SQLException {
+        ConnectionPool pool = pool().setMaxSize(1).setStatementCacheSize(2).build();
+        try (Connection conn = pool.getConnection()) {
+            PreparedStatement held = conn.prepareStatement("SELECT X FROM SYSTEM_RANGE(1, 10)");
+            try (ResultSet rs = held.executeQuery()) {
+                // Pushes the held statement out of a cache of two
+                for (int i = 0; i < 3; i++) {
+                    try (PreparedStatement other = conn.prepareStatement("SELECT " + i)) {
+                        other.executeQuery().close();
+                    }
+                }
+                int rows = 0;
+                while (rs.next()) {
+                    rows++;
+                }
+                assertEquals(10, rows);
+            }
+            assertFalse(held.isClosed());
+            held.close();
+            assertTrue(held.isClosed());
+            assertThrows(SQLException.class, held::executeQuery);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void exhaustedPoolTimesOut() throws SQLException {
+        ConnectionPool pool = pool().setMaxSize(1).build();
+        try {
+            try (Connection held = pool.getConnection()) {
+                assertFalse(held.isClosed());
+                assertThrows(SQLException.class, pool::getConnection);
+                assertEquals(1, pool.getStats().getTimeoutCount());
+            }
+            // Given back, so the next borrow gets it
+            try (Connection conn = pool.getConnection()) {
+                assertTrue(conn.isValid(1));
+            }
+            assertEquals(1, pool.getStats().getCreatedCount());
+        } finally {
+            pool.shutdown();
+        }
+        assertThrows(SQLException.class, pool::getConnection);
+    }
+
+    @Test
+    void brokenIdleConnectionIsReplaced() throws SQLException {
+        ConnectionPool pool = pool().setMaxSize(1).build();
+        try {
+            int session;
+            try (Connection conn = pool.getConnection();
+                 Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT SESSION_ID()")) {
+                rs.next();
+                session = rs.getInt(1);
+            }
+            // Killed by the server while idle in the pool
+            try (Connection admin = DriverManager.getConnection(URL, "sa", "");
+                 Statement stmt = admin.createStatement()) {
+                stmt.execute("CALL ABORT_SESSION(" + session + ")");
+            }
+
+            try (Connection conn = pool.getConnection()) {
+                assertTrue(conn.isValid(1));
+            }
+            assertEquals(1, pool.getStats().getInvalidCount());
+            assertEquals(2, pool.getStats().getCreatedCount());
+            assertEquals(1, pool.getStats().getTotal());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void connectionHeldTooLongIsReportedOnce() throws Exception {
+        ConnectionPool pool = pool().setLeakThresholdMillis(100).build();
+        try (Connection held = pool.getConnection()) {
+            assertFalse(held.isClosed());
+            // The housekeeper runs every second at the shortest
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (pool.getStats().getLeakCount() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+            assertEquals(1, pool.getStats().getLeakCount());
+            Thread.sleep(1_500);
+            assertEquals(1, pool.getStats().getLeakCount());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void uncommittedWorkIsRolledBackAtRelease() throws SQLException {
+        ConnectionPool pool = pool().setMaxSize(1).build();
+        try {
+            try (Connection conn = pool.getConnection();
+                 Statement stmt = conn.createStatement()) {
+                stmt.execute("CREATE TABLE IF NOT EXISTS pool_release (id INT)");
+                conn.setAutoCommit(false);
+                stmt.executeUpdate("INSERT INTO pool_release VALUES (1)");
+            }
+            try (Connection conn = pool.getConnection();
+                 Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM pool_release")) {
+                assertTrue(conn.getAutoCommit());
+                rs.next();
+                assertEquals(0, rs.getInt(1));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
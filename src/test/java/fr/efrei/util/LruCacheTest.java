@@ -0,0 +1,77 @@
+package fr.efrei.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LruCacheTest {
+
+    @Test
+    void evictsTheLeastRecentlyUsedEntry() {
+        LruCache<String, Integer> cache = new LruCache<>(2, 0);
+        cache.put("a", 1);
+        cache.put("b", 2);
+        // Reading "a" makes "b" the least recently used
+        assertEquals(1, cache.get("a"));
+        cache.put("c", 3);
+
+        assertNull(cache.get("b"));
+        assertEquals(1, cache.get("a"));
+        assertEquals(3, cache.get("c"));
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getStats().getEvictions());
+    }
+
+    @Test
+    void expiredEntryIsAMiss() throws InterruptedException {
+        LruCache<String, Integer> cache = new LruCache<>(10, 20);
+        cache.put("a", 1);
+        assertEquals(1, cache.get("a"));
+
+        Thread.sleep(50);
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.size());
+
+        LruCache.CacheStats stats = cache.getStats();
+        assertEquals(1, stats.getHits());
+        assertEquals(1, stats.getMisses());
+        assertEquals(1, stats.getExpirations());
+        assertEquals(0.5, stats.getHitRate(), 0.001);
+    }
+
+    @Test
+    void removeIfDropsMatchingValues() {
+        LruCache<String, Integer> cache = new LruCache<>(10, 0);
+        for (int i = 0; i < 6; i++) {
+            cache.put("k" + i, i);
+        }
+        cache.removeIf(value -> value % 2 == 0);
+
+        assertEquals(3, cache.size());
+        assertNull(cache.get("k2"));
+        assertEquals(3, cache.get("k3"));
+        assertEquals(0, cache.getStats().getEvictions());
+    }
+
+    @Test
+    void valueLoadedBeforeARemovalIsNotCached() {
+        LruCache<String, Integer> cache = new LruCache<>(10, 0);
+        long stamp = cache.removalStamp();
+        assertTrue(cache.putIfNotRemovedSince("a", 1, stamp));
+
+        stamp = cache.removalStamp();
+        // Another thread changes the row and evicts it while this one is loading
+        cache.remove("a");
+        assertFalse(cache.putIfNotRemovedSince("a", 1, stamp));
+        assertNull(cache.get("a"));
+    }
+
+    @Test
+    void sizeMustBePositive() {
+        assertThrows(IllegalArgumentException.class, () -> new LruCache<String, Integer>(0, 0));
+    }
+}
@@ -0,0 +1,72 @@
+package fr.efrei.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PasswordHasherTest {
+
+    @Test
+    void hashVerifiesOnlyItsPassword() {
+        String hash = PasswordHasher.hash("s3cret");
+
+        assertTrue(PasswordHasher.isHashed(hash));
+        assertFalse(PasswordHasher.needsRehash(hash));
+        assertTrue(PasswordHasher.verify("s3cret", hash));
+        assertFalse(PasswordHasher.verify("S3cret", hash));
+        // A salt per password: the same password never gives the same hash
+        assertNotEquals(hash, PasswordHasher.hash("s3cret"));
+    }
+
+    @Test
+    void lowerCostIsRehashed() {
+        String hash = PasswordHasher.hash("s3cret", 1_000);
+
+        assertTrue(PasswordHasher.verify("s3cret", hash));
+        assertTrue(PasswordHasher.needsRehash(hash));
+    }
+
+    @Test
+    void plainTextIsVerifiedThenRehashed() {
+        assertFalse(PasswordHasher.isHashed("s3cret"));
+        assertTrue(PasswordHasher.needsRehash("s3cret"));
+        assertTrue(PasswordHasher.verify("s3cret", "s3cret"));
+        assertFalse(PasswordHasher.verify("other", "s3cret"));
+    }
+
+    @Test
+    void prefixAloneIsNotAHash() {
+        String hash = PasswordHasher.hash("s3cret", 1_000);
+        String[] parts = hash.split("\\$");
+        String[] malformed = {
+                "pbkdf2-sha512$my password",
+                "pbkdf2-sha512$1000$" + parts[2],
+                "pbkdf2-sha512$999$" + parts[2] + "$" + parts[3],
+                "pbkdf2-sha512$abc$" + parts[2] + "$" + parts[3],
+                "pbkdf2-sha512$1000$AAAA$" + parts[3],
+                "pbkdf2-sha512$1000$" + parts[2] + "$AAAA",
+                "pbkdf2-sha512$1000$" + parts[2] + "$" + parts[3] + "$",
+                "pbkdf2-sha512$1000$" + parts[2] + "$not*base64",
+        };
+
+        for (String password : malformed) {
+            assertFalse(PasswordHasher.isHashed(password), password);
+            assertTrue(PasswordHasher.needsRehash(password), password);
+            String stored = PasswordHasher.hashIfPlain(password);
+            assertTrue(PasswordHasher.isHashed(stored), password);
+            assertTrue(PasswordHasher.verify(password, stored), password);
+        }
+        assertEquals(hash, PasswordHasher.hashIfPlain(hash));
+    }
+
+    @Test
+    void emptyPasswordNeverMatches() {
+        assertEquals("", PasswordHasher.hash(""));
+        assertFalse(PasswordHasher.verify("", ""));
+        assertFalse(PasswordHasher.verify("", null));
+        assertFalse(PasswordHasher.verify("s3cret", null));
+    }
+}
@@ -0,0 +1,49 @@
+package fr.efrei.util;
+
+import fr.efrei.TestDatabase;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SchemaMigrationsTest {
+
+    @BeforeAll
+    static void setUp() {
+        TestDatabase.setUp();
+    }
+
+    private static int recorded() throws SQLException {
+        try (Connection conn = DatabaseConnection.getInstance().getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM schema_version")) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    @Test
+    void secondRunAppliesNothing() throws SQLException {
+        int versions = recorded();
+        assertEquals(0, SchemaMigrations.migrate());
+        assertEquals(versions, recorded());
+    }
+
+    @Test
+    void changesMadeButNotRecordedAreOnlyRecorded() throws SQLException {
+        int versions = recorded();
+        // As after a crash between each statement and the insert of its version
+        try (Connection conn = DatabaseConnection.getInstance().getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("DELETE FROM schema_version");
+        }
+
+        assertEquals(0, SchemaMigrations.migrate());
+        assertEquals(versions, recorded());
+    }
+}